@@ -0,0 +1,131 @@
+package com.btg.pactual.hub.news;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+
+/**
+ * Confere o {@link BodyCleaner#standard()} contra o cleanBody antigo ({@link LegacyBodyCleaner})
+ * e compara os tempos.
+ *
+ * Diferencial: N entradas aleatórias montadas com os tokens que disparam (ou quase disparam) as
+ * regras — aviso "((Tradução automatizada ... rtrsauto))" completo e pela metade, "(link)" e
+ * prefixos dele, ".", CR/LF/CRLF, brancos do \s (tab, \f, \u000B), maiúsculas acentuadas e texto
+ * comum. Toda saída tem que ser idêntica; sai com código 1 e mostra as primeiras divergências.
+ *
+ * Tempo: os dois limpadores sobre bodies típicos (parágrafos com ".\n", aviso, links, espaços
+ * duplos) de --body chars; mostra ns/chamada e bytes alocados por chamada (ThreadMXBean).
+ *
+ * Uso: {@code BodyCleanerDiff [--inputs=500000] [--seed=7] [--body=12000] [--seconds=3]}.
+ */
+public final class BodyCleanerDiff {
+
+    private static final String[] TOKENS = {
+            "((Tradução automatizada", "((Tradução automatizada por Reuters, rtrsauto))", "rtrsauto))",
+            "rtrsauto)", "((", "))", "(", ")", "(link)", "(link", "(li", "link)",
+            ".", ". ", ".\n", "\n", "\r", "\r\n", "\n\n", " ", "  ", "\t", "\f", "\u000B",
+            "A", "Á", "Ç", "Ü", "É", "a", "ç", "z", "1", "<br>", "Texto", "mercado", ","
+    };
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private volatile Object sinkHole;
+
+    private static String randomInput(Random random) {
+        int tokens = random.nextInt(60);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tokens; i++) sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+        return sb.toString();
+    }
+
+    /** Body parecido com o das notícias: parágrafos, quebras de frase, links e o aviso no fim. */
+    static String typicalBody(Random random, int chars) {
+        String[] words = {"mercado", "ações", "Ibovespa", "dólar", "juros", "Petrobras", "Vale", "alta", "queda",
+                "analistas", "segundo", "trimestre", "receita", "bilhões", "investidores", "Banco", "Central"};
+        StringBuilder sb = new StringBuilder(chars + 128);
+        while (sb.length() < chars) {
+            int sentences = 2 + random.nextInt(4);
+            for (int s = 0; s < sentences; s++) {
+                sb.append(Character.toUpperCase(words[random.nextInt(words.length)].charAt(0)));
+                sb.append(words[random.nextInt(words.length)].substring(1));
+                int n = 6 + random.nextInt(14);
+                for (int w = 0; w < n; w++) {
+                    sb.append(random.nextInt(12) == 0 ? "  " : " ").append(words[random.nextInt(words.length)]);
+                    if (random.nextInt(40) == 0) sb.append(" (link)");
+                }
+                sb.append(". ");
+            }
+            sb.append(random.nextBoolean() ? ".\r\n" : "\n\n");
+        }
+        sb.append("((Tradução automatizada por Reuters, consulte o aviso em rtrsauto))");
+        return sb.toString();
+    }
+
+    private int diff(int inputs, long seed) {
+        Random random = new Random(seed);
+        BodyCleaner cleaner = BodyCleaner.standard();
+        int mismatches = 0;
+        for (int i = 0; i < inputs; i++) {
+            String in = randomInput(random);
+            String expected = LegacyBodyCleaner.clean(in);
+            String actual = cleaner.clean(in);
+            if (!expected.equals(actual)) {
+                if (mismatches++ < 5) {
+                    System.out.println("DIVERGE entrada=" + escape(in));
+                    System.out.println("  antigo=" + escape(expected));
+                    System.out.println("  novo  =" + escape(actual));
+                }
+            }
+        }
+        System.out.println("diferencial: entradas=" + inputs + " divergências=" + mismatches);
+        return mismatches;
+    }
+
+    private void time(String name, UnaryOperator<String> cleaner, String[] bodies, long seconds) {
+        long warmup = System.nanoTime() + 1_000_000_000L;
+        for (int i = 0; System.nanoTime() < warmup; i++) sinkHole = cleaner.apply(bodies[i % bodies.length]);
+        long tid = Thread.currentThread().getId();
+        long bytes0 = THREADS.getThreadAllocatedBytes(tid);
+        long t0 = System.nanoTime();
+        long deadline = t0 + seconds * 1_000_000_000L;
+        long ops = 0;
+        while (System.nanoTime() < deadline) sinkHole = cleaner.apply(bodies[(int) (ops++ % bodies.length)]);
+        long elapsed = System.nanoTime() - t0;
+        long bytes = THREADS.getThreadAllocatedBytes(tid) - bytes0;
+        System.out.printf("%-18s %12.0f ns/op %12.0f B/op%n", name, (double) elapsed / ops, (double) bytes / ops);
+    }
+
+    private static String escape(String s) {
+        return "\"" + s.replace("\r", "\\r").replace("\n", "\\n").replace("\t", "\\t")
+                .replace("\f", "\\f").replace("\u000B", "\\v") + "\"";
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> opt = new HashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--")) continue;
+            int eq = a.indexOf('=');
+            opt.put(eq < 0 ? a.substring(2) : a.substring(2, eq), eq < 0 ? "true" : a.substring(eq + 1));
+        }
+        BodyCleanerDiff bench = new BodyCleanerDiff();
+        long seed = Long.parseLong(opt.getOrDefault("seed", "7"));
+        int mismatches = bench.diff(Integer.parseInt(opt.getOrDefault("inputs", "500000")), seed);
+
+        int chars = Integer.parseInt(opt.getOrDefault("body", "12000"));
+        long seconds = Long.parseLong(opt.getOrDefault("seconds", "3"));
+        Random random = new Random(seed);
+        String[] bodies = new String[64];
+        for (int i = 0; i < bodies.length; i++) bodies[i] = typicalBody(random, chars);
+        for (String b : bodies) {
+            if (!LegacyBodyCleaner.clean(b).equals(BodyCleaner.standard().clean(b))) mismatches++;
+        }
+        System.out.println("tempo: body~" + chars + " chars");
+        bench.time("body.clean.legacy", LegacyBodyCleaner::clean, bodies, seconds);
+        bench.time("body.clean", BodyCleaner.standard()::clean, bodies, seconds);
+        System.out.println(mismatches == 0 ? "OK" : "FALHOU: " + mismatches + " divergências");
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,36 @@
+package com.btg.pactual.hub.news;
+
+/**
+ * Referência: o FileQueueSink.cleanBody anterior ao {@link BodyCleaner}, copiado sem mudanças
+ * (cadeia de replace/replaceAll). Só existe para o {@link BodyCleanerDiff} conferir que a regra
+ * padrão continua dando a mesma saída, e para os benchmarks "legacy" do {@link MrnHotPathBench}.
+ * Não use no caminho de produção.
+ */
+final class LegacyBodyCleaner {
+
+    private LegacyBodyCleaner() {}
+
+    /** Aplica as regras de limpeza no campo "body". */
+    static String clean(String body) {
+        if (body == null) return "";
+
+        String txt = body.replace("\r\n", "\n").replace("\r", "\n");
+
+        // Remover aviso da Reuters (DOTALL -> atravessa quebras)
+        txt = txt.replaceAll("\\(\\(Tradução automatizada[^)]*?rtrsauto\\)\\)", "");
+
+        // Remover "(link)"
+        txt = txt.replace("(link)", "");
+
+        // ".\n" seguido de letra maiúscula vira ".<br>"
+        txt = txt.replaceAll("\\.\\s*\\n\\s*([A-ZÁÂÃÀÉÊÍÓÔÕÚÜÇ])", ".<br>$1");
+
+        // Outras quebras -> espaço
+        txt = txt.replace("\n", " ");
+
+        // Compactar espaços múltiplos
+        txt = txt.replaceAll("[ \\t]{2,}", " ").trim();
+
+        return txt;
+    }
+}
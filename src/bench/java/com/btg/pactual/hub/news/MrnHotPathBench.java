@@ -0,0 +1,298 @@
+package com.btg.pactual.hub.news;
+
+import com.btg.pactual.hub.news.builder.NewsEventBuilder;
+import com.btg.pactual.hub.news.dto.NewsEventDTO;
+import com.btg.pactual.hub.news.model.NewsDocument;
+import com.btg.pactual.hub.news.routers.websocket.replay.SyntheticMrnFeed;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micro-benchmarks do caminho quente de ingestão, sobre payloads do {@link SyntheticMrnFeed}:
+ * parse do envelope, reagrupamento com N threads disputando o reassembler, base64 de cada
+ * FRAGMENT + gunzip dos segmentos (como no {@link MrnPipeline}), limpeza do body (regra atual
+ * e a cadeia de replaceAll antiga, {@link LegacyBodyCleaner}), NewsEventBuilder.fromMrn,
+ * NewsEventBuilder.toDocument (a partir de bytes e de String) ao lado do caminho antigo
+ * (fromMrn → NewsEventDTO → cópia no NewsDocument.builder(), as mesmas histórias) e vazão
+ * do FileQueueSink (journal + dedup).
+ *
+ * Cada benchmark tem aquecimento e medição por tempo; o resumo traz ops/s, ns/op e bytes
+ * alocados por op (ThreadMXBean, o mesmo número do gc.alloc.rate.norm do JMH). Os tamanhos
+ * seguem o perfil escolhido: small (~600 chars de body), medium (~4k), large (~40k) ou mixed
+ * (70/25/5). O benchmark do sink grava num diretório temporário, apagado no fim.
+ *
+ * Uso: {@code MrnHotPathBench [--profile=mixed] [--seconds=3] [--warmup=2] [--threads=4] [--only=nome,...]}.
+ */
+public final class MrnHotPathBench {
+
+    /** Uma operação; i é o número da iteração na thread (índice nas entradas). */
+    @FunctionalInterface
+    interface Op {
+        void run(int thread, int i) throws Exception;
+    }
+
+    /** Entradas de uma história: frames tr_json2, FRAGMENT em base64 e já em bytes, e JSON. */
+    private static final class Story {
+        final List<char[]> frames = new ArrayList<>();
+        final List<char[]> fragments = new ArrayList<>();
+        final List<byte[]> parts = new ArrayList<>();
+        byte[] json;
+        String jsonText;
+        String language;
+        String body;
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final long warmupNanos;
+    private final long measureNanos;
+    private final int threads;
+    private volatile Object sinkHole;
+
+    private MrnHotPathBench(long warmupSeconds, long measureSeconds, int threads) {
+        this.warmupNanos = warmupSeconds * 1_000_000_000L;
+        this.measureNanos = measureSeconds * 1_000_000_000L;
+        this.threads = threads;
+    }
+
+    // ====== entradas ======
+
+    private List<Story> stories(String profile, int count) throws Exception {
+        int[] sizes = {600, 4_000, 40_000};
+        double[] weights = switch (profile) {
+            case "small" -> new double[] {1, 0, 0};
+            case "medium" -> new double[] {0, 1, 0};
+            case "large" -> new double[] {0, 0, 1};
+            default -> new double[] {0.70, 0.25, 0.05};
+        };
+        Random random = new Random(7);
+        MrnPayloadDecoder decoder = new MrnPayloadDecoder(s -> {});
+        List<Story> out = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            double r = random.nextDouble();
+            int size = r < weights[0] ? sizes[0] : r < weights[0] + weights[1] ? sizes[1] : sizes[2];
+            SyntheticMrnFeed feed = new SyntheticMrnFeed(new SyntheticMrnFeed.Config(
+                    1, 0, size, 3_000, 0, 0, new String[] {new String[] {"pt", "en", "es"}[n % 3]}, 2, 1_000L + n));
+            Story s = new Story();
+            while (feed.next()) {
+                String text = feed.text();
+                s.frames.add(text.toCharArray());
+                char[] fragment = mapper.readTree(text).path("Fields").path("FRAGMENT").asText().toCharArray();
+                s.fragments.add(fragment);
+                s.parts.add(MrnEnvelopeParser.decodeBase64(fragment, 0, fragment.length));
+            }
+            s.json = decoder.decode(payload(s.parts));
+            s.jsonText = new String(s.json, StandardCharsets.UTF_8);
+            JsonNode root = mapper.readTree(s.json);
+            s.language = root.path("language").asText("pt");
+            s.body = root.path("body").asText("");
+            out.add(s);
+        }
+        return out;
+    }
+
+    /** Segmentos na ordem do FRAG_NUM, sem concatenar (o que o reassembler entrega). */
+    private static MrnPayload payload(List<byte[]> parts) {
+        byte[][] segments = parts.toArray(new byte[0][]);
+        int length = 0;
+        for (byte[] seg : segments) length += seg.length;
+        return new MrnPayload(segments, segments.length, length);
+    }
+
+    // ====== medição ======
+
+    private void measure(String name, int threadCount, int maxOpsPerThread, Op op) throws Exception {
+        run(threadCount, warmupNanos, maxOpsPerThread, op, new long[3]);
+        long[] totals = new long[3]; // ops, bytes alocados, nanos somados das threads
+        run(threadCount, measureNanos, maxOpsPerThread, op, totals);
+        long ops = Math.max(1, totals[0]);
+        double secs = totals[2] / 1e9 / threadCount;
+        System.out.printf("%-28s %3d thr %12.0f ops/s %12.0f ns/op %12.0f B/op%n",
+                name, threadCount, ops / secs, (double) totals[2] / ops, (double) totals[1] / ops);
+    }
+
+    private void run(int threadCount, long durationNanos, int maxOps, Op op, long[] totals) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final int thread = t;
+            Thread w = new Thread(() -> {
+                try {
+                    start.await();
+                    long tid = Thread.currentThread().getId();
+                    long bytes0 = THREADS.getThreadAllocatedBytes(tid);
+                    long t0 = System.nanoTime();
+                    long deadline = t0 + durationNanos;
+                    int i = 0;
+                    while (i < maxOps && ((i & 15) != 0 || System.nanoTime() < deadline)) op.run(thread, i++);
+                    long elapsed = System.nanoTime() - t0;
+                    long bytes = THREADS.getThreadAllocatedBytes(tid) - bytes0;
+                    synchronized (totals) {
+                        totals[0] += i;
+                        totals[1] += bytes;
+                        totals[2] += elapsed;
+                    }
+                } catch (Throwable e) {
+                    synchronized (errors) { errors.add(e); }
+                }
+            }, "bench-" + t);
+            workers.add(w);
+            w.start();
+        }
+        start.countDown();
+        for (Thread w : workers) w.join();
+        if (!errors.isEmpty()) throw new IllegalStateException("benchmark falhou", errors.get(0));
+    }
+
+    // ====== benchmarks ======
+
+    private void runAll(List<Story> stories, List<String> only) throws Exception {
+        int n = stories.size();
+        System.out.printf("%-28s %7s %18s %18s %18s%n", "benchmark", "", "throughput", "latência", "alocação");
+
+        if (selected(only, "envelope.parse")) {
+            List<char[]> frames = new ArrayList<>();
+            for (Story s : stories) frames.addAll(s.frames);
+            MrnEnvelopeParser parser = new MrnEnvelopeParser();
+            AtomicInteger fragments = new AtomicInteger();
+            measure("envelope.parse", 1, Integer.MAX_VALUE, (t, i) -> {
+                char[] f = frames.get(i % frames.size());
+                parser.parse(f, 0, f.length, env -> { if (env.hasFragment()) fragments.incrementAndGet(); });
+            });
+        }
+
+        if (selected(only, "reassembler.addFragment")) {
+            for (int tc : new int[] {1, threads}) {
+                MrnFragmentReassembler reassembler = new MrnFragmentReassembler(MrnFragmentReassembler.Config.defaults(60));
+                measure("reassembler.addFragment", tc, Integer.MAX_VALUE, (t, i) -> {
+                    Story s = stories.get(i % n);
+                    String key = "t" + t + "-" + i;
+                    int total = s.parts.size();
+                    for (int k = 0; k < total; k++) sinkHole = reassembler.addFragment(key, k + 1, total, s.parts.get(k));
+                });
+                reassembler.close();
+            }
+        }
+
+        // base64 de cada FRAGMENT (decoder do envelope) + gunzip direto dos segmentos
+        if (selected(only, "payload.decode")) {
+            MrnPayloadDecoder decoder = new MrnPayloadDecoder(s -> {});
+            measure("payload.decode", 1, Integer.MAX_VALUE, (t, i) -> {
+                List<char[]> fragments = stories.get(i % n).fragments;
+                List<byte[]> parts = new ArrayList<>(fragments.size());
+                for (char[] f : fragments) parts.add(MrnEnvelopeParser.decodeBase64(f, 0, f.length));
+                sinkHole = decoder.decode(payload(parts));
+            });
+        }
+
+        if (selected(only, "body.clean")) {
+            measure("body.clean", 1, Integer.MAX_VALUE, (t, i) -> {
+                Story s = stories.get(i % n);
+                sinkHole = BodyCleaner.forLanguage(s.language).clean(s.body);
+            });
+        }
+
+        if (selected(only, "body.clean.legacy")) {
+            measure("body.clean.legacy", 1, Integer.MAX_VALUE, (t, i) -> sinkHole = LegacyBodyCleaner.clean(stories.get(i % n).body));
+        }
+
+        if (selected(only, "builder.fromMrn")) {
+            NewsEventBuilder builder = new NewsEventBuilder(mapper);
+            measure("builder.fromMrn", 1, Integer.MAX_VALUE, (t, i) -> sinkHole = builder.fromMrn(stories.get(i % n).jsonText));
+        }
+
+        // alocação por história do caminho do Mongo: bytes do journal/replay e String da ingestão HTTP
+        if (selected(only, "builder.toDocument.bytes")) {
+            NewsEventBuilder builder = new NewsEventBuilder(mapper);
+            Instant now = Instant.now();
+            measure("builder.toDocument.bytes", 1, Integer.MAX_VALUE, (t, i) -> sinkHole = builder.toDocument(stories.get(i % n).json, now));
+        }
+
+        if (selected(only, "builder.toDocument.string")) {
+            NewsEventBuilder builder = new NewsEventBuilder(mapper);
+            Instant now = Instant.now();
+            measure("builder.toDocument.string", 1, Integer.MAX_VALUE, (t, i) -> sinkHole = builder.toDocument(stories.get(i % n).jsonText, now));
+        }
+
+        // caminho antigo do NewsRoutingService, para comparar com as duas linhas acima
+        if (selected(only, "builder.legacy.bytes")) {
+            NewsEventBuilder builder = new NewsEventBuilder(mapper);
+            measure("builder.legacy.bytes", 1, Integer.MAX_VALUE,
+                    (t, i) -> sinkHole = legacyDocument(builder, new String(stories.get(i % n).json, StandardCharsets.UTF_8)));
+        }
+
+        if (selected(only, "builder.legacy.string")) {
+            NewsEventBuilder builder = new NewsEventBuilder(mapper);
+            measure("builder.legacy.string", 1, Integer.MAX_VALUE, (t, i) -> sinkHole = legacyDocument(builder, stories.get(i % n).jsonText));
+        }
+
+        if (selected(only, "sink.enqueue")) {
+            // janela de dedup zerada: toda história conta como nova e vai ao journal
+            Path dir = Files.createTempDirectory("mrn-bench-");
+            try (FileQueueSink sink = new FileQueueSink(dir.resolve("journal"), dir,
+                    new NewsDedupCache(new NewsDedupCache.Config(16, 0, 0, 0, 0)))) {
+                measure("sink.enqueue", 1, Integer.MAX_VALUE, (t, i) -> {
+                    Story s = stories.get(i % n);
+                    sink.enqueueDecodedNews(s.json, "bench-" + i, System.nanoTime());
+                });
+            } finally {
+                try (var files = Files.walk(dir)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+                }
+            }
+        }
+    }
+
+    /** O que o NewsRoutingService fazia antes do toDocument: DTO do fromMrn copiado campo a campo. */
+    private static NewsDocument legacyDocument(NewsEventBuilder builder, String rawJson) {
+        NewsEventDTO dto = builder.fromMrn(rawJson);
+        return NewsDocument.builder()
+                .id(dto.getId())
+                .language(dto.getLanguage())
+                .headline(dto.getHeadline())
+                .body(dto.getBody())
+                .audiences(dto.getAudiences())
+                .receivedAt(dto.getReceivedAt())
+                .build();
+    }
+
+    private static boolean selected(List<String> only, String name) {
+        return only.isEmpty() || only.contains(name);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = new HashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--")) continue;
+            int eq = a.indexOf('=');
+            opt.put(eq < 0 ? a.substring(2) : a.substring(2, eq), eq < 0 ? "true" : a.substring(eq + 1));
+        }
+        String profile = opt.getOrDefault("profile", "mixed");
+        List<String> only = opt.containsKey("only") ? Arrays.asList(opt.get("only").split(",")) : List.of();
+        MrnHotPathBench bench = new MrnHotPathBench(
+                Long.parseLong(opt.getOrDefault("warmup", "2")),
+                Long.parseLong(opt.getOrDefault("seconds", "3")),
+                Integer.parseInt(opt.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))));
+        List<Story> stories = bench.stories(profile, Integer.parseInt(opt.getOrDefault("stories", "2000")));
+        System.out.println("perfil=" + profile + " histórias=" + stories.size());
+        bench.runAll(stories, only);
+    }
+}
@@ -0,0 +1,192 @@
+package com.btg.pactual.hub.news;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stress do reagrupamento com fragments intercalados: C conexões, cada uma com S streams
+ * abertos ao mesmo tempo, emitem histórias de 1..F fragments misturando os streams (como chegam
+ * num socket real). Parte das histórias vem sem GUID. Cada conexão passa os fragments pelo seu
+ * {@link StreamSequencer} numa thread só (o worker de receive) e entrega a um estágio "reassemble"
+ * particionado pela chave com W workers sobre um {@link MrnFragmentReassembler} compartilhado,
+ * como no {@link MrnPipeline}.
+ *
+ * Cada fragmento carrega [id da história][FRAG_NUM] no início, então todo payload montado é
+ * conferido: uma história só, todos os fragments, em ordem, exatamente uma vez. Sai com código 1
+ * se algo não bater. Com --shared-key os fragments sem GUID usam a chave única "UNKN" do modelo
+ * antigo, para ver o harness acusar a mistura.
+ *
+ * Uso: {@code ReassemblyStress [--connections=4] [--streams=3] [--stories=20000] [--max-fragments=5]
+ * [--workers=8] [--guid=0.3] [--seed=7] [--shared-key]}.
+ */
+public final class ReassemblyStress {
+
+    private static final int FRAGMENT_BYTES = 32;
+
+    /** Fragmento como sai do envelope: chave ainda não atribuída quando não há GUID. */
+    private static final class Frame {
+        final int streamId;
+        final String guid;
+        final int fragNum;
+        final int acum;
+        final byte[] payload;
+
+        Frame(int streamId, String guid, int fragNum, int acum, byte[] payload) {
+            this.streamId = streamId;
+            this.guid = guid;
+            this.fragNum = fragNum;
+            this.acum = acum;
+            this.payload = payload;
+        }
+    }
+
+    private static final class Keyed {
+        final String key;
+        final Frame frame;
+
+        Keyed(String key, Frame frame) {
+            this.key = key;
+            this.frame = frame;
+        }
+    }
+
+    private final Map<Long, Integer> expectedParts = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> assembledCount = new ConcurrentHashMap<>();
+    private final LongAdder assembled = new LongAdder();
+    private final LongAdder mismatched = new LongAdder();
+    private final List<String> errors = new ArrayList<>();
+
+    /** Fragments de uma conexão, streams intercalados ao acaso; histórias do mesmo stream em sequência. */
+    private List<Frame> connectionFrames(int conn, int streams, int stories, int maxFragments, double guidRatio, Random random) {
+        List<List<Frame>> pending = new ArrayList<>();
+        for (int s = 0; s < streams; s++) pending.add(new ArrayList<>());
+        for (int n = 0; n < stories; n++) {
+            long storyId = ((long) conn << 32) | n;
+            int stream = 2 + random.nextInt(streams);
+            int parts = 1 + random.nextInt(maxFragments);
+            String guid = random.nextDouble() < guidRatio ? "g-" + conn + "-" + n : null;
+            expectedParts.put(storyId, parts);
+            assembledCount.put(storyId, new AtomicInteger());
+            for (int f = 1; f <= parts; f++) {
+                byte[] p = new byte[FRAGMENT_BYTES];
+                ByteBuffer.wrap(p).putLong(storyId).putInt(f);
+                pending.get(stream - 2).add(new Frame(stream, guid, f, parts, p));
+            }
+        }
+        List<Frame> out = new ArrayList<>();
+        int[] next = new int[streams];
+        int remaining = 0;
+        for (List<Frame> l : pending) remaining += l.size();
+        while (remaining > 0) {
+            int s = random.nextInt(streams);
+            if (next[s] >= pending.get(s).size()) continue;
+            out.add(pending.get(s).get(next[s]++));
+            remaining--;
+        }
+        return out;
+    }
+
+    private void verify(String key, MrnPayload payload) {
+        assembled.increment();
+        byte[] all = payload.toByteArray();
+        ByteBuffer b = ByteBuffer.wrap(all);
+        long storyId = b.getLong(0);
+        Integer parts = expectedParts.get(storyId);
+        boolean ok = parts != null && all.length == parts * FRAGMENT_BYTES;
+        for (int f = 1; ok && f <= parts; f++) {
+            int off = (f - 1) * FRAGMENT_BYTES;
+            ok = b.getLong(off) == storyId && b.getInt(off + 8) == f;
+        }
+        if (ok && assembledCount.get(storyId).incrementAndGet() == 1) return;
+        mismatched.increment();
+        synchronized (errors) {
+            if (errors.size() < 10) errors.add("key=" + key + " story=" + storyId + " bytes=" + all.length + " esperado=" + parts);
+        }
+    }
+
+    private int run(int connections, int streams, int stories, int maxFragments, int workers, double guidRatio, long seed,
+                    boolean sharedKey) throws Exception {
+        Random random = new Random(seed);
+        List<List<Frame>> perConnection = new ArrayList<>();
+        long fragments = 0;
+        for (int c = 0; c < connections; c++) {
+            List<Frame> frames = connectionFrames(c, streams, stories / connections, maxFragments, guidRatio, random);
+            fragments += frames.size();
+            perConnection.add(frames);
+        }
+
+        MrnFragmentReassembler reassembler = new MrnFragmentReassembler(MrnFragmentReassembler.Config.defaults(60));
+        reassembler.setIncompleteHandler(s -> {
+            synchronized (errors) { errors.add("incompleta " + s.key + " " + s.reason); }
+        });
+        PipelineStage<Keyed> stage = new PipelineStage<>("reassemble", 1024, workers, () -> k ->
+                reassembler.addFragment(k.key, k.frame.fragNum, k.frame.acum, k.frame.payload)
+                        .ifPresent(p -> verify(k.key, p)),
+                k -> k.key, System.err::println);
+
+        long t0 = System.nanoTime();
+        List<Thread> receivers = new ArrayList<>();
+        for (int c = 0; c < connections; c++) {
+            List<Frame> frames = perConnection.get(c);
+            StreamSequencer sequencer = new StreamSequencer("c" + c);
+            Thread t = new Thread(() -> {
+                try {
+                    for (Frame f : frames) {
+                        String key = f.guid != null ? f.guid
+                                : sharedKey ? "UNKN" : sequencer.keyForFragment(f.streamId, f.fragNum, f.acum);
+                        stage.submit(new Keyed(key, f));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "receive-c" + c);
+            receivers.add(t);
+            t.start();
+        }
+        for (Thread t : receivers) t.join();
+        stage.close(60_000);
+        double secs = (System.nanoTime() - t0) / 1e9;
+
+        Map<String, Long> missing = new HashMap<>();
+        expectedParts.forEach((id, parts) -> {
+            if (assembledCount.get(id).get() == 0) missing.merge("faltando", 1L, Long::sum);
+        });
+        System.out.printf("conexões=%d streams=%d histórias=%d fragments=%d workers=%d guid=%.0f%%%n",
+                connections, streams, expectedParts.size(), fragments, workers, guidRatio * 100);
+        System.out.printf("montadas=%d erradas=%d faltando=%d inFlight=%d em %.2fs (%.0f fragments/s)%n",
+                assembled.sum(), mismatched.sum(), missing.getOrDefault("faltando", 0L), reassembler.inFlight(),
+                secs, fragments / secs);
+        System.out.println(reassembler.stats());
+        reassembler.close();
+        boolean ok = mismatched.sum() == 0 && missing.isEmpty() && reassembler.inFlight() == 0 && errors.isEmpty();
+        errors.forEach(e -> System.out.println("  " + e));
+        System.out.println(ok ? "OK" : "FALHOU");
+        return ok ? 0 : 1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = new HashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--")) continue;
+            int eq = a.indexOf('=');
+            opt.put(eq < 0 ? a.substring(2) : a.substring(2, eq), eq < 0 ? "true" : a.substring(eq + 1));
+        }
+        int code = new ReassemblyStress().run(
+                Integer.parseInt(opt.getOrDefault("connections", "4")),
+                Integer.parseInt(opt.getOrDefault("streams", "3")),
+                Integer.parseInt(opt.getOrDefault("stories", "20000")),
+                Integer.parseInt(opt.getOrDefault("max-fragments", "5")),
+                Integer.parseInt(opt.getOrDefault("workers", "8")),
+                Double.parseDouble(opt.getOrDefault("guid", "0.3")),
+                Long.parseLong(opt.getOrDefault("seed", "7")),
+                opt.containsKey("shared-key"));
+        System.exit(code);
+    }
+}
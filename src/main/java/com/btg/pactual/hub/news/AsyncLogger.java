@@ -0,0 +1,309 @@
+package com.btg.pactual.hub.news;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Canal de log assíncrono: os produtores só publicam num ring buffer sem lock e uma thread
+ * dedicada formata e grava em lote, com um {@link FileChannel} aberto por arquivo de log.
+ *
+ * O ring é uma fila limitada multi-produtor / consumidor único (sequência por slot): publicar é
+ * um CAS no índice de escrita mais uma escrita volátil. Se o ring estiver cheio (disco lento) a
+ * linha é descartada e contada; quem loga nunca bloqueia. O total descartado vira uma linha
+ * {@code [LOG-DROPPED]} assim que houver espaço.
+ *
+ * Cada arquivo rotaciona por tamanho ou idade: o atual é renomeado para
+ * {@code <nome>.<yyyyMMdd-HHmmss>} (com sufixo {@code -n} se já existir) e um novo é aberto.
+ */
+public class AsyncLogger implements AutoCloseable {
+
+    /** Formata uma entrada (thread do writer). */
+    @FunctionalInterface
+    public interface Layout {
+        void format(long epochMillis, String label, String text, StringBuilder out);
+    }
+
+    /** {@code [<LocalDateTime>] texto} */
+    public static final Layout LINE = (ms, label, text, out) ->
+            out.append('[').append(LocalDateTime.ofInstant(Instant.ofEpochMilli(ms), ZoneId.systemDefault()))
+                    .append("] ").append(text).append(System.lineSeparator());
+
+    /** Bloco {@code ==== label @ ts ==== / payload / ==== END ====}, como o ws_payloads.log. */
+    public static final Layout BLOCK = (ms, label, text, out) ->
+            out.append("==== ").append(label).append(" @ ")
+                    .append(ZonedDateTime.ofInstant(Instant.ofEpochMilli(ms), ZoneId.systemDefault())
+                            .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME))
+                    .append(" ====").append(System.lineSeparator())
+                    .append(text).append(System.lineSeparator())
+                    .append("==== END ====").append(System.lineSeparator()).append(System.lineSeparator());
+
+    /** Capacidade do ring, limite de tamanho e idade dos arquivos (variáveis LOG_*). */
+    public static final class Config {
+        public final int ringCapacity;
+        public final long maxFileBytes;
+        public final long maxFileAgeMillis;
+
+        public Config(int ringCapacity, long maxFileBytes, long maxFileAgeMillis) {
+            this.ringCapacity = ringCapacity;
+            this.maxFileBytes = maxFileBytes;
+            this.maxFileAgeMillis = maxFileAgeMillis;
+        }
+
+        public static Config fromEnv() {
+            Map<String, String> env = System.getenv();
+            return new Config(
+                    Integer.parseInt(env.getOrDefault("LOG_RING_CAPACITY", "65536")),
+                    Long.parseLong(env.getOrDefault("LOG_MAX_FILE_BYTES", String.valueOf(100L * 1024 * 1024))),
+                    Long.parseLong(env.getOrDefault("LOG_ROTATE_HOURS", "24")) * 3_600_000L);
+        }
+    }
+
+    /** Um arquivo de log. Publicar nele nunca bloqueia. */
+    public final class Target {
+        private final Path path;
+        private final Layout layout;
+        private final PrintStream echo;
+        private final ByteBuffer batch = ByteBuffer.allocateDirect(64 * 1024);
+        private FileChannel channel;
+        private long size;
+        private long openedAt;
+
+        private Target(Path path, Layout layout, PrintStream echo) {
+            this.path = path;
+            this.layout = layout;
+            this.echo = echo;
+        }
+
+        public void log(String text) {
+            publish(this, null, text);
+        }
+
+        public void log(String label, String text) {
+            publish(this, label, text);
+        }
+
+        public Path path() { return path; }
+
+        // ---- thread do writer ----
+
+        private void write(byte[] bytes) throws IOException {
+            if (bytes.length > batch.remaining()) flush();
+            if (bytes.length > batch.capacity()) {
+                writeFully(ByteBuffer.wrap(bytes));
+                return;
+            }
+            batch.put(bytes);
+        }
+
+        private void flush() throws IOException {
+            if (batch.position() == 0) return;
+            batch.flip();
+            writeFully(batch);
+            batch.clear();
+        }
+
+        private void writeFully(ByteBuffer buf) throws IOException {
+            rotateIfNeeded(buf.remaining());
+            while (buf.hasRemaining()) size += channel.write(buf);
+        }
+
+        private void rotateIfNeeded(int next) throws IOException {
+            long now = System.currentTimeMillis();
+            if (channel != null && (size == 0 || (size + next <= config.maxFileBytes
+                    && now - openedAt < config.maxFileAgeMillis))) {
+                return;
+            }
+            if (channel != null) {
+                channel.close();
+                String suffix = LocalDateTime.now().format(ROTATE_SUFFIX);
+                Path rotated = path.resolveSibling(path.getFileName() + "." + suffix);
+                for (int n = 1; Files.exists(rotated); n++) {
+                    rotated = path.resolveSibling(path.getFileName() + "." + suffix + "-" + n);
+                }
+                Files.move(path, rotated);
+            }
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            size = channel.size();
+            openedAt = now;
+        }
+
+        private void close() throws IOException {
+            flush();
+            if (channel != null) channel.close();
+            channel = null;
+        }
+    }
+
+    private static final DateTimeFormatter ROTATE_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    // ring: slots + sequência por slot
+    private final Target[] targets;
+    private final String[] labels;
+    private final String[] texts;
+    private final long[] times;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    private final Config config;
+    private final List<Target> registered = new CopyOnWriteArrayList<>();
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private long droppedReported;
+    private volatile boolean sleeping;
+    private volatile boolean running = true;
+
+    public AsyncLogger(Config config) {
+        this.config = config;
+        int cap = Integer.highestOneBit(Math.max(2, config.ringCapacity) * 2 - 1);
+        this.targets = new Target[cap];
+        this.labels = new String[cap];
+        this.texts = new String[cap];
+        this.times = new long[cap];
+        this.sequences = new AtomicLongArray(cap);
+        for (int i = 0; i < cap; i++) sequences.set(i, i);
+        this.mask = cap - 1;
+        this.writer = new Thread(this::runWriter, "async-logger");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Registra um arquivo de log. {@code echo} (ex.: System.out) recebe a mesma saída, também
+     * a partir da thread do writer; null para não espelhar.
+     */
+    public Target target(Path path, Layout layout, PrintStream echo) {
+        Target t = new Target(path, layout, echo);
+        registered.add(t);
+        return t;
+    }
+
+    private void publish(Target target, String label, String text) {
+        long now = System.currentTimeMillis();
+        long pos;
+        while (true) {
+            pos = tail.get();
+            int i = (int) pos & mask;
+            long seq = sequences.get(i);
+            if (seq == pos) {
+                if (tail.compareAndSet(pos, pos + 1)) break;
+            } else if (seq < pos) {
+                dropped.increment(); // cheio
+                return;
+            }
+            // outro produtor avançou o tail; tenta de novo
+        }
+        int i = (int) pos & mask;
+        targets[i] = target;
+        labels[i] = label;
+        texts[i] = text;
+        times[i] = now;
+        sequences.set(i, pos + 1); // publica
+        if (sleeping) LockSupport.unpark(writer);
+    }
+
+    private void runWriter() {
+        StringBuilder sb = new StringBuilder(1024);
+        List<Target> touched = new ArrayList<>();
+        while (true) {
+            int drained = 0;
+            while (drained < 4096) {
+                int i = (int) head & mask;
+                if (sequences.get(i) != head + 1) break;
+                Target t = targets[i];
+                String label = labels[i];
+                String text = texts[i];
+                long ms = times[i];
+                targets[i] = null;
+                labels[i] = null;
+                texts[i] = null;
+                sequences.set(i, head + mask + 1); // libera o slot para a próxima volta
+                head++;
+                drained++;
+                sb.setLength(0);
+                t.layout.format(ms, label, text, sb);
+                write(t, sb, touched);
+            }
+            long d = dropped.sum();
+            if (d != droppedReported && !registered.isEmpty()) {
+                sb.setLength(0);
+                LINE.format(System.currentTimeMillis(), null, "[LOG-DROPPED] " + (d - droppedReported)
+                        + " linhas descartadas (ring cheio)", sb);
+                droppedReported = d;
+                write(registered.get(0), sb, touched);
+            }
+            if (drained > 0) continue;
+
+            // ring vazio: grava o lote pendente e dorme até o próximo publish
+            for (Target t : touched) {
+                try {
+                    t.flush();
+                } catch (IOException e) {
+                    System.err.println("[LOG-ERROR] " + t.path + " " + e.getMessage());
+                }
+            }
+            touched.clear();
+            if (!running) return;
+            sleeping = true;
+            if (sequences.get((int) head & mask) != head + 1 && running) LockSupport.parkNanos(100_000_000L);
+            sleeping = false;
+        }
+    }
+
+    private void write(Target t, StringBuilder sb, List<Target> touched) {
+        String s = sb.toString();
+        if (t.echo != null) t.echo.print(s);
+        try {
+            t.write(s.getBytes(StandardCharsets.UTF_8));
+            if (!touched.contains(t)) touched.add(t);
+            written.increment();
+        } catch (IOException e) {
+            System.err.println("[LOG-ERROR] " + t.path + " " + e.getMessage());
+        }
+    }
+
+    public long droppedCount() { return dropped.sum(); }
+    public long writtenCount() { return written.sum(); }
+
+    /** Escreve o que estiver no ring e fecha os arquivos. */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Target t : registered) {
+            try {
+                t.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+}
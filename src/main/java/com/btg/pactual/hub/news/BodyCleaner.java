@@ -0,0 +1,476 @@
+package com.btg.pactual.hub.news;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Normalização do campo "body" em uma única passada pelos chars.
+ *
+ * Cada regra vira um transdutor que recebe os chars e repassa ao seguinte; o último escreve
+ * num {@link StringBuilder} reaproveitado. Trechos que não podem disparar uma regra passam em
+ * bloco (um {@code accept(char[], off, len)} por trecho, não uma chamada por char). Regras que
+ * precisam de contexto (ex.: o aviso de tradução) seguram só o trecho que ainda pode casar e,
+ * se não casar, soltam o primeiro char e reprocessam o resto, reproduzindo a semântica "mais à esquerda, sem sobreposição" de
+ * {@code replace}/{@code replaceAll}. A saída é idêntica à sequência de replaces original
+ * (ver {@link #standard()}).
+ *
+ * A instância é imutável e thread-safe; o estado de cada passada fica numa cadeia por thread.
+ */
+public final class BodyCleaner {
+
+    /** Transdutor de chars: recebe chars (um a um ou em trechos) e repassa ao próximo. */
+    public abstract static class Transducer {
+        protected final Transducer next;
+
+        protected Transducer(Transducer next) {
+            this.next = next;
+        }
+
+        public abstract void accept(char c);
+
+        /**
+         * Trecho de chars. As regras sobrescrevem para repassar em bloco os trechos que não
+         * podem iniciar um casamento, evitando uma chamada por char na cadeia.
+         */
+        public void accept(char[] buf, int off, int len) {
+            for (int i = off, end = off + len; i < end; i++) accept(buf[i]);
+        }
+
+        /** Fim do texto: solta o que estiver retido e volta ao estado inicial. */
+        public void finish() {
+            if (next != null) next.finish();
+        }
+    }
+
+    /** Fábrica de transdutores (uma regra de limpeza). */
+    @FunctionalInterface
+    public interface Rule {
+        Transducer newTransducer(Transducer next);
+    }
+
+    /** Chars de {@code \s} no regex Java (sem UNICODE_CHARACTER_CLASS). */
+    static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    public static final String UPPER_PT = "ABCDEFGHIJKLMNOPQRSTUVWXYZÁÂÃÀÉÊÍÓÔÕÚÜÇ";
+
+    private static final BodyCleaner STANDARD = builder()
+            .normalizeNewlines()
+            .removeDelimited("((Tradução automatizada", "rtrsauto))", ')')
+            .removeLiteral("(link)")
+            .sentenceBreaks(UPPER_PT, ".<br>")
+            .replaceChar('\n', ' ')
+            .compactBlanks()
+            .build();
+
+    private static final Map<String, BodyCleaner> BY_LANGUAGE = new ConcurrentHashMap<>();
+
+    /**
+     * Regras atuais do FileQueueSink:
+     * CRLF/CR → LF; remove {@code ((Tradução automatizada[^)]*?rtrsauto))}; remove {@code (link)};
+     * {@code .\s*\n\s*<Maiúscula>} → {@code .<br><Maiúscula>}; {@code \n} → espaço;
+     * {@code [ \t]{2,}} → espaço; trim.
+     */
+    public static BodyCleaner standard() { return STANDARD; }
+
+    /** Regras do idioma, ou {@link #standard()} se nenhuma foi registrada. */
+    public static BodyCleaner forLanguage(String language) {
+        if (language == null) return STANDARD;
+        return BY_LANGUAGE.getOrDefault(language, STANDARD);
+    }
+
+    public static void register(String language, BodyCleaner cleaner) {
+        BY_LANGUAGE.put(language, cleaner);
+    }
+
+    private final List<Rule> rules;
+    private final boolean trim;
+    private final ThreadLocal<Session> sessions = ThreadLocal.withInitial(Session::new);
+
+    private BodyCleaner(List<Rule> rules, boolean trim) {
+        this.rules = List.copyOf(rules);
+        this.trim = trim;
+    }
+
+    public String clean(String body) {
+        if (body == null) return "";
+        Session s = sessions.get();
+        StringBuilder out = s.out;
+        out.setLength(0);
+        int n = body.length();
+        if (s.in.length < n) s.in = new char[Math.max(n, s.in.length * 2)];
+        body.getChars(0, n, s.in, 0);
+        s.head.accept(s.in, 0, n);
+        s.head.finish();
+
+        int start = 0;
+        int end = out.length();
+        if (trim) {
+            while (start < end && out.charAt(start) <= ' ') start++;
+            while (end > start && out.charAt(end - 1) <= ' ') end--;
+        }
+        String result = out.substring(start, end);
+        if (out.capacity() > MAX_RETAINED_CHARS) {
+            out.setLength(0);
+            out.trimToSize();
+        }
+        if (s.in.length > MAX_RETAINED_CHARS) s.in = new char[4096];
+        return result;
+    }
+
+    private static final int MAX_RETAINED_CHARS = 1 << 20;
+
+    /** Cadeia de transdutores + builder de saída de uma thread. */
+    private final class Session {
+        final StringBuilder out = new StringBuilder(4096);
+        char[] in = new char[4096];
+        final Transducer head;
+
+        Session() {
+            Transducer t = new Transducer(null) {
+                @Override
+                public void accept(char c) { out.append(c); }
+
+                @Override
+                public void accept(char[] buf, int off, int len) { out.append(buf, off, len); }
+            };
+            for (int i = rules.size() - 1; i >= 0; i--) t = rules.get(i).newTransducer(t);
+            head = t;
+        }
+    }
+
+    // ===== regras =====
+
+    public static Builder builder() { return new Builder(); }
+
+    public static final class Builder {
+        private final List<Rule> rules = new ArrayList<>();
+        private boolean trim = true;
+
+        /** {@code \r\n} e {@code \r} viram {@code \n}. */
+        public Builder normalizeNewlines() {
+            rules.add(NewlineNormalizer::new);
+            return this;
+        }
+
+        /** Remove ocorrências literais (como {@code String.replace(literal, "")}). */
+        public Builder removeLiteral(String literal) {
+            rules.add(next -> new SpanRemover(next, literal, "", (char) 0));
+            return this;
+        }
+
+        /** Remove {@code open [^forbidden]*? close} (como {@code replaceAll} com essa regex). */
+        public Builder removeDelimited(String open, String close, char forbidden) {
+            rules.add(next -> new SpanRemover(next, open, close, forbidden));
+            return this;
+        }
+
+        /** {@code .\s*\n\s*([upper])} → {@code replacement + $1}. */
+        public Builder sentenceBreaks(String upperChars, String replacement) {
+            rules.add(next -> new SentenceBreak(next, upperChars, replacement));
+            return this;
+        }
+
+        public Builder replaceChar(char from, char to) {
+            rules.add(next -> new Transducer(next) {
+                @Override
+                public void accept(char c) { this.next.accept(c == from ? to : c); }
+
+                @Override
+                public void accept(char[] buf, int off, int len) {
+                    int start = off;
+                    for (int i = off, end = off + len; i < end; i++) {
+                        if (buf[i] != from) continue;
+                        if (i > start) this.next.accept(buf, start, i - start);
+                        this.next.accept(to);
+                        start = i + 1;
+                    }
+                    if (start < off + len) this.next.accept(buf, start, off + len - start);
+                }
+            });
+            return this;
+        }
+
+        /** {@code [ \t]{2,}} → um espaço. */
+        public Builder compactBlanks() {
+            rules.add(BlankCompactor::new);
+            return this;
+        }
+
+        public Builder rule(Rule rule) {
+            rules.add(rule);
+            return this;
+        }
+
+        /** Aplica {@code String.trim()} no resultado (padrão: true). */
+        public Builder trim(boolean trim) {
+            this.trim = trim;
+            return this;
+        }
+
+        public BodyCleaner build() { return new BodyCleaner(rules, trim); }
+    }
+
+    private static final class NewlineNormalizer extends Transducer {
+        private boolean afterCr;
+
+        NewlineNormalizer(Transducer next) { super(next); }
+
+        @Override
+        public void accept(char c) {
+            if (c == '\n' && afterCr) {
+                afterCr = false;
+                return;
+            }
+            afterCr = (c == '\r');
+            next.accept(afterCr ? '\n' : c);
+        }
+
+        @Override
+        public void accept(char[] buf, int off, int len) {
+            int i = off;
+            int end = off + len;
+            while (i < end) {
+                if (afterCr || buf[i] == '\r') {
+                    accept(buf[i++]);
+                    continue;
+                }
+                int start = i;
+                while (i < end && buf[i] != '\r') i++;
+                next.accept(buf, start, i - start);
+            }
+        }
+
+        @Override
+        public void finish() {
+            afterCr = false;
+            super.finish();
+        }
+    }
+
+    /**
+     * Remove {@code open + [^forbidden]*? + close} (ou só {@code open} quando close é vazio).
+     * Segura o candidato enquanto ainda pode casar; ao falhar, solta o primeiro char e
+     * reprocessa o resto, como a busca da regex a partir da próxima posição.
+     */
+    private static final class SpanRemover extends Transducer {
+        private final String open;
+        private final String close;
+        private final char forbidden;
+        private final StringBuilder held = new StringBuilder();
+        /** Índice do primeiro char proibido no miolo, ou -1. */
+        private int firstForbidden = -1;
+
+        SpanRemover(Transducer next, String open, String close, char forbidden) {
+            super(next);
+            this.open = open;
+            this.close = close;
+            this.forbidden = forbidden;
+        }
+
+        @Override
+        public void accept(char c) {
+            int len = held.length();
+            if (len < open.length()) {
+                if (c != open.charAt(len)) {
+                    if (len == 0) {
+                        next.accept(c);
+                    } else {
+                        held.append(c);
+                        fail();
+                    }
+                    return;
+                }
+                held.append(c);
+                if (held.length() == open.length() && close.isEmpty()) reset();
+                return;
+            }
+
+            held.append(c);
+            len++;
+            int closeStart = len - close.length();
+            if (c == forbidden && firstForbidden < 0) firstForbidden = len - 1;
+            if (closeStart >= open.length() && endsWithClose()
+                    && (firstForbidden < 0 || firstForbidden >= closeStart)) {
+                reset(); // casou: descarta o trecho
+                return;
+            }
+            if (firstForbidden >= 0 && closeStart >= firstForbidden) fail();
+        }
+
+        @Override
+        public void accept(char[] buf, int off, int len) {
+            char trigger = open.charAt(0);
+            int i = off;
+            int end = off + len;
+            while (i < end) {
+                if (held.length() > 0 || buf[i] == trigger) {
+                    accept(buf[i++]);
+                    continue;
+                }
+                int start = i;
+                while (i < end && buf[i] != trigger) i++;
+                next.accept(buf, start, i - start);
+            }
+        }
+
+        private boolean endsWithClose() {
+            int base = held.length() - close.length();
+            for (int i = 0; i < close.length(); i++) {
+                if (held.charAt(base + i) != close.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        /** Candidato falhou: solta o 1º char e reprocessa o restante. */
+        private void fail() {
+            String pending = held.substring(1);
+            char first = held.charAt(0);
+            reset();
+            next.accept(first);
+            for (int i = 0; i < pending.length(); i++) accept(pending.charAt(i));
+        }
+
+        private void reset() {
+            held.setLength(0);
+            firstForbidden = -1;
+        }
+
+        @Override
+        public void finish() {
+            while (held.length() > 0) {
+                String pending = held.substring(1);
+                char first = held.charAt(0);
+                reset();
+                next.accept(first);
+                for (int i = 0; i < pending.length(); i++) accept(pending.charAt(i));
+            }
+            super.finish();
+        }
+    }
+
+    /** {@code .\s*\n\s*<upper>} → {@code replacement<upper>}. */
+    private static final class SentenceBreak extends Transducer {
+        private final String upper;
+        private final String replacement;
+        /** "." + brancos retidos enquanto o padrão ainda pode casar. */
+        private final StringBuilder held = new StringBuilder();
+        private boolean sawNewline;
+
+        SentenceBreak(Transducer next, String upper, String replacement) {
+            super(next);
+            this.upper = upper;
+            this.replacement = replacement;
+        }
+
+        @Override
+        public void accept(char c) {
+            if (held.length() > 0) {
+                if (isRegexSpace(c)) {
+                    held.append(c);
+                    if (c == '\n') sawNewline = true;
+                    return;
+                }
+                if (sawNewline && upper.indexOf(c) >= 0) {
+                    for (int i = 0; i < replacement.length(); i++) next.accept(replacement.charAt(i));
+                    next.accept(c);
+                    reset();
+                    return;
+                }
+                release();
+            }
+            if (c == '.') {
+                held.append(c);
+            } else {
+                next.accept(c);
+            }
+        }
+
+        @Override
+        public void accept(char[] buf, int off, int len) {
+            int i = off;
+            int end = off + len;
+            while (i < end) {
+                if (held.length() > 0 || buf[i] == '.') {
+                    accept(buf[i++]);
+                    continue;
+                }
+                int start = i;
+                while (i < end && buf[i] != '.') i++;
+                next.accept(buf, start, i - start);
+            }
+        }
+
+        private void release() {
+            for (int i = 0; i < held.length(); i++) next.accept(held.charAt(i));
+            reset();
+        }
+
+        private void reset() {
+            held.setLength(0);
+            sawNewline = false;
+        }
+
+        @Override
+        public void finish() {
+            release();
+            super.finish();
+        }
+    }
+
+    /** Sequências de 2+ espaços/tabs viram um espaço; um único espaço/tab passa intacto. */
+    private static final class BlankCompactor extends Transducer {
+        private int run;
+        private char first;
+
+        BlankCompactor(Transducer next) { super(next); }
+
+        @Override
+        public void accept(char c) {
+            if (c == ' ' || c == '\t') {
+                if (run++ == 0) first = c;
+                return;
+            }
+            release();
+            next.accept(c);
+        }
+
+        @Override
+        public void accept(char[] buf, int off, int len) {
+            int i = off;
+            int end = off + len;
+            while (i < end) {
+                if (run > 0 || mayStartRun(buf, i, end)) {
+                    accept(buf[i++]);
+                    continue;
+                }
+                // espaço isolado seguido de não-branco passa junto com o trecho
+                int start = i;
+                while (i < end && !mayStartRun(buf, i, end)) i++;
+                next.accept(buf, start, i - start);
+            }
+        }
+
+        /** Tab, ou espaço que não é seguido (neste trecho) por um não-branco. */
+        private static boolean mayStartRun(char[] buf, int i, int end) {
+            char c = buf[i];
+            if (c == '\t') return true;
+            return c == ' ' && (i + 1 >= end || buf[i + 1] == ' ' || buf[i + 1] == '\t');
+        }
+
+        private void release() {
+            if (run == 1) next.accept(first);
+            else if (run > 1) next.accept(' ');
+            run = 0;
+        }
+
+        @Override
+        public void finish() {
+            release();
+            super.finish();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.btg.pactual.hub.news;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool limitado de buffers de char reutilizáveis para montar mensagens WebSocket.
+ * A capacidade inicial dos buffers acompanha a média móvel do tamanho das mensagens,
+ * e buffers que cresceram além de {@code maxRetainedChars} não voltam ao pool.
+ * Thread-safe: o buffer pode ser devolvido por uma thread diferente da que o obteve.
+ */
+public class CharBufferPool {
+
+    private static final int MIN_CAPACITY = 4 * 1024;
+
+    private final ConcurrentLinkedDeque<Buffer> free = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger freeCount = new AtomicInteger();
+    private final int maxPooled;
+    private final int maxRetainedChars;
+
+    // média móvel (EWMA, alfa = 1/8) do tamanho das mensagens completas
+    private volatile int avgChars = MIN_CAPACITY;
+
+    public CharBufferPool(int maxPooled, int maxRetainedChars) {
+        this.maxPooled = maxPooled;
+        this.maxRetainedChars = maxRetainedChars;
+    }
+
+    public Buffer acquire() {
+        Buffer b = free.pollFirst();
+        if (b != null) {
+            freeCount.decrementAndGet();
+            b.length = 0;
+            return b;
+        }
+        return new Buffer(this, new char[adaptiveCapacity()]);
+    }
+
+    void release(Buffer b) {
+        int len = b.length;
+        avgChars = avgChars + ((len - avgChars) >> 3);
+        b.length = 0;
+        b.receivedNanos = 0;
+        if (b.data.length > maxRetainedChars) return; // não retém buffers gigantes
+        if (freeCount.incrementAndGet() > maxPooled) {
+            freeCount.decrementAndGet();
+            return;
+        }
+        free.offerFirst(b);
+    }
+
+    private int adaptiveCapacity() {
+        int target = Math.max(MIN_CAPACITY, avgChars + (avgChars >> 1));
+        int cap = Integer.highestOneBit(target - 1) << 1;
+        return Math.min(Math.max(cap, MIN_CAPACITY), Math.max(MIN_CAPACITY, maxRetainedChars));
+    }
+
+    public int pooled() { return freeCount.get(); }
+
+    public int averageMessageChars() { return avgChars; }
+
+    /** Buffer emprestado do pool; devolva com {@link #release()} quando não for mais usado. */
+    public static final class Buffer {
+        private final CharBufferPool pool;
+        char[] data;
+        int length;
+        long receivedNanos;
+
+        private Buffer(CharBufferPool pool, char[] data) {
+            this.pool = pool;
+            this.data = data;
+        }
+
+        public char[] array() { return data; }
+        public int length() { return length; }
+        /** System.nanoTime() de quando a mensagem ficou completa (0 se não marcada). */
+        public long receivedNanos() { return receivedNanos; }
+
+        void ensureCapacity(int needed) {
+            if (needed <= data.length) return;
+            int cap = Math.max(needed, data.length << 1);
+            char[] n = new char[cap];
+            System.arraycopy(data, 0, n, 0, length);
+            data = n;
+        }
+
+        public void release() { pool.release(this); }
+
+        @Override
+        public String toString() { return new String(data, 0, length); }
+    }
+}
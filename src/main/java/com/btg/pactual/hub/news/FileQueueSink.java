@@ -1,43 +1,85 @@
 package com.btg.pactual.hub.news;
 
+import com.btg.pactual.hub.news.constants.AppConstants;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.LocalDateTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Destino de log/arquivo para MRN, com separação por idioma e geração de versões "limpas".
  */
-public class FileQueueSink {
+public class FileQueueSink implements AutoCloseable {
 
-    private final Path logPath = Path.of("websocket_log.txt");
-    private final Path baseDir = Path.of("mrn_noticias"); // raiz onde ficarão as subpastas por idioma
+    private final Path baseDir; // raiz das subpastas por idioma (o replay lê a mesma)
     private final ObjectMapper mapper = new ObjectMapper();
+    private final NewsJournal journal;
+    private final NewsDedupCache dedup;
+    private MappedNewsJournal confirmJournal; // aberto só quando um acerto do Bloom precisa ser confirmado
+    private final LatencyMetrics latency = LatencyMetrics.shared();
+    private final AsyncLogger logger = new AsyncLogger(AsyncLogger.Config.fromEnv());
+    private final AsyncLogger.Target log;
+    private final AsyncLogger.Target payloadLog;
+    // dead letters gravados fora da thread que despejou a história (reassemble/wheel)
+    private final ThreadPoolExecutor deadLetters = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1024), r -> {
+                Thread t = new Thread(r, "mrn-deadletter");
+                t.setDaemon(true);
+                return t;
+            });
 
     public FileQueueSink() {
+        this(NewsDedupCache.shared());
+    }
+
+    public FileQueueSink(NewsDedupCache dedup) {
+        this(Path.of(AppConstants.JOURNAL_PATH), Path.of(""), dedup);
+    }
+
+    /** Journal em baseDir e websocket_log.txt/ws_payloads.log em logDir (ex.: diretório temporário). */
+    public FileQueueSink(Path baseDir, Path logDir, NewsDedupCache dedup) {
+        this.baseDir = baseDir;
+        this.dedup = dedup;
+        this.log = logger.target(logDir.resolve("websocket_log.txt"), AsyncLogger.LINE, System.out);
+        this.payloadLog = logger.target(logDir.resolve("ws_payloads.log"), AsyncLogger.BLOCK, null);
         try {
-            if (Files.notExists(logPath)) Files.createFile(logPath);
             if (Files.notExists(baseDir)) Files.createDirectories(baseDir);
+            journal = new NewsJournal(baseDir, NewsJournal.Config.fromEnv());
             appendLine("===== START at " + LocalDateTime.now() + " =====");
         } catch (IOException e) {
             throw new RuntimeException("Erro ao preparar diretórios/arquivos de log.", e);
         }
     }
 
-    public synchronized void appendLine(String line) throws IOException {
-        String ts = "[" + LocalDateTime.now() + "] " + line + System.lineSeparator();
-        System.out.print(ts);
-        Files.writeString(logPath, ts, StandardOpenOption.APPEND);
+    /** Linha com timestamp no websocket_log.txt (e stdout). Assíncrono: nunca bloqueia em disco. */
+    public void appendLine(String line) {
+        log.log(line);
+    }
+
+    /** Bloco "==== label @ ts ====" no ws_payloads.log. Assíncrono. */
+    public void appendPayload(String label, String payload) {
+        payloadLog.log(label, payload);
     }
 
     /**
-     * Salva a notícia em:
-     * - JSON original:   mrn_noticias/<language>/<guid>.json
-     * - JSON tratado:    mrn_noticias/<language>/<guid>_clean.json
+     * Grava a notícia no journal do idioma (mrn_noticias/<language>/*.seg) como dois registros
+     * com o mesmo GUID:
+     * - RAW:   JSON original
+     * - CLEAN: JSON tratado (campo "_cleaned": true)
+     * Reenvio idêntico (mesmo altId e conteúdo, ver {@link NewsDedupCache}) é descartado sem I/O;
+     * a história só entra no dedup depois que os dois registros foram gravados. Por último vai o
+     * marcador {@link NewsJournal#KIND_STORY} do altId, com o hash do conteúdo: é nele que um
+     * acerto do Bloom é confirmado, então uma revisão (mesmo altId, GUID novo) é reconhecida
+     * mesmo fora da janela exata.
      *
      * O campo "body" é tratado para remover:
      * 1) ((Tradução automatizada... rtrsauto))
@@ -46,47 +88,146 @@ public class FileQueueSink {
      *    - ".\n<LetraMaiúscula>" vira ".<br><LetraMaiúscula>"
      *    - Demais \n viram espaço simples
      */
-    public synchronized void enqueueDecodedNews(String newsJson, String guid) {
+    public void enqueueDecodedNews(String newsJson, String guid) {
+        enqueueDecodedNews(newsJson.getBytes(StandardCharsets.UTF_8), guid);
+    }
+
+    /** Mesmo que {@link #enqueueDecodedNews(String, String)}, a partir dos bytes UTF-8 do JSON (sem cópia para String). */
+    public void enqueueDecodedNews(byte[] newsJson, String guid) {
+        enqueueDecodedNews(newsJson, guid, 0);
+    }
+
+    /**
+     * Idem, com o instante (System.nanoTime()) do frame que completou a história; 0 = desconhecido.
+     * Gravado o registro, alimenta as latências clean, frame_to_persisted e source_to_persisted.
+     */
+    public void enqueueDecodedNews(byte[] newsJson, String guid, long receivedNanos) {
         try {
             // 1) Descobrir idioma
             JsonNode root = mapper.readTree(newsJson);
-            String lang = root.path("language").asText("unknown").toLowerCase().trim();
-            if (lang.isEmpty()) lang = "unknown";
+            String lang = languageOf(root);
 
-            // 2) Criar pasta
-            Path langDir = baseDir.resolve(lang);
-            Files.createDirectories(langDir);
+            String id = (guid == null || guid.isBlank()) ? String.valueOf(System.currentTimeMillis()) : guid;
 
-            // 3) Nome base
-            String safeGuid = (guid == null || guid.isBlank())
-                    ? String.valueOf(System.currentTimeMillis())
-                    : guid.replaceAll("[^A-Za-z0-9._-]", "_");
+            // 2) Dedup antes de qualquer I/O: reenvio idêntico é descartado, revisão é gravada
+            //    (no journal o registro mais recente do GUID prevalece)
+            String storyId = root.path("altId").asText(id);
+            String body = root.path("body").asText("");
+            long contentHash = NewsDedupCache.contentHash(lang, root.path("headline").asText(""), body);
+            NewsDedupCache.Result seen = dedup.check(storyId, contentHash, () -> storedHash(storyId, id));
+            if (seen == NewsDedupCache.Result.DUPLICATE) {
+                appendLine("[NEWS-DUP] lang=" + lang + " id=" + storyId + " guid=" + id);
+                return;
+            }
 
-            // --- SALVAR JSON CRU ---
-            Path rawTarget = uniquePath(langDir, safeGuid + ".json");
-            Files.writeString(rawTarget, newsJson, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW);
-            appendLine("[NEWS-SAVED] (RAW)   lang=" + lang + " file=" + rawTarget.toAbsolutePath());
+            // --- JSON CRU ---
+            NewsJournal.Position raw = journal.append(lang, id, NewsJournal.KIND_RAW, newsJson);
 
             // --- TRATAR BODY ---
-            ObjectNode cleanRoot = (root.isObject()) ? (ObjectNode) root.deepCopy() : mapper.createObjectNode();
-            String body = root.path("body").asText("");
-            String cleanedBody = cleanBody(body);
+            ObjectNode cleanRoot = (root.isObject()) ? (ObjectNode) root : mapper.createObjectNode();
+            long cleanStart = System.nanoTime();
+            String cleanedBody = cleanBody(lang, body);
+            latency.stage(LatencyMetrics.CLEAN).recordSince(cleanStart);
             cleanRoot.put("body", cleanedBody);
             cleanRoot.put("_cleaned", true); // flag opcional
 
-            String cleanJson = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(cleanRoot);
+            NewsJournal.Position clean = journal.append(lang, id, NewsJournal.KIND_CLEAN, mapper.writeValueAsBytes(cleanRoot));
+            journal.append(lang, storyId, NewsJournal.KIND_STORY, storyMarker(contentHash, id));
+            dedup.record(storyId, contentHash);
+            latency.stage(LatencyMetrics.FRAME_TO_PERSISTED).recordSince(receivedNanos);
+            latency.recordSinceInstant(LatencyMetrics.SOURCE_TO_PERSISTED,
+                    LatencyMetrics.parseInstant(root.path("versionCreated").asText(null)));
+            appendLine((seen == NewsDedupCache.Result.REVISION ? "[NEWS-REVISION]" : "[NEWS-SAVED]")
+                    + " lang=" + lang + " guid=" + id + " raw=" + raw + " clean=" + clean);
+
+        } catch (Exception e) {
+            appendLine("[NEWS-SAVE-ERROR] " + e.getMessage());
+        }
+    }
+
+    /** Payload do marcador da história: {@code [long contentHash][GUID da versão em UTF-8]}. */
+    private static byte[] storyMarker(long contentHash, String guid) {
+        byte[] g = guid.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(8 + g.length).putLong(contentHash).put(g).array();
+    }
 
-            Path cleanTarget = uniquePath(langDir, safeGuid + "_clean.json");
-            Files.writeString(cleanTarget, cleanJson, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW);
-            appendLine("[NEWS-SAVED] (CLEAN) lang=" + lang + " file=" + cleanTarget.toAbsolutePath());
+    /**
+     * Hash do conteúdo gravado para a história (confirma um acerto do Bloom), ou null: o marcador
+     * mais recente do altId; sem marcador (journal gravado antes dele), o RAW deste GUID.
+     */
+    private Long storedHash(String storyId, String guid) throws IOException {
+        NewsJournalReader.Record marker;
+        NewsJournalReader.Record r;
+        synchronized (this) {
+            if (confirmJournal == null) confirmJournal = MappedNewsJournal.open(baseDir);
+            else confirmJournal.refresh();
+            marker = confirmJournal.findStory(storyId);
+            r = marker == null ? confirmJournal.findRaw(guid) : null;
+        }
+        if (marker != null) return ByteBuffer.wrap(marker.payload).getLong();
+        if (r == null) return null;
+        JsonNode root = mapper.readTree(r.payload);
+        return NewsDedupCache.contentHash(languageOf(root), root.path("headline").asText(""), root.path("body").asText(""));
+    }
 
+    /** Idioma da notícia como nome de pasta do journal ("unknown" se ausente ou inválido). */
+    private static String languageOf(JsonNode root) {
+        String lang = root.path("language").asText("unknown").toLowerCase().trim();
+        if (lang.isEmpty() || lang.startsWith("_")) lang = "unknown";
+        return lang.replaceAll("[^a-z0-9._-]", "_");
+    }
+
+    /** Leitor sobre o journal gravado por este sink. */
+    public NewsJournalReader journalReader() {
+        return new NewsJournalReader(journal.root());
+    }
+
+    /**
+     * Guarda uma história que expirou incompleta (bytes parciais, ainda comprimidos) em
+     * mrn_noticias/_deadletter/<chave>_<epochMillis>.bin para análise posterior. A gravação é
+     * feita por uma thread própria; com a fila dela cheia (disco travado) a história é descartada
+     * e logada, sem bloquear quem chamou.
+     */
+    public void enqueueDeadLetter(String key, MrnPayload partialPayload, int partsReceived, int expectedTotal) {
+        try {
+            deadLetters.execute(() -> writeDeadLetter(key, partialPayload, partsReceived, expectedTotal));
+        } catch (RejectedExecutionException e) {
+            appendLine("[MRN-DEADLETTER-DROP] key=" + key + " parts=" + partsReceived + "/" + expectedTotal
+                    + " fila de gravação cheia");
+        }
+    }
+
+    private void writeDeadLetter(String key, MrnPayload partialPayload, int partsReceived, int expectedTotal) {
+        try {
+            Path dir = baseDir.resolve("_deadletter");
+            Files.createDirectories(dir);
+            String safeKey = (key == null || key.isBlank()) ? "UNKN" : key.replaceAll("[^A-Za-z0-9._-]", "_");
+            Path target = uniquePath(dir, safeKey + "_" + System.currentTimeMillis() + ".bin");
+            Files.write(target, partialPayload == null ? new byte[0] : partialPayload.toByteArray(),
+                    StandardOpenOption.CREATE_NEW);
+            appendLine("[MRN-DEADLETTER] key=" + key + " parts=" + partsReceived + "/" + expectedTotal
+                    + " file=" + target.toAbsolutePath());
         } catch (Exception e) {
-            try {
-                appendLine("[NEWS-SAVE-ERROR] " + e.getMessage());
-            } catch (IOException ignored) {}
+            appendLine("[MRN-DEADLETTER-ERROR] " + e.getMessage());
         }
     }
 
+    /** Grava os dead letters pendentes, faz o fsync final do journal e esvazia os logs. */
+    @Override
+    public void close() {
+        deadLetters.shutdown();
+        try {
+            deadLetters.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (confirmJournal != null) confirmJournal.close();
+        }
+        journal.close();
+        logger.close();
+    }
+
     /** Garante nome único (ex: file_1.json, file_2.json, etc.) */
     private Path uniquePath(Path dir, String fileName) {
         Path target = dir.resolve(fileName);
@@ -112,27 +253,8 @@ public class FileQueueSink {
         return candidate;
     }
 
-    /** Aplica as regras de limpeza no campo "body". */
-    private String cleanBody(String body) {
-        if (body == null) return "";
-
-        String txt = body.replace("\r\n", "\n").replace("\r", "\n");
-
-        // Remover aviso da Reuters (DOTALL -> atravessa quebras)
-        txt = txt.replaceAll("\\(\\(Tradução automatizada[^)]*?rtrsauto\\)\\)", "");
-
-        // Remover "(link)"
-        txt = txt.replace("(link)", "");
-
-        // ".\n" seguido de letra maiúscula vira ".<br>"
-        txt = txt.replaceAll("\\.\\s*\\n\\s*([A-ZÁÂÃÀÉÊÍÓÔÕÚÜÇ])", ".<br>$1");
-
-        // Outras quebras -> espaço
-        txt = txt.replace("\n", " ");
-
-        // Compactar espaços múltiplos
-        txt = txt.replaceAll("[ \\t]{2,}", " ").trim();
-
-        return txt;
+    /** Aplica as regras de limpeza do idioma no campo "body" (ver {@link BodyCleaner#standard()}). */
+    private String cleanBody(String lang, String body) {
+        return BodyCleaner.forLanguage(lang).clean(body);
     }
 }
@@ -0,0 +1,136 @@
+package com.btg.pactual.hub.news;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Junção das conexões redundantes (ativa + standby) que recebem os mesmos itens: para cada
+ * fragmento (GUID + FRAG_NUM) só a primeira cópia passa, venha de qual conexão vier.
+ *
+ * Sem lock: tabela de endereçamento aberto (sondagem linear de PROBES slots) de impressões
+ * digitais de 64 bits em um AtomicLongArray, ocupadas por CAS. Duas gerações trocadas a cada
+ * janela (a mais antiga é descartada), publicadas juntas num só objeto imutável: quem consulta
+ * nunca vê a geração nova ao lado da antiga de antes da troca. Uma cópia atrasada mais que duas
+ * janelas passa de novo e cai no dedup por história ({@link NewsDedupCache}).
+ *
+ * Overflow (PROBES slots ocupados por outras impressões): o fragmento passa sem ser registrado e
+ * nenhuma entrada viva é sobrescrita. Só a cópia da outra conexão deste mesmo fragmento pode
+ * passar também; o reassembler trata o FRAG_NUM repetido e o dedup por história descarta a
+ * história repetida. Overflows frequentes pedem MRN_MERGE_SLOTS maior.
+ */
+public class FirstArrivalMerge {
+
+    /** Tamanho da tabela e janela (variáveis MRN_MERGE_*). */
+    public static final class Config {
+        public final int slots;
+        public final long windowMillis;
+
+        public Config(int slots, long windowMillis) {
+            this.slots = slots;
+            this.windowMillis = windowMillis;
+        }
+
+        public static Config fromEnv() {
+            Map<String, String> env = System.getenv();
+            return new Config(
+                    Integer.parseInt(env.getOrDefault("MRN_MERGE_SLOTS", String.valueOf(1 << 18))),
+                    Long.parseLong(env.getOrDefault("MRN_MERGE_WINDOW_SECONDS", "300")) * 1000L);
+        }
+    }
+
+    private static final int PROBES = 16;
+
+    /** Par de gerações trocado inteiro na rotação. */
+    private static final class Generations {
+        final AtomicLongArray current;
+        final AtomicLongArray previous;
+        final long startedAt;
+
+        Generations(AtomicLongArray current, AtomicLongArray previous, long startedAt) {
+            this.current = current;
+            this.previous = previous;
+            this.startedAt = startedAt;
+        }
+    }
+
+    private final long windowMillis;
+    private final int mask;
+    private final Object rotateLock = new Object();
+    private volatile Generations generations;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+
+    public FirstArrivalMerge(Config config) {
+        int size = Integer.highestOneBit(Math.max(PROBES, config.slots - 1) << 1);
+        this.mask = size - 1;
+        this.windowMillis = config.windowMillis;
+        this.generations = new Generations(new AtomicLongArray(size), new AtomicLongArray(size), System.currentTimeMillis());
+    }
+
+    /**
+     * true se esta é a primeira cópia do fragmento (deve seguir para o pipeline); false se outra
+     * conexão já entregou. fragNum 0 = mensagem sem FRAGMENT (flush) da história.
+     */
+    public boolean firstArrival(String guid, int fragNum) {
+        Generations g = rotateIfNeeded();
+        long fp = fingerprint(guid, fragNum);
+        AtomicLongArray prev = g.previous;
+        AtomicLongArray cur = g.current;
+        int start = (int) (fp ^ (fp >>> 32)) & mask;
+        for (int i = 0; i < PROBES; i++) {
+            if (prev.get((start + i) & mask) == fp) {
+                duplicates.increment();
+                return false;
+            }
+        }
+        for (int i = 0; i < PROBES; i++) {
+            int idx = (start + i) & mask;
+            long v = cur.get(idx);
+            if (v == 0) {
+                if (cur.compareAndSet(idx, 0, fp)) {
+                    accepted.increment();
+                    return true;
+                }
+                v = cur.get(idx); // outra thread ocupou: pode ter sido a mesma impressão
+            }
+            if (v == fp) {
+                duplicates.increment();
+                return false;
+            }
+        }
+        overflows.increment(); // passa sem registrar (ver overflow na doc da classe)
+        accepted.increment();
+        return true;
+    }
+
+    /** Gerações vigentes, trocadas antes se a janela da corrente acabou. */
+    private Generations rotateIfNeeded() {
+        Generations g = generations;
+        if (System.currentTimeMillis() - g.startedAt < windowMillis) return g;
+        synchronized (rotateLock) {
+            g = generations;
+            if (System.currentTimeMillis() - g.startedAt < windowMillis) return g;
+            AtomicLongArray fresh = new AtomicLongArray(g.current.length());
+            g = new Generations(fresh, g.current, System.currentTimeMillis());
+            generations = g;
+            return g;
+        }
+    }
+
+    private static long fingerprint(String guid, int fragNum) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0, n = guid.length(); i < n; i++) h = (h ^ guid.charAt(i)) * 0x100000001b3L;
+        h ^= (long) fragNum * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h; // 0 marca slot vazio
+    }
+
+    public String stats() {
+        return "merge{accepted=" + accepted.sum() + ", dup=" + duplicates.sum() + ", overflow=" + overflows.sum() + "}";
+    }
+}
@@ -0,0 +1,78 @@
+package com.btg.pactual.hub.news;
+
+import java.nio.CharBuffer;
+
+/**
+ * Acumula os pedaços de texto entregues pelo WebSocket ({@code onText(..., last)}) num buffer
+ * do {@link CharBufferPool}, copiando direto do CharSequence (sem toString por pedaço).
+ * A mensagem só é entregue quando {@code last == true}. Mensagens acima de
+ * {@code maxMessageChars} são descartadas até o fim do frame.
+ * Uma instância por conexão (onText é serializado pelo HttpClient).
+ */
+public class FrameAccumulator {
+
+    private final CharBufferPool pool;
+    private final int maxMessageChars;
+
+    private CharBufferPool.Buffer current;
+    private boolean overflow;
+    private long overflowCount;
+
+    public FrameAccumulator(CharBufferPool pool, int maxMessageChars) {
+        this.pool = pool;
+        this.maxMessageChars = maxMessageChars;
+    }
+
+    /**
+     * Acrescenta um pedaço. Retorna a mensagem completa quando {@code last}, ou null se ainda
+     * faltam pedaços (ou se a mensagem estourou o limite e foi descartada).
+     * O chamador passa a ser dono do buffer retornado e deve liberá-lo. O buffer sai marcado com o
+     * instante em que o último pedaço chegou ({@link CharBufferPool.Buffer#receivedNanos()}).
+     */
+    public CharBufferPool.Buffer append(CharSequence chunk, boolean last) {
+        if (!overflow) {
+            if (current == null) current = pool.acquire();
+            int len = chunk.length();
+            int needed = current.length + len;
+            if (needed > maxMessageChars) {
+                overflow = true;
+                overflowCount++;
+                current.release();
+                current = null;
+            } else {
+                current.ensureCapacity(needed);
+                copy(chunk, current.data, current.length, len);
+                current.length = needed;
+            }
+        }
+        if (!last) return null;
+
+        CharBufferPool.Buffer done = current;
+        current = null;
+        overflow = false;
+        if (done != null) done.receivedNanos = System.nanoTime();
+        return done;
+    }
+
+    /** Descarta o que estiver parcialmente acumulado (ex.: reconexão). */
+    public void reset() {
+        if (current != null) current.release();
+        current = null;
+        overflow = false;
+    }
+
+    public long overflowCount() { return overflowCount; }
+
+    private static void copy(CharSequence src, char[] dst, int off, int len) {
+        if (src instanceof String) {
+            ((String) src).getChars(0, len, dst, off);
+        } else if (src instanceof CharBuffer) {
+            CharBuffer cb = (CharBuffer) src;
+            cb.get(cb.position(), dst, off, len);
+        } else if (src instanceof StringBuilder) {
+            ((StringBuilder) src).getChars(0, len, dst, off);
+        } else {
+            for (int i = 0; i < len; i++) dst[off + i] = src.charAt(i);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.btg.pactual.hub.news;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma log-linear de latências em microssegundos, no estilo do HdrHistogram: cada potência
+ * de 2 é dividida em 128 faixas iguais (erro relativo < 0,8%), de 1µs até ~12 dias. Gravar é um
+ * incrementAndGet num AtomicLongArray (sem lock, sem alocação), então pode ser chamado por
+ * qualquer thread do pipeline; percentis são calculados sobre uma cópia das contagens.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    private static final int BUCKETS = (MAX_BITS - SUB_BITS + 1) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /** Grava uma latência (µs); negativos (relógios fora de sincronia) contam como 0. */
+    public void recordMicros(long micros) {
+        long v = Math.min(Math.max(0, micros), MAX_VALUE);
+        counts.incrementAndGet(index(v));
+        total.incrementAndGet();
+        sum.addAndGet(v);
+        long m;
+        while (v > (m = max.get()) && !max.compareAndSet(m, v)) {
+            // tenta de novo
+        }
+    }
+
+    /** Grava o tempo decorrido desde startNanos (System.nanoTime()); startNanos 0 = desconhecido, ignora. */
+    public void recordSince(long startNanos) {
+        if (startNanos != 0) recordMicros((System.nanoTime() - startNanos) / 1_000);
+    }
+
+    static int index(long v) {
+        if (v < SUB_COUNT) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((v >>> shift) - SUB_COUNT);
+    }
+
+    /** Maior valor que cai na mesma faixa de idx. */
+    static long highestEquivalent(int idx) {
+        if (idx < SUB_COUNT) return idx;
+        int shift = (idx >>> SUB_BITS) - 1;
+        long lo = (long) ((idx & (SUB_COUNT - 1)) + SUB_COUNT) << shift;
+        return lo + (1L << shift) - 1;
+    }
+
+    public long count() { return total.get(); }
+
+    public long maxMicros() { return max.get(); }
+
+    /** Percentil (0-100) em µs; 0 se vazio. */
+    public long percentileMicros(double percentile) {
+        return percentiles(snapshot(), percentile)[0];
+    }
+
+    private long[] snapshot() {
+        long[] c = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) c[i] = counts.get(i);
+        return c;
+    }
+
+    private long[] percentiles(long[] c, double... ps) {
+        long n = 0;
+        for (long x : c) n += x;
+        long[] out = new long[ps.length];
+        if (n == 0) return out;
+        long cap = max.get();
+        for (int p = 0; p < ps.length; p++) {
+            long rank = Math.max(1, (long) Math.ceil(ps[p] / 100.0 * n));
+            long seen = 0;
+            for (int i = 0; i < c.length; i++) {
+                seen += c[i];
+                if (seen >= rank) {
+                    out[p] = Math.min(highestEquivalent(i), cap);
+                    break;
+                }
+            }
+        }
+        return out;
+    }
+
+    /** count, mean, p50, p90, p99, p999 e max em milissegundos. */
+    public Map<String, Object> summaryMillis() {
+        long[] p = percentiles(snapshot(), 50, 90, 99, 99.9);
+        long n = total.get();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("count", n);
+        m.put("mean", n == 0 ? 0.0 : sum.get() / 1000.0 / n);
+        m.put("p50", p[0] / 1000.0);
+        m.put("p90", p[1] / 1000.0);
+        m.put("p99", p[2] / 1000.0);
+        m.put("p999", p[3] / 1000.0);
+        m.put("max", max.get() / 1000.0);
+        return m;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        total.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+}
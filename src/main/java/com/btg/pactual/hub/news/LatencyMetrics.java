@@ -0,0 +1,88 @@
+package com.btg.pactual.hub.news;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latências por salto, do timestamp da Refinitiv até o registro persistido. Instância única do
+ * processo ({@link #shared()}): no processo do cliente WebSocket o {@link MrnPipeline} e o
+ * {@link FileQueueSink} alimentam os saltos até o journal (expostos pelo MetricsHttpServer do
+ * cliente); na aplicação Spring o gravador do Mongo alimenta received/source_to_mongo (expostos
+ * pelo LatencyController). Cada processo só vê os próprios saltos.
+ *
+ * Tempos internos usam System.nanoTime() a partir do frame que completou a história (o último
+ * fragmento). Os saltos "source_to_*" comparam o versionCreated da notícia com o relógio local,
+ * então incluem a diferença de relógio entre a Refinitiv e esta máquina.
+ */
+public final class LatencyMetrics {
+
+    /** Frame recebido → história montada (fila de receive/reassemble + reagrupamento). */
+    public static final String FRAME_TO_REASSEMBLED = "frame_to_reassembled";
+    /** História montada → JSON descomprimido (fila de decode + inflate). */
+    public static final String REASSEMBLED_TO_DECODED = "reassembled_to_decoded";
+    /** Espera na fila do decode (parte de reassembled_to_decoded). */
+    public static final String DECODE_QUEUE_WAIT = "decode_queue_wait";
+    /** Inflate de uma história num worker do decode. */
+    public static final String DECODE_SERVICE = "decode_service";
+    /** Limpeza do body. */
+    public static final String CLEAN = "clean";
+    /** JSON descomprimido → gravado no journal (fila de persist + dedup + limpeza + append). */
+    public static final String DECODED_TO_PERSISTED = "decoded_to_persisted";
+    /** Frame recebido → gravado no journal. */
+    public static final String FRAME_TO_PERSISTED = "frame_to_persisted";
+    /** versionCreated da Refinitiv → gravado no journal. */
+    public static final String SOURCE_TO_PERSISTED = "source_to_persisted";
+    /** receivedAt do documento → confirmado pelo bulk do Mongo. */
+    public static final String RECEIVED_TO_MONGO = "received_to_mongo";
+    /** versionCreated da Refinitiv → confirmado pelo bulk do Mongo. */
+    public static final String SOURCE_TO_MONGO = "source_to_mongo";
+
+    private static final LatencyMetrics SHARED = new LatencyMetrics();
+
+    public static LatencyMetrics shared() { return SHARED; }
+
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+
+    private LatencyMetrics() {
+        for (String stage : new String[] {FRAME_TO_REASSEMBLED, REASSEMBLED_TO_DECODED, DECODE_QUEUE_WAIT,
+                DECODE_SERVICE, CLEAN, DECODED_TO_PERSISTED,
+                FRAME_TO_PERSISTED, SOURCE_TO_PERSISTED, RECEIVED_TO_MONGO, SOURCE_TO_MONGO}) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    /** Histograma do salto (um dos nomes acima). */
+    public LatencyHistogram stage(String name) {
+        LatencyHistogram h = histograms.get(name);
+        if (h == null) throw new IllegalArgumentException("salto desconhecido: " + name);
+        return h;
+    }
+
+    /** Grava "agora - instante" (relógio de parede); ignora instante null. */
+    public void recordSinceInstant(String name, Instant since) {
+        if (since != null) stage(name).recordMicros((System.currentTimeMillis() - since.toEpochMilli()) * 1_000);
+    }
+
+    /** ISO-8601 → Instant; null se ausente ou inválido. */
+    public static Instant parseInstant(String iso) {
+        if (iso == null || iso.isBlank()) return null;
+        try {
+            return Instant.parse(iso);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /** Resumo (em ms) de todos os saltos, na ordem do fluxo. */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> out = new LinkedHashMap<>();
+        histograms.forEach((name, h) -> out.put(name, h.summaryMillis()));
+        return out;
+    }
+
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+}
@@ -0,0 +1,343 @@
+package com.btg.pactual.hub.news;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Visão somente-leitura do {@link NewsJournal} com os segmentos mapeados em memória e um índice
+ * GUID → (segmento, offset) fora do heap.
+ *
+ * O índice é uma tabela de endereçamento aberto num {@link ByteBuffer} direto; cada slot tem
+ * {@code [long hash][int segmento][int offset]} (16 bytes). O hash (64 bits, GUID + kind) decide o
+ * slot e o GUID é conferido no próprio registro mapeado, então colisões não dão falso positivo.
+ * Quando o mesmo GUID/kind aparece mais de uma vez vale o registro mais recente.
+ *
+ * O índice é montado a partir dos arquivos .idx (sem ler os payloads); segmentos sem .idx são
+ * varridos. É um snapshot: registros gravados depois de {@link #open} só aparecem após {@link #refresh},
+ * que é incremental — mapeia só os segmentos novos e remapeia o último de cada idioma se ele
+ * cresceu, indexando a partir de onde parou. Feito para uma instância de vida longa.
+ *
+ * Cada segmento é mapeado numa janela só, então precisa caber em 2 GB ({@link NewsJournal.Config}
+ * recusa JOURNAL_SEGMENT_BYTES maior); um segmento maior faz o refresh falhar em vez de sumir
+ * com os registros do fim. O Java não desmapeia na hora: {@link #close} solta as referências e o
+ * GC libera mapeamentos e índice.
+ */
+public class MappedNewsJournal implements AutoCloseable {
+
+    private static final int SLOT = 16;
+    private static final int MIN_SLOTS = 1 << 12;
+
+    /** Segmento mapeado. */
+    private static final class Segment {
+        final String language;
+        final Path path;
+        final long start;
+        final MappedByteBuffer buffer;
+        /** Início do próximo segmento do mesmo idioma (limite superior dos timestamps), ou Long.MAX_VALUE. */
+        volatile long end = Long.MAX_VALUE;
+        /** Fim do último registro completo já indexado. */
+        int indexed;
+
+        Segment(String language, Path path, MappedByteBuffer buffer) {
+            this.language = language;
+            this.path = path;
+            this.start = NewsJournalReader.segmentStart(path);
+            this.buffer = buffer;
+        }
+    }
+
+    @FunctionalInterface
+    public interface RecordVisitor {
+        /** @return false para interromper a varredura */
+        boolean visit(String language, NewsJournalReader.Record record) throws Exception;
+    }
+
+    private final Path root;
+    private final NewsJournalReader files;
+    /** Só cresce (ou troca um segmento pelo remapeamento maior), então a posição no índice não muda. */
+    private volatile List<Segment> segments = new ArrayList<>();
+    private final Map<Path, Integer> positions = new HashMap<>();
+    private final Map<String, Integer> lastByLanguage = new HashMap<>();
+    private ByteBuffer table = ByteBuffer.allocateDirect(MIN_SLOTS * SLOT);
+    private int mask = MIN_SLOTS - 1;
+    private int size;
+    private boolean closed;
+
+    private MappedNewsJournal(Path root) {
+        this.root = root;
+        this.files = new NewsJournalReader(root);
+    }
+
+    /** Mapeia todos os segmentos sob {@code root} e monta o índice. */
+    public static MappedNewsJournal open(Path root) throws IOException {
+        MappedNewsJournal j = new MappedNewsJournal(root);
+        j.refresh();
+        return j;
+    }
+
+    /**
+     * Traz o que foi gravado desde a última chamada: mapeia e indexa segmentos novos e, se o último
+     * segmento de um idioma cresceu, remapeia e indexa só os registros novos.
+     */
+    public synchronized void refresh() throws IOException {
+        ensureOpen();
+        List<Segment> segs = new ArrayList<>(segments);
+        for (String lang : files.languages()) {
+            for (Path p : files.segments(lang)) {
+                Integer pos = positions.get(p);
+                if (pos != null && !pos.equals(lastByLanguage.get(lang))) continue; // fechado: não muda mais
+                long size = Files.size(p);
+                if (pos != null && size <= segs.get(pos).buffer.capacity()) continue;
+                Segment s = map(lang, p, size);
+                if (pos == null) {
+                    pos = segs.size();
+                    segs.add(s);
+                    positions.put(p, pos);
+                    Integer prev = lastByLanguage.put(lang, pos);
+                    if (prev != null) segs.get(prev).end = s.start;
+                } else {
+                    Segment old = segs.get(pos);
+                    s.end = old.end;
+                    s.indexed = old.indexed;
+                    segs.set(pos, s);
+                }
+            }
+        }
+        // índice atualizado antes de publicar a lista: find nunca vê posição sem segmento
+        List<Segment> before = segments;
+        segments = segs;
+        for (int i = 0; i < segs.size(); i++) {
+            if (i >= before.size() || before.get(i) != segs.get(i)) indexSegment(i);
+        }
+    }
+
+    private static Segment map(String lang, Path p, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("segmento " + p + " tem " + size + " bytes; o mapeamento suporta até "
+                    + Integer.MAX_VALUE + " (reduza JOURNAL_SEGMENT_BYTES)");
+        }
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            return new Segment(lang, p, ch.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /** Indexa os registros completos a partir de {@code Segment.indexed}. */
+    private void indexSegment(int segIdx) throws IOException {
+        Segment s = segments.get(segIdx);
+        int limit = s.buffer.capacity();
+        if (s.indexed == 0 && Files.exists(NewsJournalReader.indexFor(s.path))) {
+            int end = 0;
+            for (NewsJournalReader.IndexEntry e : files.index(s.path)) {
+                if (e.offset + NewsJournal.RECORD_HEADER > limit) break; // gravado depois do mapeamento
+                int off = (int) e.offset;
+                int recordEnd = off + 4 + s.buffer.getInt(off);
+                if (recordEnd > limit) break;
+                put(hash(e.guid, e.kind), segIdx, off);
+                end = Math.max(end, recordEnd);
+            }
+            s.indexed = end;
+            return;
+        }
+        ByteBuffer buf = s.buffer.duplicate();
+        int off = s.indexed;
+        while (off + NewsJournal.RECORD_HEADER <= limit) {
+            int len = buf.getInt(off);
+            if (len < NewsJournal.RECORD_HEADER - 4 || off + 4L + len > limit) break;
+            byte kind = buf.get(off + 16);
+            put(hash(buf, off, kind), segIdx, off);
+            off += 4 + len;
+        }
+        s.indexed = off;
+    }
+
+    /** Solta mapeamentos e índice (liberados pelo GC); depois disso consultas falham. */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        segments = new ArrayList<>();
+        positions.clear();
+        lastByLanguage.clear();
+        table = null;
+        size = 0;
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("journal fechado: " + root);
+    }
+
+    // ===== índice =====
+
+    private void put(long h, int segIdx, int offset) {
+        if ((size + 1) * 2 > mask + 1) grow();
+        int i = (int) h & mask;
+        while (true) {
+            int pos = i * SLOT;
+            long cur = table.getLong(pos);
+            if (cur == 0) {
+                table.putLong(pos, h).putInt(pos + 8, segIdx).putInt(pos + 12, offset);
+                size++;
+                return;
+            }
+            if (cur == h && sameGuid(table.getInt(pos + 8), table.getInt(pos + 12), segIdx, offset)) {
+                // mais recente vence (o mesmo GUID pode estar em idiomas diferentes)
+                long curTs = segments.get(table.getInt(pos + 8)).buffer.getLong(table.getInt(pos + 12) + 8);
+                if (segments.get(segIdx).buffer.getLong(offset + 8) >= curTs) {
+                    table.putInt(pos + 8, segIdx).putInt(pos + 12, offset);
+                }
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private void grow() {
+        ByteBuffer old = table;
+        int oldSlots = mask + 1;
+        table = ByteBuffer.allocateDirect(oldSlots * 2 * SLOT);
+        mask = oldSlots * 2 - 1;
+        for (int s = 0; s < oldSlots; s++) {
+            long h = old.getLong(s * SLOT);
+            if (h == 0) continue;
+            int i = (int) h & mask;
+            while (table.getLong(i * SLOT) != 0) i = (i + 1) & mask;
+            table.putLong(i * SLOT, h).putInt(i * SLOT + 8, old.getInt(s * SLOT + 8)).putInt(i * SLOT + 12, old.getInt(s * SLOT + 12));
+        }
+    }
+
+    private boolean sameGuid(int segA, int offA, int segB, int offB) {
+        ByteBuffer a = segments.get(segA).buffer;
+        ByteBuffer b = segments.get(segB).buffer;
+        int la = a.getShort(offA + 17) & 0xFFFF;
+        if (la != (b.getShort(offB + 17) & 0xFFFF) || a.get(offA + 16) != b.get(offB + 16)) return false;
+        return a.slice(offA + NewsJournal.RECORD_HEADER, la).equals(b.slice(offB + NewsJournal.RECORD_HEADER, la));
+    }
+
+    /** Registro mais recente do GUID/kind, ou null. O(1) esperado. */
+    public synchronized NewsJournalReader.Record find(String guid, byte kind) {
+        ensureOpen();
+        byte[] g = guid.getBytes(StandardCharsets.UTF_8);
+        long h = hash(g, kind);
+        int i = (int) h & mask;
+        while (true) {
+            int pos = i * SLOT;
+            long cur = table.getLong(pos);
+            if (cur == 0) return null;
+            if (cur == h) {
+                Segment s = segments.get(table.getInt(pos + 8));
+                int off = table.getInt(pos + 12);
+                if (guidEquals(s.buffer, off, g)) return decode(s.buffer, off);
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    public NewsJournalReader.Record findRaw(String guid) { return find(guid, NewsJournal.KIND_RAW); }
+    public NewsJournalReader.Record findClean(String guid) { return find(guid, NewsJournal.KIND_CLEAN); }
+    /** Marcador mais recente da história ({@link NewsJournal#KIND_STORY}), pelo altId. */
+    public NewsJournalReader.Record findStory(String altId) { return find(altId, NewsJournal.KIND_STORY); }
+
+    private static boolean guidEquals(ByteBuffer buf, int off, byte[] g) {
+        if ((buf.getShort(off + 17) & 0xFFFF) != g.length) return false;
+        for (int k = 0; k < g.length; k++) {
+            if (buf.get(off + NewsJournal.RECORD_HEADER + k) != g[k]) return false;
+        }
+        return true;
+    }
+
+    /** Número de chaves (GUID, kind) distintas indexadas. */
+    public synchronized int indexedCount() { return size; }
+
+    /** Bytes fora do heap ocupados pelo índice. */
+    public synchronized long indexBytes() { return table == null ? 0 : table.capacity(); }
+
+    public synchronized int segmentCount() { return segments.size(); }
+
+    // ===== varredura =====
+
+    /**
+     * Percorre, em ordem de gravação por idioma, os registros com timestamp em {@code [fromMillis, toMillis)}.
+     * {@code language} null percorre todos; {@code kind} negativo aceita RAW e CLEAN.
+     * Segmentos fora do intervalo são pulados pelo nome, sem leitura.
+     */
+    public void scan(String language, long fromMillis, long toMillis, int kind, RecordVisitor visitor) throws Exception {
+        List<Segment> segs;
+        synchronized (this) {
+            ensureOpen();
+            segs = segments;
+        }
+        for (Segment s : segs) {
+            if (language != null && !language.equals(s.language)) continue;
+            if (s.start >= toMillis || s.end <= fromMillis) continue;
+            ByteBuffer buf = s.buffer.duplicate();
+            int limit = buf.capacity();
+            int off = 0;
+            while (off + NewsJournal.RECORD_HEADER <= limit) {
+                int len = buf.getInt(off);
+                if (len < NewsJournal.RECORD_HEADER - 4 || off + 4L + len > limit) break;
+                long ts = buf.getLong(off + 8);
+                byte k = buf.get(off + 16);
+                if (ts >= fromMillis && ts < toMillis && (kind < 0 || k == kind)) {
+                    NewsJournalReader.Record r = decode(buf, off);
+                    if (r == null) break; // cauda corrompida
+                    if (!visitor.visit(s.language, r)) return;
+                }
+                off += 4 + len;
+            }
+        }
+    }
+
+    public Path root() { return root; }
+
+    // ===== registro / hash =====
+
+    private static NewsJournalReader.Record decode(ByteBuffer buf, int off) {
+        int len = buf.getInt(off);
+        CRC32 crc = new CRC32();
+        crc.update(buf.slice(off + 8, len - 4));
+        if ((int) crc.getValue() != buf.getInt(off + 4)) return null;
+        long ts = buf.getLong(off + 8);
+        byte kind = buf.get(off + 16);
+        int guidLen = buf.getShort(off + 17) & 0xFFFF;
+        byte[] guid = new byte[guidLen];
+        buf.get(off + NewsJournal.RECORD_HEADER, guid);
+        byte[] payload = new byte[len + 4 - NewsJournal.RECORD_HEADER - guidLen];
+        buf.get(off + NewsJournal.RECORD_HEADER + guidLen, payload);
+        return new NewsJournalReader.Record(off, ts, kind, new String(guid, StandardCharsets.UTF_8), payload);
+    }
+
+    private static long hash(String guid, byte kind) {
+        return hash(guid.getBytes(StandardCharsets.UTF_8), kind);
+    }
+
+    /** FNV-1a 64 sobre os bytes do GUID e o kind; nunca 0 (0 marca slot vazio). */
+    private static long hash(byte[] guid, byte kind) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : guid) h = (h ^ (b & 0xFF)) * 0x100000001b3L;
+        h = (h ^ kind) * 0x100000001b3L;
+        return finish(h);
+    }
+
+    private static long hash(ByteBuffer buf, int off, byte kind) {
+        int len = buf.getShort(off + 17) & 0xFFFF;
+        long h = 0xcbf29ce484222325L;
+        for (int k = 0; k < len; k++) h = (h ^ (buf.get(off + NewsJournal.RECORD_HEADER + k) & 0xFF)) * 0x100000001b3L;
+        h = (h ^ kind) * 0x100000001b3L;
+        return finish(h);
+    }
+
+    private static long finish(long h) {
+        h ^= (h >>> 32);
+        return h == 0 ? 1 : h;
+    }
+}
@@ -0,0 +1,72 @@
+package com.btg.pactual.hub.news;
+
+/**
+ * Envelope de uma mensagem tr_json2 contendo apenas os campos que o client consome
+ * (Domain, Type, State e os Fields de fragmento MRN).
+ * Instância mutável e reutilizada pelo {@link MrnEnvelopeParser}: só é válida durante o callback.
+ */
+public final class MrnEnvelope {
+
+    String domain;
+    String type;
+    int streamId;
+    String stateStream;
+    String stateData;
+    String stateCode;
+    String stateText;
+
+    boolean hasFields;
+    byte[] fragment;
+    int fragNum;
+    int acum;
+    String guid;
+
+    void reset() {
+        domain = "";
+        type = "";
+        streamId = 0;
+        stateStream = null;
+        stateData = null;
+        stateCode = null;
+        stateText = null;
+        hasFields = false;
+        fragment = null;
+        fragNum = 1;
+        acum = 0;
+        guid = null;
+    }
+
+    public String domain() { return domain; }
+    public String type() { return type; }
+    /** ID do stream (campo "ID"); 0 quando ausente. */
+    public int streamId() { return streamId; }
+    public String stateStream() { return stateStream == null ? "" : stateStream; }
+    public String stateData() { return stateData == null ? "" : stateData; }
+    public String stateCode() { return stateCode == null ? "" : stateCode; }
+
+    public boolean hasFields() { return hasFields; }
+    public boolean hasFragment() { return fragment != null; }
+    /**
+     * FRAGMENT já decodificado do base64 (ou os bytes UTF-8 do texto, se não for base64 válido),
+     * ou null se ausente. O array é novo a cada mensagem e pode ser repassado adiante.
+     */
+    public byte[] fragment() { return fragment; }
+    /** FRAG_NUM; 1 quando ausente. */
+    public int fragNum() { return fragNum; }
+    /** ACUM; 0 quando ausente. */
+    public int acum() { return acum; }
+    /** GUID, ou null quando ausente. */
+    public String guid() { return guid; }
+
+    /** Resumo do State para log (evita re-serializar a mensagem). */
+    public String stateSummary() {
+        return "{Stream=" + stateStream + ", Data=" + stateData
+                + ", Code=" + stateCode + ", Text=" + stateText + "}";
+    }
+
+    @Override
+    public String toString() {
+        return "MrnEnvelope{ID=" + streamId + ", Domain=" + domain + ", Type=" + type + ", State=" + stateSummary()
+                + (hasFields ? ", GUID=" + guid + ", FRAG_NUM=" + fragNum + ", ACUM=" + acum : "") + "}";
+    }
+}
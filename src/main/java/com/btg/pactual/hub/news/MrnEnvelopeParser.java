@@ -0,0 +1,165 @@
+package com.btg.pactual.hub.news;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decoder streaming (token a token) do envelope tr_json2.
+ * Extrai apenas ID/Domain/Type/State e FRAGMENT/FRAG_NUM/ACUM/GUID de "Fields", sem montar árvore
+ * (nem por mensagem, nem por elemento de batch em array). Os demais campos são pulados.
+ * O FRAGMENT é decodificado do base64 direto do buffer de chars do parser, sem String intermediária.
+ * Não é thread-safe: use uma instância por conexão.
+ */
+public final class MrnEnvelopeParser {
+
+    /** Recebe cada mensagem do frame; o envelope é reutilizado entre chamadas. */
+    @FunctionalInterface
+    public interface Handler {
+        void onMessage(MrnEnvelope envelope) throws IOException;
+    }
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private static final int[] BASE64_VALUES = new int[128];
+    static {
+        Arrays.fill(BASE64_VALUES, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) BASE64_VALUES[alphabet.charAt(i)] = i;
+    }
+
+    private final MrnEnvelope envelope = new MrnEnvelope();
+
+    public void parse(String message, Handler handler) throws IOException {
+        try (JsonParser p = FACTORY.createParser(message)) {
+            parse(p, handler);
+        }
+    }
+
+    /** Faz o parse direto do buffer de chars (sem cópia para String). */
+    public void parse(char[] buf, int off, int len, Handler handler) throws IOException {
+        try (JsonParser p = FACTORY.createParser(buf, off, len)) {
+            parse(p, handler);
+        }
+    }
+
+    private void parse(JsonParser p, Handler handler) throws IOException {
+        JsonToken t = p.nextToken();
+        if (t == JsonToken.START_ARRAY) {
+            while ((t = p.nextToken()) != null && t != JsonToken.END_ARRAY) {
+                if (t == JsonToken.START_OBJECT) readMessage(p, handler);
+                else p.skipChildren();
+            }
+        } else if (t == JsonToken.START_OBJECT) {
+            readMessage(p, handler);
+        }
+    }
+
+    private void readMessage(JsonParser p, Handler handler) throws IOException {
+        MrnEnvelope env = envelope;
+        env.reset();
+        String name;
+        while ((name = p.nextFieldName()) != null) {
+            JsonToken t = p.nextToken();
+            switch (name) {
+                case "Domain": env.domain = textOr(p, t, ""); break;
+                case "Type":   env.type = textOr(p, t, ""); break;
+                case "ID":     env.streamId = intOr(p, t, 0); break;
+                case "State":
+                    if (t == JsonToken.START_OBJECT) readState(p, env);
+                    else p.skipChildren();
+                    break;
+                case "Fields":
+                    if (t == JsonToken.START_OBJECT) readFields(p, env);
+                    else p.skipChildren();
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+        handler.onMessage(env);
+    }
+
+    private static void readState(JsonParser p, MrnEnvelope env) throws IOException {
+        String name;
+        while ((name = p.nextFieldName()) != null) {
+            JsonToken t = p.nextToken();
+            switch (name) {
+                case "Stream": env.stateStream = textOr(p, t, null); break;
+                case "Data":   env.stateData = textOr(p, t, null); break;
+                case "Code":   env.stateCode = textOr(p, t, null); break;
+                case "Text":   env.stateText = textOr(p, t, null); break;
+                default:       p.skipChildren();
+            }
+        }
+    }
+
+    private static void readFields(JsonParser p, MrnEnvelope env) throws IOException {
+        env.hasFields = true;
+        String name;
+        while ((name = p.nextFieldName()) != null) {
+            JsonToken t = p.nextToken();
+            switch (name) {
+                case "FRAGMENT": env.fragment = binaryOr(p, t); break;
+                case "FRAG_NUM": env.fragNum = intOr(p, t, 1); break;
+                case "ACUM":     env.acum = intOr(p, t, 0); break;
+                case "GUID":     env.guid = textOr(p, t, null); break;
+                default:         p.skipChildren();
+            }
+        }
+    }
+
+    private static String textOr(JsonParser p, JsonToken t, String def) throws IOException {
+        if (t == null || t == JsonToken.VALUE_NULL) return def;
+        if (t.isStructStart()) { p.skipChildren(); return def; }
+        return p.getText();
+    }
+
+    private static byte[] binaryOr(JsonParser p, JsonToken t) throws IOException {
+        if (t != JsonToken.VALUE_STRING) {
+            String s = textOr(p, t, null);
+            return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+        }
+        // lê direto do buffer interno do parser (sem String)
+        char[] chars = p.getTextCharacters();
+        int off = p.getTextOffset();
+        int len = p.getTextLength();
+        byte[] decoded = decodeBase64(chars, off, len);
+        if (decoded != null) return decoded;
+        // não é base64: segue como texto cru (mesmo fallback do decode antigo)
+        return new String(chars, off, len).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Base64 padrão (mesmas regras do Base64.getDecoder(): padding opcional); null se inválido. */
+    static byte[] decodeBase64(char[] src, int off, int len) {
+        int end = off + len;
+        if (len > 0 && src[end - 1] == '=') end--;
+        if (end > off && src[end - 1] == '=') end--;
+        int n = end - off;
+        if (n % 4 == 1) return null;
+        byte[] out = new byte[n / 4 * 3 + (n % 4 == 0 ? 0 : n % 4 - 1)];
+        int o = 0, bits = 0, acc = 0;
+        for (int i = off; i < end; i++) {
+            char c = src[i];
+            int v = c < 128 ? BASE64_VALUES[c] : -1;
+            if (v < 0) return null;
+            acc = (acc << 6) | v;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                out[o++] = (byte) (acc >> bits);
+            }
+        }
+        return out;
+    }
+
+    private static int intOr(JsonParser p, JsonToken t, int def) throws IOException {
+        if (t == null || t == JsonToken.VALUE_NULL) return def;
+        if (t.isStructStart()) { p.skipChildren(); return def; }
+        return p.getValueAsInt(def);
+    }
+}
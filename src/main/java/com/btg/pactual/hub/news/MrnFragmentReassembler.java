@@ -1,103 +1,526 @@
 package com.btg.pactual.hub.news;
 
-import java.time.Instant;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
- * Reagrupa fragments MRN por GUID (quando disponível) ou por chave fallback.
+ * Reagrupa fragments MRN por chave: o GUID, ou a chave de sequência atribuída pelo
+ * {@link StreamSequencer} para fragments sem GUID. Chave vazia é recusada.
  * Thread-safe.
+ *
+ * Cada fragmento é guardado já decodificado (bytes) num array de slots indexado por FRAG_NUM e
+ * pré-dimensionado pelo ACUM; a montagem devolve os segmentos em ordem ({@link MrnPayload}) sem
+ * concatená-los.
+ *
+ * A expiração de histórias incompletas é feita por uma timer wheel (hashed): cada estado é
+ * agendado uma vez ao ser criado e a thread da wheel só olha o slot do tick atual, então o
+ * custo por fragmento é O(1). Histórias expiradas vão para o {@link IncompleteStoryHandler}
+ * conforme a {@link ExpiryAction} configurada.
+ *
+ * Limites de memória: histórias em andamento, fragments por história, bytes por história e bytes
+ * totais. Ao estourar um limite, a história menos recentemente atualizada (aproximadamente) é
+ * despejada: as histórias em andamento ficam em {@link #LRU_STRIPES} LinkedHashMaps em ordem de
+ * acesso, escolhidos pelo hash da chave, cada um com lock próprio. Um fragmento trava só a faixa
+ * da sua chave, e nunca junto com o lock do estado (o toque de recência e a remoção acontecem
+ * depois de soltar o estado). A vítima é a cabeça de faixa com o lastUpdate mais antigo: O(faixas)
+ * por despejo, e só quando um limite estoura.
+ * O destino de cada despejo é decidido pela {@link EvictionPolicy}.
  */
-public class MrnFragmentReassembler {
+public class MrnFragmentReassembler implements AutoCloseable {
+
+    /** O que fazer com uma história que expirou ou foi despejada incompleta. */
+    public enum ExpiryAction { FORCE_ASSEMBLE, DEAD_LETTER, DROP }
+
+    /** Por que a história saiu do reassembler sem completar. */
+    public enum Reason { EXPIRED, MAX_IN_FLIGHT, MAX_FRAGMENTS, STORY_BYTES, TOTAL_BYTES }
+
+    /** Decide o destino de uma história incompleta conforme o motivo do despejo. */
+    @FunctionalInterface
+    public interface EvictionPolicy {
+        ExpiryAction actionFor(Reason reason, String key, int partsReceived, int expectedTotal, int bytes);
+    }
+
+    /** História descartada antes de completar; {@code payload} é null quando a ação é DROP. */
+    public static final class IncompleteStory {
+        public final String key;
+        public final Reason reason;
+        public final ExpiryAction action;
+        public final MrnPayload payload;
+        public final int partsReceived;
+        public final int expectedTotal;
+
+        IncompleteStory(String key, Reason reason, ExpiryAction action, MrnPayload payload,
+                        int partsReceived, int expectedTotal) {
+            this.key = key;
+            this.reason = reason;
+            this.action = action;
+            this.payload = payload;
+            this.partsReceived = partsReceived;
+            this.expectedTotal = expectedTotal;
+        }
+    }
+
+    @FunctionalInterface
+    public interface IncompleteStoryHandler {
+        void onIncomplete(IncompleteStory story);
+    }
+
+    /** Parâmetros de expiração e limites (variáveis de ambiente REASSEMBLY_*). */
+    public static final class Config {
+        public final long timeoutMillis;
+        public final long wheelResolutionMillis;
+        public final int maxInFlight;
+        public final int maxFragmentsPerStory;
+        public final int maxStoryBytes;
+        public final long maxTotalBytes;
+        /** Destino das histórias expiradas (Reason.EXPIRED). */
+        public final ExpiryAction expiryAction;
+        /** Destino das histórias despejadas por limite (demais Reasons). */
+        public final ExpiryAction evictionAction;
+
+        public Config(long timeoutMillis, long wheelResolutionMillis, int maxInFlight, int maxFragmentsPerStory,
+                      int maxStoryBytes, long maxTotalBytes, ExpiryAction expiryAction, ExpiryAction evictionAction) {
+            this.timeoutMillis = timeoutMillis;
+            this.wheelResolutionMillis = wheelResolutionMillis;
+            this.maxInFlight = maxInFlight;
+            this.maxFragmentsPerStory = maxFragmentsPerStory;
+            this.maxStoryBytes = maxStoryBytes;
+            this.maxTotalBytes = maxTotalBytes;
+            this.expiryAction = expiryAction;
+            this.evictionAction = evictionAction;
+        }
+
+        public static Config defaults(long timeoutSeconds) {
+            return new Config(timeoutSeconds * 1000L, 1000L, 10_000, 512, 8 * 1024 * 1024,
+                    256L * 1024 * 1024, ExpiryAction.FORCE_ASSEMBLE, ExpiryAction.DEAD_LETTER);
+        }
+
+        public static Config fromEnv() {
+            Map<String, String> env = System.getenv();
+            return new Config(
+                    Long.parseLong(env.getOrDefault("REASSEMBLY_TIMEOUT_SECONDS", "60")) * 1000L,
+                    Long.parseLong(env.getOrDefault("REASSEMBLY_WHEEL_RESOLUTION_MS", "1000")),
+                    Integer.parseInt(env.getOrDefault("REASSEMBLY_MAX_IN_FLIGHT", "10000")),
+                    Integer.parseInt(env.getOrDefault("REASSEMBLY_MAX_FRAGMENTS", "512")),
+                    Integer.parseInt(env.getOrDefault("REASSEMBLY_MAX_STORY_BYTES", String.valueOf(8 * 1024 * 1024))),
+                    Long.parseLong(env.getOrDefault("REASSEMBLY_MAX_TOTAL_BYTES", String.valueOf(256L * 1024 * 1024))),
+                    ExpiryAction.valueOf(env.getOrDefault("REASSEMBLY_EXPIRY_ACTION", "FORCE_ASSEMBLE").toUpperCase()),
+                    ExpiryAction.valueOf(env.getOrDefault("REASSEMBLY_EVICTION_ACTION", "DEAD_LETTER").toUpperCase()));
+        }
+    }
+
+    private static final int MAX_WHEEL_SLOTS = 4096;
+    /** Faixas do LRU (potência de 2). */
+    static final int LRU_STRIPES = 16;
 
-    private static final String UNKNOWN_KEY = "UNKN";
     private final ConcurrentMap<String, FragmentState> states = new ConcurrentHashMap<>();
-    private final long timeoutSeconds;
+    // histórias em andamento, por faixa, da menos para a mais recentemente atualizada (access order)
+    private final LruStripe[] lru = new LruStripe[LRU_STRIPES];
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final Config config;
+    private volatile EvictionPolicy evictionPolicy;
+
+    // timer wheel
+    private final ConcurrentLinkedQueue<Timeout>[] wheel;
+    private final int wheelMask;
+    private final ScheduledExecutorService ticker;
+    private volatile long tick;
+    private volatile long nowMillis = System.currentTimeMillis();
+    private volatile IncompleteStoryHandler incompleteHandler = s -> {};
+    private volatile Consumer<String> log = System.err::println;
+
+    // métricas de descarte
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder forced = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Map<Reason, LongAdder> evictions = new EnumMap<>(Reason.class);
 
     public MrnFragmentReassembler(long timeoutSeconds) {
-        this.timeoutSeconds = timeoutSeconds;
+        this(Config.defaults(timeoutSeconds));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public MrnFragmentReassembler(Config config) {
+        this.config = config;
+        for (int i = 0; i < LRU_STRIPES; i++) lru[i] = new LruStripe();
+        this.evictionPolicy = defaultPolicy(config);
+        for (Reason r : Reason.values()) evictions.put(r, new LongAdder());
+        long spanTicks = Math.max(1, config.timeoutMillis / config.wheelResolutionMillis + 1);
+        int slots = Integer.highestOneBit((int) Math.min(MAX_WHEEL_SLOTS, spanTicks) - 1) << 1;
+        slots = Math.max(2, slots);
+        this.wheel = new ConcurrentLinkedQueue[slots];
+        for (int i = 0; i < slots; i++) wheel[i] = new ConcurrentLinkedQueue<>();
+        this.wheelMask = slots - 1;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "mrn-reassembler-wheel");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::advance, config.wheelResolutionMillis,
+                config.wheelResolutionMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void setIncompleteHandler(IncompleteStoryHandler handler) {
+        this.incompleteHandler = handler == null ? s -> {} : handler;
+    }
+
+    /** Destino das mensagens de erro da wheel e do handler (padrão: stderr). */
+    public void setLog(Consumer<String> log) {
+        this.log = log == null ? System.err::println : log;
+    }
+
+    public void setEvictionPolicy(EvictionPolicy policy) {
+        this.evictionPolicy = policy == null ? defaultPolicy(config) : policy;
+    }
+
+    private static EvictionPolicy defaultPolicy(Config config) {
+        return (reason, key, parts, expected, bytes) ->
+                reason == Reason.EXPIRED ? config.expiryAction : config.evictionAction;
     }
 
     /**
-     * Adiciona um fragmento e, se todos os pedaços estiverem presentes, retorna o payload base64 montado.
+     * Adiciona um fragmento e, se todos os pedaços estiverem presentes, retorna o payload montado.
      * Se total<=0 e fragNum==1 tratamos como mensagem única (fallback prático quando ACUM não é enviado).
      */
-    public Optional<String> addFragment(String guid, int fragNum, int total, String payload) {
-        String key = keyFor(guid);
-        cleanupStale();
-        FragmentState state = states.computeIfAbsent(key, k -> new FragmentState(total));
-        synchronized (state) {
-            if (total > 0) state.expectedTotal = total;
-            state.parts.put(fragNum, payload);
-            state.lastUpdate = Instant.now().getEpochSecond();
-
-            // Fallback: se total não informado e é o primeiro fragmento, monta imediatamente
-            if ((state.expectedTotal <= 0) && fragNum == 1) {
-                // remove estado e retorna o payload atual
-                states.remove(key);
-                return Optional.of(payload);
+    public Optional<MrnPayload> addFragment(String key, int fragNum, int total, byte[] payload) {
+        if (key == null || key.isBlank()) {
+            rejected.increment();
+            return Optional.empty();
+        }
+        if (fragNum < 1 || fragNum > config.maxFragmentsPerStory || total > config.maxFragmentsPerStory) {
+            // ACUM/FRAG_NUM inválido: descarta o fragmento e a história que ele estaria estendendo
+            rejected.increment();
+            FragmentState existing = states.get(key);
+            if (existing != null) evict(key, existing, Reason.MAX_FRAGMENTS);
+            else evictions.get(Reason.MAX_FRAGMENTS).increment();
+            return Optional.empty();
+        }
+        while (true) {
+            FragmentState state = states.get(key);
+            if (state == null) {
+                if (inFlight.get() >= config.maxInFlight && !evictLeastRecent(Reason.MAX_IN_FLIGHT)) {
+                    rejected.increment();
+                    return Optional.empty();
+                }
+                FragmentState created = new FragmentState(total, nowMillis);
+                state = states.putIfAbsent(key, created);
+                if (state == null) {
+                    state = created;
+                    inFlight.incrementAndGet();
+                    LruStripe stripe = stripe(key);
+                    synchronized (stripe) { stripe.map.put(key, created); }
+                    // aposentado entre o putIfAbsent e a entrada na faixa: o unlink dele pode ter vindo antes
+                    if (created.dead) unlink(key, created);
+                    schedule(key, created, created.lastUpdate + config.timeoutMillis);
+                }
             }
+            Optional<MrnPayload> assembled = null;
+            IncompleteStory overBudget = null;
+            synchronized (state) {
+                if (state.dead) continue; // expirou/foi montado em paralelo: recomeça com estado novo
+                if (state.bytesAfterPut(fragNum, payload) <= config.maxStoryBytes) {
+                    if (total > 0) state.expectedTotal = total;
+                    bufferedBytes.addAndGet(state.put(fragNum, payload));
+                    state.lastUpdate = nowMillis;
 
-            if (state.expectedTotal > 0 && state.parts.size() >= state.expectedTotal) {
-                StringBuilder sb = new StringBuilder();
-                for (int i = 1; i <= state.expectedTotal; i++) {
-                    String part = state.parts.get(i);
-                    if (part != null) sb.append(part);
+                    // Fallback: se total não informado e é o primeiro fragmento, monta imediatamente
+                    if ((state.expectedTotal <= 0) && fragNum == 1) {
+                        // remove estado e retorna o payload atual
+                        retire(key, state);
+                        assembled = Optional.of(MrnPayload.of(payload));
+                    } else if (state.expectedTotal > 0 && state.received >= state.expectedTotal) {
+                        retire(key, state);
+                        assembled = Optional.of(state.assemble());
+                    }
+                } else {
+                    retire(key, state);
+                    overBudget = toIncomplete(key, state, Reason.STORY_BYTES);
                 }
-                states.remove(key);
-                return Optional.of(sb.toString());
             }
+            // LRU fora do lock do estado
+            if (assembled != null || overBudget != null) unlink(key, state);
+            else touch(key);
+            if (assembled != null) return assembled;
+            if (overBudget != null) {
+                evictions.get(Reason.STORY_BYTES).increment();
+                dispatch(overBudget);
+            } else {
+                enforceTotalBytes();
+            }
+            return Optional.empty();
+        }
+    }
+
+    /** Despeja histórias (das menos recentes) até o total em buffer voltar ao limite. */
+    private void enforceTotalBytes() {
+        while (bufferedBytes.get() > config.maxTotalBytes) {
+            if (!evictLeastRecent(Reason.TOTAL_BYTES)) return;
         }
-        return Optional.empty();
     }
 
     /**
-     * Força a montagem dos fragments já recebidos para a chave (guid ou fallback).
-     * Retorna Optional com base64 montado se houver partes.
+     * Força a montagem dos fragments já recebidos para a chave (guid ou chave de sequência).
+     * Retorna Optional com o payload montado se houver partes.
      */
-    public Optional<String> forceAssemble(String guid) {
-        String key = keyFor(guid);
-        FragmentState state = states.remove(key);
+    public Optional<MrnPayload> forceAssemble(String key) {
+        if (key == null || key.isBlank()) return Optional.empty();
+        FragmentState state = states.get(key);
         if (state == null) return Optional.empty();
+        MrnPayload payload;
         synchronized (state) {
-            if (state.parts.isEmpty()) return Optional.empty();
-            int max = state.parts.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
-            StringBuilder sb = new StringBuilder();
-            for (int i = 1; i <= max; i++) {
-                String part = state.parts.get(i);
-                if (part != null) sb.append(part);
+            if (state.dead) return Optional.empty();
+            retire(key, state);
+            payload = state.received == 0 ? null : state.assemble();
+        }
+        unlink(key, state);
+        return Optional.ofNullable(payload);
+    }
+
+    /** Remove o estado do mapa; chamar com o lock do estado e, depois de soltá-lo, {@link #unlink}. */
+    private void retire(String key, FragmentState state) {
+        state.dead = true;
+        if (states.remove(key, state)) {
+            inFlight.decrementAndGet();
+            bufferedBytes.addAndGet(-state.bytes);
+        }
+    }
+
+    // ====== LRU por faixa ======
+    private LruStripe stripe(String key) {
+        int h = key.hashCode();
+        return lru[(h ^ (h >>> 16)) & (LRU_STRIPES - 1)];
+    }
+
+    /** Passa a chave para o fim (mais recente) da sua faixa. */
+    private void touch(String key) {
+        LruStripe stripe = stripe(key);
+        synchronized (stripe) { stripe.map.get(key); }
+    }
+
+    /** Tira o estado da sua faixa (sem o lock do estado). */
+    private void unlink(String key, FragmentState state) {
+        LruStripe stripe = stripe(key);
+        synchronized (stripe) { stripe.map.remove(key, state); }
+    }
+
+    /**
+     * Despeja a história menos recentemente atualizada: entre as cabeças das faixas, a de menor
+     * lastUpdate. Aproximado (a recência é exata dentro de cada faixa), O(faixas).
+     */
+    private boolean evictLeastRecent(Reason reason) {
+        while (true) {
+            String key = null;
+            FragmentState state = null;
+            for (LruStripe stripe : lru) {
+                synchronized (stripe) {
+                    Iterator<Map.Entry<String, FragmentState>> it = stripe.map.entrySet().iterator();
+                    if (!it.hasNext()) continue;
+                    Map.Entry<String, FragmentState> eldest = it.next();
+                    if (state == null || eldest.getValue().lastUpdate < state.lastUpdate) {
+                        key = eldest.getKey();
+                        state = eldest.getValue();
+                    }
+                }
             }
-            return Optional.of(sb.toString());
+            if (state == null) return false;
+            if (evict(key, state, reason)) return true;
+            // montada/expirada em paralelo: quem a aposentou tira da faixa; garante aqui também
+            unlink(key, state);
         }
     }
 
-    private String keyFor(String guid) {
-        if (guid == null || guid.isBlank()) {
-            return UNKNOWN_KEY;
+    private boolean evict(String key, FragmentState state, Reason reason) {
+        IncompleteStory story;
+        synchronized (state) {
+            if (state.dead) return false;
+            retire(key, state);
+            story = toIncomplete(key, state, reason);
         }
-        return guid;
+        unlink(key, state);
+        evictions.get(reason).increment();
+        dispatch(story);
+        return true;
     }
 
-    private void cleanupStale() {
-        long now = Instant.now().getEpochSecond();
-        for (Map.Entry<String, FragmentState> e : states.entrySet()) {
-            FragmentState s = e.getValue();
-            if (now - s.lastUpdate > timeoutSeconds) {
-                states.remove(e.getKey());
+    // ====== TIMER WHEEL ======
+    private void schedule(String key, FragmentState state, long deadlineMillis) {
+        long deadlineTick = Math.max(tick + 1, deadlineMillis / config.wheelResolutionMillis);
+        wheel[(int) (deadlineTick & wheelMask)].offer(new Timeout(key, state));
+    }
+
+    /** Executado a cada resolução pela thread da wheel: processa só o slot do tick corrente. */
+    private void advance() {
+        try {
+            long now = System.currentTimeMillis();
+            nowMillis = now;
+            long current = now / config.wheelResolutionMillis;
+            long from = tick == 0 ? current : tick + 1;
+            // se a thread atrasou, percorre os ticks perdidos (no máximo uma volta)
+            for (long t = Math.max(from, current - wheelMask); t <= current; t++) {
+                tick = t;
+                drainSlot(wheel[(int) (t & wheelMask)], now);
             }
+            tick = current;
+        } catch (Throwable t) {
+            // nunca deixar a wheel morrer (uma exceção cancelaria o scheduleAtFixedRate), mas registra
+            error("[MRN-WHEEL-ERROR]", t);
+        }
+    }
+
+    private void drainSlot(ConcurrentLinkedQueue<Timeout> slot, long now) {
+        int n = slot.size();
+        for (int i = 0; i < n; i++) {
+            Timeout to = slot.poll();
+            if (to == null) return;
+            FragmentState state = to.state;
+            IncompleteStory story;
+            synchronized (state) {
+                if (state.dead) continue;
+                long deadline = state.lastUpdate + config.timeoutMillis;
+                if (deadline > now) {
+                    schedule(to.key, state, deadline); // recebeu fragmentos desde o agendamento
+                    continue;
+                }
+                retire(to.key, state);
+                story = toIncomplete(to.key, state, Reason.EXPIRED);
+            }
+            unlink(to.key, state);
+            expired.increment();
+            evictions.get(Reason.EXPIRED).increment();
+            dispatch(story);
+        }
+    }
+
+    private IncompleteStory toIncomplete(String key, FragmentState state, Reason reason) {
+        ExpiryAction action;
+        try {
+            action = evictionPolicy.actionFor(reason, key, state.received, state.expectedTotal, state.bytes);
+        } catch (Exception e) {
+            action = ExpiryAction.DROP;
+        }
+        if (action == null) action = ExpiryAction.DROP;
+        MrnPayload payload = (action == ExpiryAction.DROP || state.received == 0) ? null : state.assemble();
+        return new IncompleteStory(key, reason, action, payload, state.received, state.expectedTotal);
+    }
+
+    private void dispatch(IncompleteStory story) {
+        switch (story.action) {
+            case FORCE_ASSEMBLE: forced.increment(); break;
+            case DEAD_LETTER: deadLettered.increment(); break;
+            default: dropped.increment();
+        }
+        try { incompleteHandler.onIncomplete(story); }
+        catch (Exception e) { error("[MRN-INCOMPLETE-HANDLER-ERROR] key=" + story.key, e); }
+    }
+
+    private void error(String tag, Throwable t) {
+        errors.increment();
+        try { log.accept(tag + " " + t); } catch (Exception ignore) {}
+    }
+
+    // ====== MÉTRICAS ======
+    public int inFlight() { return inFlight.get(); }
+    public long bufferedBytes() { return bufferedBytes.get(); }
+    public long evictionCount(Reason reason) { return evictions.get(reason).sum(); }
+    public long expiredCount() { return expired.sum(); }
+    public long forcedCount() { return forced.sum(); }
+    public long deadLetteredCount() { return deadLettered.sum(); }
+    public long droppedCount() { return dropped.sum(); }
+    /** Fragments recusados (chave vazia, FRAG_NUM/ACUM inválido ou sem espaço para uma história nova). */
+    public long rejectedCount() { return rejected.sum(); }
+    /** Exceções capturadas na thread da wheel ou no handler de histórias incompletas. */
+    public long errorCount() { return errors.sum(); }
+
+    public String stats() {
+        StringBuilder sb = new StringBuilder("reassembler inFlight=").append(inFlight())
+                .append(" bytes=").append(bufferedBytes())
+                .append(" expired=").append(expiredCount()).append(" forced=").append(forcedCount())
+                .append(" deadLetter=").append(deadLetteredCount()).append(" dropped=").append(droppedCount())
+                .append(" rejected=").append(rejectedCount()).append(" errors=").append(errorCount())
+                .append(" evicted={");
+        for (Reason r : Reason.values()) {
+            if (r != Reason.EXPIRED) sb.append(r).append('=').append(evictionCount(r)).append(r == Reason.TOTAL_BYTES ? "" : " ");
+        }
+        return sb.append('}').toString();
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    private static final class LruStripe {
+        final LinkedHashMap<String, FragmentState> map = new LinkedHashMap<>(64, 0.75f, true);
+    }
+
+    private static final class Timeout {
+        final String key;
+        final FragmentState state;
+
+        Timeout(String key, FragmentState state) {
+            this.key = key;
+            this.state = state;
         }
     }
 
     private static class FragmentState {
         volatile int expectedTotal;
-        final Map<Integer, String> parts = new TreeMap<>();
-        volatile long lastUpdate = Instant.now().getEpochSecond();
+        byte[][] slots;     // slots[FRAG_NUM - 1]
+        int received;       // slots preenchidos
+        int bytes;          // soma dos tamanhos
+        volatile long lastUpdate;
+        volatile boolean dead;
 
-        FragmentState(int expectedTotal) {
+        FragmentState(int expectedTotal, long now) {
             this.expectedTotal = expectedTotal;
+            this.slots = new byte[Math.max(1, expectedTotal)][];
+            this.lastUpdate = now;
+        }
+
+        int bytesAfterPut(int fragNum, byte[] payload) {
+            int idx = fragNum - 1;
+            byte[] old = idx < slots.length ? slots[idx] : null;
+            return bytes - (old == null ? 0 : old.length) + payload.length;
+        }
+
+        /** Guarda o fragmento e retorna a variação de bytes em buffer. */
+        int put(int fragNum, byte[] payload) {
+            int idx = fragNum - 1;
+            if (idx >= slots.length) slots = Arrays.copyOf(slots, Math.max(fragNum, slots.length << 1));
+            byte[] old = slots[idx];
+            int delta = payload.length;
+            if (old == null) received++;
+            else delta -= old.length;
+            slots[idx] = payload;
+            bytes += delta;
+            return delta;
+        }
+
+        /** Segmentos presentes, em ordem de FRAG_NUM (lacunas são puladas). */
+        MrnPayload assemble() {
+            if (received == slots.length) return new MrnPayload(slots, received, bytes);
+            byte[][] seg = new byte[received][];
+            int n = 0;
+            for (byte[] s : slots) if (s != null) seg[n++] = s;
+            return new MrnPayload(seg, n, bytes);
         }
     }
 }
@@ -0,0 +1,65 @@
+package com.btg.pactual.hub.news;
+
+import java.util.Base64;
+
+/**
+ * Payload MRN montado como lista de segmentos de bytes (um por FRAG_NUM, já decodificados do base64),
+ * sem concatenação. O {@link MrnPayloadDecoder} descomprime direto dos segmentos.
+ */
+public final class MrnPayload {
+
+    private final byte[][] segments;
+    private final int count;
+    private final int length;
+
+    MrnPayload(byte[][] segments, int count, int length) {
+        this.segments = segments;
+        this.count = count;
+        this.length = length;
+    }
+
+    public static MrnPayload of(byte[] single) {
+        return new MrnPayload(new byte[][]{single}, 1, single.length);
+    }
+
+    public int segmentCount() { return count; }
+    public byte[] segment(int i) { return segments[i]; }
+    /** Total de bytes somando todos os segmentos. */
+    public int length() { return length; }
+
+    /** Byte na posição absoluta {@code index} (atravessando segmentos). */
+    public int byteAt(int index) {
+        for (int i = 0; i < count; i++) {
+            byte[] s = segments[i];
+            if (index < s.length) return s[index] & 0xFF;
+            index -= s.length;
+        }
+        throw new IndexOutOfBoundsException();
+    }
+
+    /** Magic number do gzip (1f 8b) no início do payload. */
+    public boolean isGzip() {
+        return length >= 2 && byteAt(0) == 0x1f && byteAt(1) == 0x8b;
+    }
+
+    /** Cópia contígua; só para caminhos frios (dead-letter, diagnóstico). */
+    public byte[] toByteArray() {
+        if (count == 1 && segments[0].length == length) return segments[0];
+        byte[] out = new byte[length];
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(segments[i], 0, out, pos, segments[i].length);
+            pos += segments[i].length;
+        }
+        return out;
+    }
+
+    /** Prévia em base64 dos primeiros bytes, para log. */
+    public String base64Preview(int maxBytes) {
+        byte[] all = toByteArray();
+        int n = Math.min(maxBytes, all.length);
+        byte[] head = new byte[n];
+        System.arraycopy(all, 0, head, 0, n);
+        return Base64.getEncoder().encodeToString(head) + (n < all.length ? "..." : "");
+    }
+}
@@ -0,0 +1,115 @@
+package com.btg.pactual.hub.news;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decodifica o payload MRN montado (opcionalmente gzip) para os bytes UTF-8 do JSON da notícia.
+ * O gzip é inflado direto dos segmentos do {@link MrnPayload}, com {@link Inflater} e buffer de
+ * saída reutilizados entre chamadas. Não é thread-safe: uma instância por worker.
+ */
+public class MrnPayloadDecoder {
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int MAX_RETAINED_OUT = 4 * 1024 * 1024;
+
+    private final Consumer<String> log;
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private byte[] out = new byte[64 * 1024];
+
+    public MrnPayloadDecoder(Consumer<String> log) {
+        this.log = log;
+    }
+
+    /** Retorna os bytes do JSON; o array retornado pertence ao chamador. */
+    public byte[] decode(MrnPayload payload) throws IOException {
+        if (payload == null || payload.length() == 0) return new byte[0];
+        if (!payload.isGzip()) return payload.toByteArray();
+        return inflate(payload);
+    }
+
+    private byte[] inflate(MrnPayload p) throws IOException {
+        int headerLen = gzipHeaderLength(p);
+        inflater.reset();
+        int produced = 0;
+        int trailerPos = -1;
+        int segEnd = 0;
+        try {
+            for (int i = 0; i < p.segmentCount() && trailerPos < 0; i++) {
+                byte[] seg = p.segment(i);
+                int segStart = segEnd;
+                segEnd += seg.length;
+                int from = Math.max(headerLen, segStart);
+                if (from >= segEnd) continue;
+                inflater.setInput(seg, from - segStart, segEnd - from);
+                while (true) {
+                    if (produced == out.length) out = Arrays.copyOf(out, out.length << 1);
+                    int n = inflater.inflate(out, produced, out.length - produced);
+                    produced += n;
+                    if (inflater.finished()) { trailerPos = segEnd - inflater.getRemaining(); break; }
+                    if (inflater.needsInput()) break;
+                    if (inflater.needsDictionary()) throw new ZipException("gzip com dicionário não suportado");
+                    if (n == 0 && produced < out.length) throw new ZipException("inflate sem progresso");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        }
+        if (trailerPos < 0 || trailerPos + 8 > p.length()) throw new EOFException("gzip truncado");
+
+        crc.reset();
+        crc.update(out, 0, produced);
+        long expectedCrc = readIntLE(p, trailerPos);
+        long expectedSize = readIntLE(p, trailerPos + 4);
+        if (crc.getValue() != expectedCrc) throw new ZipException("gzip CRC inválido");
+        if ((produced & 0xFFFFFFFFL) != expectedSize) throw new ZipException("gzip ISIZE inválido");
+        byte[] json = Arrays.copyOf(out, produced);
+        if (out.length > MAX_RETAINED_OUT) out = new byte[64 * 1024]; // não segura o buffer de uma história gigante
+        return json;
+    }
+
+    private static int gzipHeaderLength(MrnPayload p) throws IOException {
+        if (p.length() < 10) throw new EOFException("cabeçalho gzip truncado");
+        if (p.byteAt(2) != 8) throw new ZipException("método gzip não suportado");
+        int flags = p.byteAt(3);
+        int pos = 10;
+        if ((flags & FEXTRA) != 0) pos += 2 + (p.byteAt(pos) | (p.byteAt(pos + 1) << 8));
+        if ((flags & FNAME) != 0) pos = skipZeroTerminated(p, pos);
+        if ((flags & FCOMMENT) != 0) pos = skipZeroTerminated(p, pos);
+        if ((flags & FHCRC) != 0) pos += 2;
+        if (pos > p.length()) throw new EOFException("cabeçalho gzip truncado");
+        return pos;
+    }
+
+    private static int skipZeroTerminated(MrnPayload p, int pos) throws IOException {
+        while (pos < p.length() && p.byteAt(pos) != 0) pos++;
+        if (pos >= p.length()) throw new EOFException("cabeçalho gzip truncado");
+        return pos + 1;
+    }
+
+    private static long readIntLE(MrnPayload p, int pos) {
+        return (p.byteAt(pos) | (p.byteAt(pos + 1) << 8) | (p.byteAt(pos + 2) << 16) | ((long) p.byteAt(pos + 3) << 24))
+                & 0xFFFFFFFFL;
+    }
+
+    public void debugDecodeError(MrnPayload payload, String tag) {
+        try {
+            String preview = payload.base64Preview(150);
+            int len = Math.min(8, payload.length());
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < len; i++) sb.append(String.format("%02X ", payload.byteAt(i)));
+            log.accept(tag + " preview_base64=" + preview);
+            log.accept(tag + " first_bytes_hex=" + sb.toString().trim());
+        } catch (Exception ignore) {}
+    }
+}
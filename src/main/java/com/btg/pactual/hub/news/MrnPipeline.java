@@ -0,0 +1,240 @@
+package com.btg.pactual.hub.news;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Pipeline assíncrono de MRN: reassemble → decode → persist.
+ * Cada estágio tem fila limitada e pool próprio de workers; quando um estágio enche,
+ * o anterior bloqueia no submit e a pressão chega até a thread de recepção do WebSocket,
+ * que deixa de pedir mensagens ({@code request(n)}).
+ * O reassemble é particionado pela chave do fragmento, então fragments (e flushes) de uma mesma
+ * história são processados em ordem mesmo com vários workers. Decode e persist são particionados
+ * pelo GUID: o inflate (CPU) escala com os cores e, ainda assim, versões de uma mesma notícia
+ * chegam ao sink na ordem em que foram montadas. Cada worker de decode tem seu
+ * {@link MrnPayloadDecoder} (Inflater e buffer de saída reaproveitados).
+ * Cada item carrega o instante (nanoTime) do frame que o trouxe, para as latências por salto
+ * em {@link LatencyMetrics}.
+ */
+public class MrnPipeline implements AutoCloseable {
+
+    /** Dimensionamento dos estágios (variáveis de ambiente PIPELINE_*). */
+    public static final class Config {
+        public final int queueCapacity;
+        public final int reassembleWorkers;
+        public final int decodeWorkers;
+        public final int persistWorkers;
+
+        public Config(int queueCapacity, int reassembleWorkers, int decodeWorkers, int persistWorkers) {
+            this.queueCapacity = queueCapacity;
+            this.reassembleWorkers = reassembleWorkers;
+            this.decodeWorkers = decodeWorkers;
+            this.persistWorkers = persistWorkers;
+        }
+
+        public static Config fromEnv() {
+            return new Config(
+                    env("PIPELINE_QUEUE_CAPACITY", 1024),
+                    env("PIPELINE_REASSEMBLE_WORKERS", 1),
+                    env("PIPELINE_DECODE_WORKERS", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+                    env("PIPELINE_PERSIST_WORKERS", 1));
+        }
+
+        private static int env(String name, int def) {
+            return Integer.parseInt(System.getenv().getOrDefault(name, String.valueOf(def)));
+        }
+    }
+
+    /** Fragmento já extraído do envelope; payload null indica "montar o que houver" (FRAGMENT ausente). */
+    static final class Fragment {
+        final String key;
+        final int fragNum;
+        final int acum;
+        final byte[] payload;
+        final long receivedNanos;
+
+        Fragment(String key, int fragNum, int acum, byte[] payload, long receivedNanos) {
+            this.key = key;
+            this.fragNum = fragNum;
+            this.acum = acum;
+            this.payload = payload;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+
+    /** Payload montado (segmentos já decodificados do base64) pronto para descomprimir. */
+    static final class Assembled {
+        final String guid;
+        final MrnPayload payload;
+        final String errorTag;
+        /** Frame que completou a história (0 = desconhecido, ex.: expirada na timer wheel). */
+        final long receivedNanos;
+        final long assembledNanos = System.nanoTime();
+
+        Assembled(String guid, MrnPayload payload, String errorTag, long receivedNanos) {
+            this.guid = guid;
+            this.payload = payload;
+            this.errorTag = errorTag;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+
+    /** JSON da notícia (UTF-8) pronto para persistir. */
+    static final class Decoded {
+        final String guid;
+        final byte[] json;
+        final long receivedNanos;
+        final long decodedNanos = System.nanoTime();
+
+        Decoded(String guid, byte[] json, long receivedNanos) {
+            this.guid = guid;
+            this.json = json;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+
+    private final MrnFragmentReassembler reassembler;
+    private final FileQueueSink sink;
+
+    private final PipelineStage<Fragment> reassembleStage;
+    private final PipelineStage<Assembled> decodeStage;
+    private final PipelineStage<Decoded> persistStage;
+    private final Consumer<String> log;
+    private final LatencyHistogram frameToReassembled = LatencyMetrics.shared().stage(LatencyMetrics.FRAME_TO_REASSEMBLED);
+    private final LatencyHistogram reassembledToDecoded = LatencyMetrics.shared().stage(LatencyMetrics.REASSEMBLED_TO_DECODED);
+    private final LatencyHistogram decodedToPersisted = LatencyMetrics.shared().stage(LatencyMetrics.DECODED_TO_PERSISTED);
+    private final LatencyHistogram decodeService = LatencyMetrics.shared().stage(LatencyMetrics.DECODE_SERVICE);
+
+    public MrnPipeline(MrnFragmentReassembler reassembler, FileQueueSink sink, Config config, Consumer<String> log) {
+        this.reassembler = reassembler;
+        this.sink = sink;
+        this.log = log;
+        this.persistStage = new PipelineStage<>("persist", config.queueCapacity, config.persistWorkers,
+                () -> d -> {
+                    this.sink.enqueueDecodedNews(d.json, d.guid, d.receivedNanos);
+                    decodedToPersisted.recordSince(d.decodedNanos);
+                }, d -> d.guid, log);
+        // decode_service é gravado pelo worker só em volta do inflate: o handle do estágio inclui o
+        // submit ao persist, que bloqueia quando o persist está cheio
+        this.decodeStage = new PipelineStage<>("decode", config.queueCapacity, config.decodeWorkers,
+                () -> decodeWorker(new MrnPayloadDecoder(log)), a -> a.guid,
+                LatencyMetrics.shared().stage(LatencyMetrics.DECODE_QUEUE_WAIT), new LatencyHistogram(), log);
+        this.reassembleStage = new PipelineStage<>("reassemble", config.queueCapacity, config.reassembleWorkers,
+                () -> this::reassemble, f -> f.key, log);
+        reassembler.setIncompleteHandler(this::onIncomplete);
+        reassembler.setLog(log);
+    }
+
+    /** Enfileira um fragmento; bloqueia se o estágio de reassemble estiver cheio. */
+    public void submitFragment(String key, int fragNum, int acum, byte[] payload) throws InterruptedException {
+        submitFragment(key, fragNum, acum, payload, System.nanoTime());
+    }
+
+    /** Idem, com o instante (System.nanoTime()) em que o frame do fragmento foi recebido. */
+    public void submitFragment(String key, int fragNum, int acum, byte[] payload, long receivedNanos) throws InterruptedException {
+        reassembleStage.submit(new Fragment(key, fragNum, acum, payload, receivedNanos));
+    }
+
+    /** Mensagem sem FRAGMENT: monta o que já foi recebido para a chave. */
+    public void submitFlush(String key) throws InterruptedException {
+        submitFlush(key, System.nanoTime());
+    }
+
+    public void submitFlush(String key, long receivedNanos) throws InterruptedException {
+        reassembleStage.submit(new Fragment(key, 0, 0, null, receivedNanos));
+    }
+
+    private void toDecode(Fragment f, MrnPayload payload, String errorTag) throws InterruptedException {
+        frameToReassembled.recordSince(f.receivedNanos);
+        decodeStage.submit(new Assembled(f.key, payload, errorTag, f.receivedNanos));
+    }
+
+    private void reassemble(Fragment f) throws InterruptedException {
+        if (f.payload == null) {
+            Optional<MrnPayload> assembled = reassembler.forceAssemble(f.key);
+            if (assembled.isPresent()) toDecode(f, assembled.get(), "[MRN-DECODE-ERROR]");
+            return;
+        }
+
+        Optional<MrnPayload> assembled = reassembler.addFragment(f.key, f.fragNum, f.acum, f.payload);
+        if (assembled.isPresent()) {
+            toDecode(f, assembled.get(), "[MRN-DECODE-ERROR]");
+            return;
+        }
+
+        if (f.acum <= 1) {
+            toDecode(f, MrnPayload.of(f.payload), "[MRN-DECODE-ERROR-FORCE]");
+        }
+    }
+
+    /**
+     * Histórias que saíram incompletas do reassembler: expiradas (thread da timer wheel) ou
+     * despejadas por limite de memória (thread do reassemble).
+     */
+    private void onIncomplete(MrnFragmentReassembler.IncompleteStory story) {
+        String parts = story.partsReceived + "/" + (story.expectedTotal > 0 ? story.expectedTotal : "?");
+        switch (story.action) {
+            case FORCE_ASSEMBLE:
+                if (story.payload == null) return;
+                log.accept("[MRN-INCOMPLETE-FORCE] reason=" + story.reason + " key=" + story.key + " parts=" + parts);
+                try { decodeStage.submit(new Assembled(story.key, story.payload, "[MRN-DECODE-ERROR-INCOMPLETE]", 0)); }
+                catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+                break;
+            case DEAD_LETTER:
+                sink.enqueueDeadLetter(story.key + "_" + story.reason, story.payload,
+                        story.partsReceived, story.expectedTotal);
+                break;
+            default:
+                log.accept("[MRN-INCOMPLETE-DROP] reason=" + story.reason + " key=" + story.key + " parts=" + parts);
+        }
+    }
+
+    private PipelineStage.Worker<Assembled> decodeWorker(MrnPayloadDecoder decoder) {
+        return a -> {
+            byte[] json;
+            long start = System.nanoTime();
+            try {
+                json = decoder.decode(a.payload);
+            } catch (Exception ex) {
+                decoder.debugDecodeError(a.payload, a.errorTag);
+                return;
+            }
+            decodeService.recordSince(start);
+            reassembledToDecoded.recordSince(a.assembledNanos);
+            persistStage.submit(new Decoded(a.guid, json, a.receivedNanos));
+        };
+    }
+
+    /** Profundidade atual de cada estágio, na ordem do fluxo. */
+    public Map<String, Integer> depths() {
+        Map<String, Integer> m = new LinkedHashMap<>();
+        m.put(reassembleStage.name(), reassembleStage.depth());
+        m.put(decodeStage.name(), decodeStage.depth());
+        m.put(persistStage.name(), persistStage.depth());
+        return m;
+    }
+
+    /** Histórias descomprimidas por segundo (média desde o início), e workers do decode. */
+    public String decodeThroughput() {
+        return String.format("decodeRate=%.0f/s workers=%d", decodeStage.throughputPerSecond(), decodeStage.workers());
+    }
+
+    /** Histórias descomprimidas desde o início (cumulativo; a taxa de um intervalo é a diferença entre leituras). */
+    public long decodedCount() {
+        return decodeStage.processed();
+    }
+
+    public String stats() {
+        return reassembleStage + " " + decodeStage + " " + persistStage + " " + decodeThroughput() + " " + reassembler.stats();
+    }
+
+    @Override
+    public void close() {
+        reassembler.close();
+        reassembleStage.close();
+        decodeStage.close();
+        persistStage.close();
+    }
+}
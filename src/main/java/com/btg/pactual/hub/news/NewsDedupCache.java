@@ -0,0 +1,265 @@
+package com.btg.pactual.hub.news;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dedup das notícias antes de qualquer I/O, compartilhado pelo FileQueueSink e pelo
+ * NewsRoutingService. Chave: altId (ou GUID) da história; valor: hash do conteúdo
+ * (headline + body + idioma), que separa reenvio idêntico de revisão real.
+ *
+ * {@link #check} só classifica; a história entra no cache por {@link #record}, chamado depois que
+ * a gravação (journal ou Mongo) deu certo. Uma gravação que falha não deixa rastro, então o
+ * reenvio é gravado de novo em vez de descartado. Duas cópias simultâneas do mesmo id podem passar
+ * as duas: a gravação é idempotente (no journal prevalece o registro mais recente do GUID, no
+ * Mongo é upsert por id).
+ *
+ * Janela exata: mapas por faixa (lock por faixa) em ordem de inserção, limitados por quantidade
+ * e idade. Opcionalmente (DEDUP_BLOOM_BITS > 0; desligado por padrão) um filtro de Bloom em duas
+ * gerações lembra o que saiu da janela por mais tempo. Acerto no Bloom quer dizer "talvez visto":
+ * é confirmado no {@link Store} de quem chamou (o que está gravado), e sem Store, ou com erro na
+ * consulta, a história conta como NEW. Falso positivo custa uma consulta, nunca uma notícia.
+ */
+public class NewsDedupCache {
+
+    public enum Result { NEW, DUPLICATE, REVISION }
+
+    /** O que já está gravado para a história; consultado só para confirmar um acerto do Bloom. */
+    @FunctionalInterface
+    public interface Store {
+        /** {@link #contentHash} do conteúdo gravado, ou null se a história não está gravada. */
+        Long storedHash() throws Exception;
+    }
+
+    /** Limites da janela exata e do filtro de Bloom (variáveis DEDUP_*). */
+    public static final class Config {
+        public final int maxEntries;
+        public final long windowMillis;
+        /** Bits de cada geração do Bloom; 0 (padrão) desliga o filtro. */
+        public final int bloomBits;
+        public final int bloomHashes;
+        public final long bloomGenerationMillis;
+
+        public Config(int maxEntries, long windowMillis, int bloomBits, int bloomHashes, long bloomGenerationMillis) {
+            this.maxEntries = maxEntries;
+            this.windowMillis = windowMillis;
+            this.bloomBits = bloomBits;
+            this.bloomHashes = bloomHashes;
+            this.bloomGenerationMillis = bloomGenerationMillis;
+        }
+
+        public static Config fromEnv() {
+            Map<String, String> env = System.getenv();
+            return new Config(
+                    Integer.parseInt(env.getOrDefault("DEDUP_MAX_ENTRIES", "200000")),
+                    Long.parseLong(env.getOrDefault("DEDUP_WINDOW_MINUTES", "60")) * 60_000L,
+                    Integer.parseInt(env.getOrDefault("DEDUP_BLOOM_BITS", "0")),
+                    Integer.parseInt(env.getOrDefault("DEDUP_BLOOM_HASHES", "5")),
+                    Long.parseLong(env.getOrDefault("DEDUP_BLOOM_GENERATION_HOURS", "24")) * 3_600_000L);
+        }
+    }
+
+    private static volatile NewsDedupCache shared;
+
+    /** Instância única do processo (configurada pelo ambiente), usada pelos dois sinks. */
+    public static NewsDedupCache shared() {
+        NewsDedupCache s = shared;
+        if (s == null) {
+            synchronized (NewsDedupCache.class) {
+                if (shared == null) shared = new NewsDedupCache(Config.fromEnv());
+                s = shared;
+            }
+        }
+        return s;
+    }
+
+    private static final int STRIPES = 16;
+
+    private static final class Seen {
+        long hash;
+        long at;
+
+        Seen(long hash, long at) {
+            this.hash = hash;
+            this.at = at;
+        }
+    }
+
+    private final Config config;
+    private final LinkedHashMap<String, Seen>[] stripes;
+    private final int maxPerStripe;
+
+    private final Object bloomLock = new Object();
+    private volatile AtomicLongArray bloomCurrent;
+    private volatile AtomicLongArray bloomPrevious;
+    private volatile long bloomStartedAt;
+
+    private final LongAdder news = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder revisions = new LongAdder();
+    private final LongAdder bloomLookups = new LongAdder();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public NewsDedupCache(Config config) {
+        this.config = config;
+        this.stripes = new LinkedHashMap[STRIPES];
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new LinkedHashMap<>();
+        this.maxPerStripe = Math.max(1, config.maxEntries / STRIPES);
+        if (config.bloomBits > 0) {
+            bloomCurrent = new AtomicLongArray((config.bloomBits + 63) >>> 6);
+            bloomPrevious = new AtomicLongArray(bloomCurrent.length());
+            bloomStartedAt = System.currentTimeMillis();
+        }
+    }
+
+    /** {@link #check(String, long, Store)} sem Store: acerto só no Bloom conta como NEW. */
+    public Result check(String id, long contentHash) {
+        return check(id, contentHash, null);
+    }
+
+    /**
+     * Classifica a história sem registrá-la. Janela exata primeiro; fora dela, um acerto no Bloom
+     * é confirmado no store (fora do lock da faixa: pode ser I/O).
+     */
+    public Result check(String id, long contentHash, Store store) {
+        Result result = classify(id, contentHash, store);
+        switch (result) {
+            case NEW -> news.increment();
+            case DUPLICATE -> duplicates.increment();
+            case REVISION -> revisions.increment();
+        }
+        return result;
+    }
+
+    private Result classify(String id, long contentHash, Store store) {
+        if (id == null || id.isBlank()) return Result.NEW;
+        long idHash = hash64(id);
+        LinkedHashMap<String, Seen> map = stripes[(int) (idHash >>> 32) & (STRIPES - 1)];
+        synchronized (map) {
+            expire(map, System.currentTimeMillis());
+            Seen seen = map.get(id);
+            if (seen != null) return seen.hash == contentHash ? Result.DUPLICATE : Result.REVISION;
+        }
+        if (bloomCurrent == null || store == null || !bloomContains(idHash)) return Result.NEW;
+        bloomLookups.increment();
+        try {
+            Long stored = store.storedHash();
+            return stored == null ? Result.NEW : stored == contentHash ? Result.DUPLICATE : Result.REVISION;
+        } catch (Exception e) {
+            return Result.NEW; // na dúvida grava: a gravação é idempotente
+        }
+    }
+
+    /** Registra a história já gravada: reenvios com o mesmo conteúdo passam a ser DUPLICATE. */
+    public void record(String id, long contentHash) {
+        if (id == null || id.isBlank()) return;
+        long now = System.currentTimeMillis();
+        long idHash = hash64(id);
+        LinkedHashMap<String, Seen> map = stripes[(int) (idHash >>> 32) & (STRIPES - 1)];
+        synchronized (map) {
+            expire(map, now);
+            Seen seen = map.remove(id);
+            if (seen == null) seen = new Seen(contentHash, now);
+            seen.hash = contentHash;
+            seen.at = now;
+            map.put(id, seen); // reinsere no fim (mais recente)
+        }
+        if (bloomCurrent != null) bloomAdd(idHash);
+    }
+
+    private void expire(LinkedHashMap<String, Seen> map, long now) {
+        Iterator<Seen> it = map.values().iterator();
+        while (it.hasNext()) {
+            Seen eldest = it.next();
+            if (map.size() < maxPerStripe && now - eldest.at < config.windowMillis) return;
+            it.remove();
+        }
+    }
+
+    // ===== Bloom (duas gerações; a mais antiga é descartada a cada bloomGenerationMillis) =====
+
+    private void rotateIfNeeded() {
+        if (System.currentTimeMillis() - bloomStartedAt < config.bloomGenerationMillis) return;
+        synchronized (bloomLock) {
+            if (System.currentTimeMillis() - bloomStartedAt < config.bloomGenerationMillis) return;
+            bloomPrevious = bloomCurrent;
+            bloomCurrent = new AtomicLongArray(bloomPrevious.length());
+            bloomStartedAt = System.currentTimeMillis();
+        }
+    }
+
+    private void bloomAdd(long h) {
+        rotateIfNeeded();
+        AtomicLongArray bits = bloomCurrent;
+        long nbits = (long) bits.length() << 6;
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < config.bloomHashes; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, nbits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long cur;
+            while (((cur = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, cur, cur | mask)) {
+                // tenta de novo
+            }
+        }
+    }
+
+    private boolean bloomContains(long h) {
+        return bloomContains(bloomCurrent, h) || bloomContains(bloomPrevious, h);
+    }
+
+    private boolean bloomContains(AtomicLongArray bits, long h) {
+        long nbits = (long) bits.length() << 6;
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < config.bloomHashes; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, nbits);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    // ===== hash =====
+
+    /** Hash do conteúdo relevante da história (campos null contam como vazios). */
+    public static long contentHash(String... fields) {
+        long h = 0xcbf29ce484222325L;
+        for (String f : fields) {
+            if (f != null) {
+                for (int i = 0, n = f.length(); i < n; i++) h = (h ^ f.charAt(i)) * 0x100000001b3L;
+            }
+            h = (h ^ 0x1F) * 0x100000001b3L; // separador entre campos
+        }
+        return h;
+    }
+
+    private static long hash64(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        long h = 0xcbf29ce484222325L;
+        for (byte x : b) h = (h ^ (x & 0xFF)) * 0x100000001b3L;
+        return mix(h, 0);
+    }
+
+    private static long mix(long a, long b) {
+        long z = a ^ (b * 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    public String stats() {
+        int size = 0;
+        for (LinkedHashMap<String, Seen> m : stripes) {
+            synchronized (m) {
+                size += m.size();
+            }
+        }
+        return "dedup{size=" + size + ", new=" + news.sum() + ", dup=" + duplicates.sum()
+                + ", rev=" + revisions.sum() + ", bloom=" + (bloomCurrent != null) + ", bloomLookups=" + bloomLookups.sum() + "}";
+    }
+}
@@ -0,0 +1,244 @@
+package com.btg.pactual.hub.news;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Journal append-only das notícias, particionado por idioma:
+ * <pre>
+ *   &lt;root&gt;/&lt;language&gt;/&lt;inícioEpochMillis&gt;.seg   registros
+ *   &lt;root&gt;/&lt;language&gt;/&lt;inícioEpochMillis&gt;.idx   índice de offsets (guid → offset no .seg)
+ * </pre>
+ * Registro no .seg (big-endian): {@code [int len][int crc32][long ts][byte kind][short guidLen][guid][payload]},
+ * onde {@code len} conta os bytes após o próprio campo e o CRC cobre de {@code ts} até o fim.
+ * Entrada no .idx: {@code [long offset][long ts][byte kind][short guidLen][guid]}.
+ *
+ * Cada idioma tem lock próprio (escritores de idiomas diferentes não competem). O fsync é feito
+ * em grupo por uma thread a cada {@code groupCommitMillis}, cobrindo todos os registros do
+ * intervalo; o lock só é tomado para pegar os canais, e o fsync roda fora dele, então quem
+ * grava nunca espera o disco. O segmento rola por tamanho ou idade; ao abrir, cada partição começa um segmento novo.
+ */
+public class NewsJournal implements AutoCloseable {
+
+    public static final byte KIND_RAW = 0;
+    public static final byte KIND_CLEAN = 1;
+    /**
+     * Marcador da história (gravado pelo {@link FileQueueSink} depois do RAW e do CLEAN): o campo
+     * guid leva o altId e o payload {@code [long contentHash][GUID da versão]}. O mais recente por
+     * altId diz o que está gravado para a história, qualquer que seja o GUID da revisão.
+     */
+    public static final byte KIND_STORY = 2;
+
+    static final String SEGMENT_EXT = ".seg";
+    static final String INDEX_EXT = ".idx";
+    static final int RECORD_HEADER = 4 + 4 + 8 + 1 + 2;
+    static final int INDEX_HEADER = 8 + 8 + 1 + 2;
+
+    /** Tamanho/idade dos segmentos e intervalo do group commit (variáveis de ambiente JOURNAL_*). */
+    public static final class Config {
+        public final long maxSegmentBytes;
+        public final long maxSegmentAgeMillis;
+        public final long groupCommitMillis;
+
+        public Config(long maxSegmentBytes, long maxSegmentAgeMillis, long groupCommitMillis) {
+            // o MappedNewsJournal mapeia cada segmento numa janela só (limite de um MappedByteBuffer)
+            if (maxSegmentBytes <= 0 || maxSegmentBytes > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("JOURNAL_SEGMENT_BYTES fora de (0, " + Integer.MAX_VALUE + "]: " + maxSegmentBytes);
+            }
+            this.maxSegmentBytes = maxSegmentBytes;
+            this.maxSegmentAgeMillis = maxSegmentAgeMillis;
+            this.groupCommitMillis = groupCommitMillis;
+        }
+
+        public static Config fromEnv() {
+            Map<String, String> env = System.getenv();
+            return new Config(
+                    Long.parseLong(env.getOrDefault("JOURNAL_SEGMENT_BYTES", String.valueOf(256L * 1024 * 1024))),
+                    Long.parseLong(env.getOrDefault("JOURNAL_SEGMENT_MAX_AGE_MINUTES", "60")) * 60_000L,
+                    Long.parseLong(env.getOrDefault("JOURNAL_GROUP_COMMIT_MS", "50")));
+        }
+    }
+
+    /** Posição de um registro gravado. */
+    public static final class Position {
+        public final String language;
+        public final Path segment;
+        public final long offset;
+
+        Position(String language, Path segment, long offset) {
+            this.language = language;
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        @Override
+        public String toString() { return segment.getFileName() + "@" + offset; }
+    }
+
+    private final Path root;
+    private final Config config;
+    private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService committer;
+
+    public NewsJournal(Path root, Config config) throws IOException {
+        this.root = root;
+        this.config = config;
+        Files.createDirectories(root);
+        this.committer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "news-journal-commit");
+            t.setDaemon(true);
+            return t;
+        });
+        committer.scheduleWithFixedDelay(this::groupCommit, config.groupCommitMillis,
+                config.groupCommitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public Path root() { return root; }
+
+    /** Acrescenta um registro ao segmento corrente do idioma. */
+    public Position append(String language, String guid, byte kind, byte[] payload) throws IOException {
+        return append(language, guid, kind, payload, 0, payload.length);
+    }
+
+    public Position append(String language, String guid, byte kind, byte[] payload, int off, int len) throws IOException {
+        long ts = System.currentTimeMillis();
+        byte[] guidBytes = (guid == null ? "" : guid).getBytes(StandardCharsets.UTF_8);
+        if (guidBytes.length > Short.MAX_VALUE) throw new IOException("guid grande demais");
+
+        // monta o registro fora do lock
+        ByteBuffer rec = ByteBuffer.allocate(RECORD_HEADER + guidBytes.length + len);
+        rec.putInt(rec.capacity() - 4).putInt(0).putLong(ts).put(kind)
+                .putShort((short) guidBytes.length).put(guidBytes).put(payload, off, len);
+        CRC32 crc = new CRC32();
+        crc.update(rec.array(), 8, rec.capacity() - 8);
+        rec.putInt(4, (int) crc.getValue());
+        rec.flip();
+
+        ByteBuffer idx = ByteBuffer.allocate(INDEX_HEADER + guidBytes.length);
+
+        Partition p = partitions.computeIfAbsent(language, l -> new Partition(root.resolve(l)));
+        p.lock.lock();
+        try {
+            p.ensureSegment(ts, rec.remaining());
+            long offset = p.segmentSize;
+            while (rec.hasRemaining()) p.segment.write(rec);
+            p.segmentSize += rec.capacity();
+
+            idx.putLong(offset).putLong(ts).put(kind).putShort((short) guidBytes.length).put(guidBytes).flip();
+            while (idx.hasRemaining()) p.index.write(idx);
+            p.dirty = true;
+            return new Position(language, p.segmentPath, offset);
+        } finally {
+            p.lock.unlock();
+        }
+    }
+
+    /**
+     * fsync dos segmentos com escrita pendente (uma chamada cobre todos os registros do intervalo).
+     * Sob o lock só troca a marca de pendente e copia os canais; o force roda fora, em paralelo
+     * com novos appends (que voltam a marcar a partição para o próximo ciclo).
+     */
+    private void groupCommit() {
+        for (Partition p : partitions.values()) {
+            if (!p.dirty) continue;
+            FileChannel segment;
+            FileChannel index;
+            p.lock.lock();
+            try {
+                segment = p.segment;
+                index = p.index;
+                p.dirty = false;
+            } finally {
+                p.lock.unlock();
+            }
+            if (segment == null) continue;
+            try {
+                segment.force(false);
+                index.force(false);
+            } catch (ClosedChannelException rolled) {
+                // o segmento rolou/fechou no meio: closeSegment já fez o fsync dele
+            } catch (IOException e) {
+                p.dirty = true; // tentará de novo no próximo ciclo
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        committer.shutdown();
+        for (Partition p : partitions.values()) {
+            p.lock.lock();
+            try {
+                p.closeSegment();
+            } catch (IOException ignore) {
+            } finally {
+                p.lock.unlock();
+            }
+        }
+    }
+
+    private final class Partition {
+        final Path dir;
+        final ReentrantLock lock = new ReentrantLock();
+        FileChannel segment;
+        FileChannel index;
+        Path segmentPath;
+        long segmentSize;
+        long segmentStart;
+        volatile boolean dirty;
+
+        Partition(Path dir) {
+            this.dir = dir;
+        }
+
+        void ensureSegment(long now, int nextRecord) throws IOException {
+            if (segment != null
+                    && segmentSize + nextRecord <= config.maxSegmentBytes
+                    && now - segmentStart < config.maxSegmentAgeMillis) {
+                return;
+            }
+            // segmento vazio não rola, mesmo que o registro sozinho passe do limite
+            if (segment != null && segmentSize == 0) return;
+            closeSegment();
+            Files.createDirectories(dir);
+            long start = now;
+            Path seg = dir.resolve(start + SEGMENT_EXT);
+            while (Files.exists(seg)) seg = dir.resolve(++start + SEGMENT_EXT);
+            segment = FileChannel.open(seg, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            index = FileChannel.open(dir.resolve(start + INDEX_EXT), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            segmentPath = seg;
+            segmentSize = 0;
+            segmentStart = now;
+        }
+
+        void force() throws IOException {
+            if (segment == null) return;
+            dirty = false;
+            segment.force(false);
+            index.force(false);
+        }
+
+        void closeSegment() throws IOException {
+            if (segment == null) return;
+            force();
+            segment.close();
+            index.close();
+            segment = null;
+            index = null;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.btg.pactual.hub.news;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Leitura do {@link NewsJournal}: lista idiomas/segmentos, percorre registros e busca por GUID
+ * via índice de offsets. Um registro truncado ou com CRC inválido no fim do segmento (queda
+ * antes do fsync) encerra a leitura daquele segmento sem erro.
+ */
+public class NewsJournalReader {
+
+    /** Registro lido do journal. */
+    public static final class Record {
+        public final long offset;
+        public final long timestamp;
+        public final byte kind;
+        public final String guid;
+        public final byte[] payload;
+
+        Record(long offset, long timestamp, byte kind, String guid, byte[] payload) {
+            this.offset = offset;
+            this.timestamp = timestamp;
+            this.kind = kind;
+            this.guid = guid;
+            this.payload = payload;
+        }
+
+        public boolean isRaw() { return kind == NewsJournal.KIND_RAW; }
+        public boolean isClean() { return kind == NewsJournal.KIND_CLEAN; }
+        public boolean isStory() { return kind == NewsJournal.KIND_STORY; }
+    }
+
+    /** Entrada do índice de offsets (.idx). */
+    public static final class IndexEntry {
+        public final long offset;
+        public final long timestamp;
+        public final byte kind;
+        public final String guid;
+
+        IndexEntry(long offset, long timestamp, byte kind, String guid) {
+            this.offset = offset;
+            this.timestamp = timestamp;
+            this.kind = kind;
+            this.guid = guid;
+        }
+    }
+
+    @FunctionalInterface
+    public interface RecordVisitor {
+        /** @return false para interromper a varredura */
+        boolean visit(Path segment, Record record) throws IOException;
+    }
+
+    private final Path root;
+
+    public NewsJournalReader(Path root) {
+        this.root = root;
+    }
+
+    /** Idiomas com segmentos gravados. */
+    public List<String> languages() throws IOException {
+        List<String> out = new ArrayList<>();
+        if (Files.notExists(root)) return out;
+        try (Stream<Path> dirs = Files.list(root)) {
+            dirs.filter(Files::isDirectory)
+                    .map(p -> p.getFileName().toString())
+                    .filter(n -> !n.startsWith("_"))
+                    .sorted()
+                    .forEach(out::add);
+        }
+        return out;
+    }
+
+    /** Segmentos do idioma em ordem cronológica. */
+    public List<Path> segments(String language) throws IOException {
+        List<Path> out = new ArrayList<>();
+        Path dir = root.resolve(language);
+        if (Files.notExists(dir)) return out;
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> p.getFileName().toString().endsWith(NewsJournal.SEGMENT_EXT))
+                    .sorted(Comparator.comparingLong(NewsJournalReader::segmentStart))
+                    .forEach(out::add);
+        }
+        return out;
+    }
+
+    /** Epoch millis de abertura do segmento (nome do arquivo). */
+    public static long segmentStart(Path segment) {
+        String name = segment.getFileName().toString();
+        int dot = name.indexOf('.');
+        try {
+            return Long.parseLong(dot < 0 ? name : name.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    public static Path indexFor(Path segment) {
+        String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length() - NewsJournal.SEGMENT_EXT.length())
+                + NewsJournal.INDEX_EXT);
+    }
+
+    /** Percorre todos os segmentos do idioma em ordem. */
+    public void scan(String language, RecordVisitor visitor) throws IOException {
+        for (Path seg : segments(language)) {
+            if (!scan(seg, visitor)) return;
+        }
+    }
+
+    /**
+     * Percorre os registros de um segmento; false se o visitor interrompeu. O tamanho de cada
+     * registro é conferido contra o do arquivo antes de alocar: uma cauda corrompida (cabeçalho
+     * pela metade após um crash) encerra a leitura em vez de pedir um buffer de até 2 GB.
+     */
+    public boolean scan(Path segment, RecordVisitor visitor) throws IOException {
+        long size = Files.size(segment);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment), 1 << 16))) {
+            long offset = 0;
+            while (true) {
+                int len;
+                try {
+                    len = in.readInt();
+                } catch (EOFException eof) {
+                    return true;
+                }
+                if (len < NewsJournal.RECORD_HEADER - 4 || offset + 4 + len > size) return true;
+                byte[] body = new byte[len];
+                try {
+                    in.readFully(body);
+                } catch (EOFException eof) {
+                    return true; // cauda truncada
+                }
+                Record r = decode(offset, ByteBuffer.wrap(body));
+                if (r == null) return true;
+                if (!visitor.visit(segment, r)) return false;
+                offset += 4 + len;
+            }
+        }
+    }
+
+    /** Lê um registro pelo offset; null se o offset não apontar para um registro íntegro. */
+    public Record read(Path segment, long offset) throws IOException {
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer lenBuf = ByteBuffer.allocate(4);
+            if (readFully(ch, lenBuf, offset) < 4) return null;
+            int len = lenBuf.getInt(0);
+            if (len < NewsJournal.RECORD_HEADER - 4 || offset + 4 + len > ch.size()) return null;
+            ByteBuffer body = ByteBuffer.allocate(len);
+            if (readFully(ch, body, offset + 4) < len) return null;
+            body.flip();
+            return decode(offset, body);
+        }
+    }
+
+    /** Entradas do índice de offsets de um segmento. */
+    public List<IndexEntry> index(Path segment) throws IOException {
+        List<IndexEntry> out = new ArrayList<>();
+        Path idx = indexFor(segment);
+        if (Files.notExists(idx)) return out;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(idx), 1 << 16))) {
+            while (true) {
+                try {
+                    long offset = in.readLong();
+                    long ts = in.readLong();
+                    byte kind = in.readByte();
+                    byte[] guid = new byte[in.readUnsignedShort()];
+                    in.readFully(guid);
+                    out.add(new IndexEntry(offset, ts, kind, new String(guid, StandardCharsets.UTF_8)));
+                } catch (EOFException eof) {
+                    return out;
+                }
+            }
+        }
+    }
+
+    /** Busca o registro mais recente do GUID/kind no idioma via índice; null se não encontrado. */
+    public Record find(String language, String guid, byte kind) throws IOException {
+        List<Path> segs = segments(language);
+        for (int i = segs.size() - 1; i >= 0; i--) {
+            List<IndexEntry> entries = index(segs.get(i));
+            for (int j = entries.size() - 1; j >= 0; j--) {
+                IndexEntry e = entries.get(j);
+                if (e.kind == kind && e.guid.equals(guid)) {
+                    Record r = read(segs.get(i), e.offset);
+                    if (r != null) return r;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        int total = 0;
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, position + total);
+            if (n < 0) break;
+            total += n;
+        }
+        return total;
+    }
+
+    /** Decodifica o corpo (tudo após o campo len); null se o CRC não bater. */
+    private static Record decode(long offset, ByteBuffer body) {
+        int start = body.position();
+        int len = body.remaining();
+        int crc = body.getInt();
+        CRC32 c = new CRC32();
+        ByteBuffer view = body.duplicate();
+        c.update(view);
+        if ((int) c.getValue() != crc) return null;
+        long ts = body.getLong();
+        byte kind = body.get();
+        int guidLen = body.getShort() & 0xFFFF;
+        if (guidLen > len - (NewsJournal.RECORD_HEADER - 4)) return null;
+        byte[] guid = new byte[guidLen];
+        body.get(guid);
+        byte[] payload = new byte[len - (body.position() - start)];
+        body.get(payload);
+        return new Record(offset, ts, kind, new String(guid, StandardCharsets.UTF_8), payload);
+    }
+}
@@ -0,0 +1,130 @@
+package com.btg.pactual.hub.news;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Log dos payloads WebSocket (recebidos e enviados) com nível, amostragem por domínio e
+ * formatação preguiçosa: o texto só vira String (e só é reformatado, no modo PRETTY) depois de
+ * passar pelo nível e pela amostra, então uma mensagem descartada custa um incremento atômico.
+ *
+ * A chave de amostragem é o Domain da mensagem, ou o Type quando não há Domain (Ping/Pong).
+ * Taxa N = uma a cada N mensagens da chave (a primeira sempre sai); 0 = nunca.
+ */
+public final class PayloadLog {
+
+    /** OFF: nada; SUMMARY: uma linha com domínio/tipo/tamanho; FULL: o payload inteiro. */
+    public enum Level { OFF, SUMMARY, FULL }
+
+    /** RAW: o texto como veio do socket; PRETTY: reparse + indentação (caro, só para depuração). */
+    public enum Format { RAW, PRETTY }
+
+    /** Variáveis PAYLOAD_LOG_LEVEL, PAYLOAD_LOG_FORMAT e PAYLOAD_LOG_SAMPLE ("Domínio=N,..."). */
+    public static final class Config {
+        public final Level level;
+        public final Format format;
+        public final Map<String, Integer> sampleRates;
+        public final int defaultRate;
+
+        public Config(Level level, Format format, Map<String, Integer> sampleRates, int defaultRate) {
+            this.level = level;
+            this.format = format;
+            this.sampleRates = sampleRates;
+            this.defaultRate = defaultRate;
+        }
+
+        public static Config fromEnv() {
+            Map<String, String> env = System.getenv();
+            return new Config(
+                    Level.valueOf(env.getOrDefault("PAYLOAD_LOG_LEVEL", "FULL").toUpperCase(Locale.ROOT)),
+                    Format.valueOf(env.getOrDefault("PAYLOAD_LOG_FORMAT", "RAW").toUpperCase(Locale.ROOT)),
+                    parseRates(env.getOrDefault("PAYLOAD_LOG_SAMPLE", "NewsTextAnalytics=1000,Ping=100,Pong=100")),
+                    Integer.parseInt(env.getOrDefault("PAYLOAD_LOG_SAMPLE_DEFAULT", "1")));
+        }
+
+        /** "NewsTextAnalytics=1000,Ping=0" → mapa (chaves sem distinção de caixa). */
+        public static Map<String, Integer> parseRates(String spec) {
+            Map<String, Integer> rates = new LinkedHashMap<>();
+            if (spec == null) return rates;
+            for (String part : spec.split(",")) {
+                int eq = part.indexOf('=');
+                if (eq <= 0) continue;
+                rates.put(part.substring(0, eq).trim().toLowerCase(Locale.ROOT), Integer.parseInt(part.substring(eq + 1).trim()));
+            }
+            return rates;
+        }
+    }
+
+    private final Config config;
+    private final Consumer<String> lines;
+    private final BiConsumer<String, String> blocks;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final LongAdder emitted = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+
+    /**
+     * @param lines  linha no log principal (websocket_log.txt + stdout)
+     * @param blocks bloco (label, payload) no ws_payloads.log; usado para as mensagens enviadas
+     */
+    public PayloadLog(Config config, Consumer<String> lines, BiConsumer<String, String> blocks) {
+        this.config = config;
+        this.lines = lines;
+        this.blocks = blocks;
+    }
+
+    /** Conta a mensagem e diz se ela deve sair; chamar uma vez por mensagem. */
+    public boolean sample(String key) {
+        if (config.level == Level.OFF) return false;
+        String k = key == null || key.isEmpty() ? "-" : key;
+        int rate = config.sampleRates.getOrDefault(k.toLowerCase(Locale.ROOT), config.defaultRate);
+        long n = counters.computeIfAbsent(k, x -> new AtomicLong()).getAndIncrement();
+        boolean emit = rate > 0 && n % rate == 0;
+        if (emit) emitted.increment();
+        else suppressed.increment();
+        return emit;
+    }
+
+    /** Frame recebido (buffer do pool; só é copiado se for logado). */
+    public void received(String key, String type, char[] buf, int off, int len) {
+        if (!sample(key)) return;
+        if (config.level == Level.SUMMARY) {
+            lines.accept("RECEIVED " + key + "/" + type + " chars=" + len);
+        } else {
+            lines.accept("RECEIVED:" + (len == 0 ? "" : "\n" + format(new String(buf, off, len))));
+        }
+    }
+
+    /** Mensagem enviada; label identifica o envio (LOGIN, SUBSCRIBE ..., Pong). */
+    public void sent(String key, String label, String payload) {
+        if (!sample(key)) return;
+        if (config.level == Level.SUMMARY) {
+            lines.accept("SENT " + label + " chars=" + payload.length());
+        } else {
+            blocks.accept(label, payload);
+            lines.accept("SENT:\n" + format(payload));
+        }
+    }
+
+    private String format(String json) {
+        if (config.format == Format.RAW) return json;
+        try {
+            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(mapper.readTree(json));
+        } catch (Exception e) {
+            return json;
+        }
+    }
+
+    public String stats() {
+        return "payloadLog[level=" + config.level + " format=" + config.format
+                + " emitted=" + emitted.sum() + " suppressed=" + suppressed.sum() + "]";
+    }
+}
@@ -0,0 +1,216 @@
+package com.btg.pactual.hub.news;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Estágio do pipeline de ingestão: fila limitada + pool fixo de workers.
+ * {@link #submit} bloqueia quando a fila está cheia (backpressure para o estágio anterior).
+ * Cada worker recebe sua própria instância de {@link Worker}, então estado por worker
+ * (parsers, decoders) não precisa de sincronização.
+ *
+ * Com {@code partitionKey}, cada worker tem fila própria e itens com a mesma chave vão sempre
+ * para o mesmo worker: a ordem por chave é preservada mesmo com vários workers.
+ *
+ * Cada item é medido em dois histogramas: espera na fila (submit → take) e serviço (handle).
+ *
+ * {@link #close} espera a fila esvaziar (até {@link #DRAIN_MILLIS}) antes de interromper os
+ * workers: o que já foi aceito é processado. Feche os estágios na ordem do fluxo.
+ */
+public class PipelineStage<T> implements AutoCloseable {
+
+    /** Espera máxima do {@link #close()} pela fila esvaziar. */
+    public static final long DRAIN_MILLIS = 5_000;
+
+    @FunctionalInterface
+    public interface Worker<T> {
+        void handle(T item) throws Exception;
+    }
+
+    /** Item na fila com o instante do submit. */
+    private static final class Slot<T> {
+        final T item;
+        final long enqueuedNanos;
+
+        Slot(T item, long enqueuedNanos) {
+            this.item = item;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    private final String name;
+    private final List<BlockingQueue<Slot<T>>> queues = new ArrayList<>();
+    private final Function<? super T, ?> partitionKey;
+    private final int capacity;
+    private final List<Thread> threads = new ArrayList<>();
+    private final Consumer<String> log;
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder saturated = new LongAdder();
+    /** Aceitos e ainda não terminados (na fila ou no handle); o close espera zerar. */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LatencyHistogram queueWait;
+    private final LatencyHistogram serviceTime;
+    private final long startedNanos = System.nanoTime();
+
+    public PipelineStage(String name, int capacity, int workers,
+                         Supplier<Worker<T>> workerFactory, Consumer<String> log) {
+        this(name, capacity, workers, workerFactory, null, log);
+    }
+
+    public PipelineStage(String name, int capacity, int workers, Supplier<Worker<T>> workerFactory,
+                         Function<? super T, ?> partitionKey, Consumer<String> log) {
+        this(name, capacity, workers, workerFactory, partitionKey, new LatencyHistogram(), new LatencyHistogram(), log);
+    }
+
+    /** Idem, gravando espera na fila e tempo de serviço nos histogramas dados (ex.: de {@link LatencyMetrics}). */
+    public PipelineStage(String name, int capacity, int workers, Supplier<Worker<T>> workerFactory,
+                         Function<? super T, ?> partitionKey, LatencyHistogram queueWait,
+                         LatencyHistogram serviceTime, Consumer<String> log) {
+        int n = Math.max(1, workers);
+        this.name = name;
+        this.partitionKey = partitionKey;
+        this.queueWait = queueWait;
+        this.serviceTime = serviceTime;
+        this.log = log;
+        if (partitionKey == null) {
+            queues.add(new ArrayBlockingQueue<>(capacity));
+            this.capacity = capacity;
+        } else {
+            int perWorker = Math.max(1, capacity / n);
+            for (int i = 0; i < n; i++) queues.add(new ArrayBlockingQueue<>(perWorker));
+            this.capacity = perWorker * n;
+        }
+        for (int i = 0; i < n; i++) {
+            Worker<T> worker = workerFactory.get();
+            BlockingQueue<Slot<T>> queue = queues.get(partitionKey == null ? 0 : i);
+            Thread t = new Thread(() -> runWorker(queue, worker), "mrn-" + name + "-" + i);
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+    }
+
+    /** Enfileira o item, bloqueando enquanto o estágio estiver saturado. */
+    public void submit(T item) throws InterruptedException {
+        BlockingQueue<Slot<T>> queue = queueFor(item);
+        pending.incrementAndGet();
+        if (queue.offer(new Slot<>(item, System.nanoTime()))) return;
+        saturated.increment();
+        try {
+            queue.put(new Slot<>(item, System.nanoTime()));
+        } catch (InterruptedException ie) {
+            pending.decrementAndGet();
+            throw ie;
+        }
+    }
+
+    /** Enfileira sem bloquear; false se a fila estiver cheia. */
+    public boolean offer(T item) {
+        pending.incrementAndGet();
+        if (queueFor(item).offer(new Slot<>(item, System.nanoTime()))) return true;
+        pending.decrementAndGet();
+        saturated.increment();
+        return false;
+    }
+
+    private BlockingQueue<Slot<T>> queueFor(T item) {
+        if (partitionKey == null) return queues.get(0);
+        Object key = partitionKey.apply(item);
+        int h = key == null ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        return queues.get(Math.floorMod(h, queues.size()));
+    }
+
+    private void runWorker(BlockingQueue<Slot<T>> queue, Worker<T> worker) {
+        while (!Thread.currentThread().isInterrupted()) {
+            Slot<T> slot;
+            try {
+                slot = queue.take();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long start = System.nanoTime();
+            queueWait.recordSince(slot.enqueuedNanos);
+            try {
+                worker.handle(slot.item);
+                serviceTime.recordSince(start);
+                processed.increment();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                failed.increment();
+                log.accept("[PIPELINE-ERROR] stage=" + name + " " + e.getMessage());
+            } finally {
+                pending.decrementAndGet();
+            }
+        }
+    }
+
+    public String name() { return name; }
+    public int depth() {
+        int d = 0;
+        for (BlockingQueue<Slot<T>> q : queues) d += q.size();
+        return d;
+    }
+    public int capacity() { return capacity; }
+    public int remainingCapacity() {
+        int r = 0;
+        for (BlockingQueue<Slot<T>> q : queues) r += q.remainingCapacity();
+        return r;
+    }
+    public long processed() { return processed.sum(); }
+    public long failed() { return failed.sum(); }
+    /** Quantas vezes um produtor encontrou a fila cheia. */
+    public long saturatedCount() { return saturated.sum(); }
+    public int workers() { return threads.size(); }
+    /** Espera na fila (submit → início do handle). */
+    public LatencyHistogram queueWait() { return queueWait; }
+    /** Duração do handle dos itens processados com sucesso. */
+    public LatencyHistogram serviceTime() { return serviceTime; }
+
+    /**
+     * Média de itens processados por segundo desde a criação. Não guarda estado de leitura: a taxa
+     * de um intervalo sai da diferença entre duas leituras de {@link #processed()}, feita por quem lê.
+     */
+    public double throughputPerSecond() {
+        double secs = (System.nanoTime() - startedNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        return secs <= 0 ? 0 : processed() / secs;
+    }
+
+    @Override
+    public String toString() {
+        return name + "=" + depth() + "/" + capacity + " (ok=" + processed() + " err=" + failed()
+                + " full=" + saturatedCount() + " wait.p99=" + queueWait.percentileMicros(99) + "us"
+                + " svc.p99=" + serviceTime.percentileMicros(99) + "us)";
+    }
+
+    @Override
+    public void close() {
+        close(DRAIN_MILLIS);
+    }
+
+    /** Espera até drainMillis a fila esvaziar e os itens em andamento terminarem; então interrompe os workers. */
+    public void close(long drainMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainMillis);
+        try {
+            while (pending.get() > 0 && System.nanoTime() < deadline) Thread.sleep(10);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        int left = depth();
+        if (left > 0) log.accept("[PIPELINE-CLOSE] stage=" + name + " " + left + " itens descartados após " + drainMillis + "ms");
+        for (Thread t : threads) t.interrupt();
+    }
+}
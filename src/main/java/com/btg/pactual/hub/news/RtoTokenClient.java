@@ -10,21 +10,71 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-/** Cliente para obter o Access Token RTO (V1 - Password Grant) via HTTP POST. */
-public class RtoTokenClient {
+/**
+ * Cliente para obter o Access Token RTO (V1 - Password Grant) via HTTP POST.
+ *
+ * O token vigente fica num snapshot imutável e volátil: {@link #getAccessToken()} só faz HTTP
+ * quando não há token válido (primeira chamada ou renovação atrasada). Depois de {@link #start()},
+ * uma thread renova o token antes de expirar (refresh_token; password grant se o refresh falhar),
+ * com retry em backoff, e avisa os listeners a cada troca.
+ */
+public class RtoTokenClient implements AutoCloseable {
 
-    private static final String AUTH_URL = "https://api.refinitiv.com/auth/oauth2/v1/token";
-    private final HttpClient http = HttpClient.newHttpClient();
+    /** RDP_AUTH_URL aponta para outro servidor de auth (ex.: o stand-in local do replay). */
+    private static final String AUTH_URL = System.getenv().getOrDefault("RDP_AUTH_URL", "https://api.refinitiv.com/auth/oauth2/v1/token");
+    /** Renova quando resta esta fração da validade. */
+    private static final double REFRESH_AHEAD_FRACTION = 0.2;
+    private static final long MIN_REFRESH_AHEAD_MS = 10_000;
+    private static final long DEFAULT_EXPIRES_IN_S = 300;
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
     private final ObjectMapper mapper = new ObjectMapper();
 
     private final String clientId;
     private final String username;
     private final String password;
-    private volatile String currentToken;
+
+    /** Token vigente. */
+    public static final class Token {
+        public final String accessToken;
+        final String refreshToken;
+        public final long obtainedAtMillis;
+        public final long expiresAtMillis;
+
+        Token(String accessToken, String refreshToken, long obtainedAtMillis, long expiresAtMillis) {
+            this.accessToken = accessToken;
+            this.refreshToken = refreshToken;
+            this.obtainedAtMillis = obtainedAtMillis;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        boolean validAt(long now) { return now < expiresAtMillis - 1_000; }
+
+        long refreshAtMillis() {
+            long ahead = Math.max(MIN_REFRESH_AHEAD_MS, (long) ((expiresAtMillis - obtainedAtMillis) * REFRESH_AHEAD_FRACTION));
+            return Math.max(obtainedAtMillis, expiresAtMillis - ahead);
+        }
+    }
+
+    private volatile Token current;
+    private final ReentrantLock fetchLock = new ReentrantLock();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService refresher;
+    private ScheduledFuture<?> nextRefresh;
+    private long retryDelayMs = 1_000;
 
     public RtoTokenClient(String clientId, String username, String password) {
         this.clientId = clientId;
@@ -34,11 +84,98 @@ public class RtoTokenClient {
 
     public String getUsername() { return username; }
 
-    /** Obtém (e cacheia) o Access Token. */
-    public synchronized String getAccessToken() throws IOException {
-        if (currentToken != null && !currentToken.isBlank()) return currentToken;
+    /** Token atual sem I/O; null se ainda não houver token válido. */
+    public String currentToken() {
+        Token t = current;
+        return (t != null && t.validAt(System.currentTimeMillis())) ? t.accessToken : null;
+    }
+
+    public Token snapshot() { return current; }
 
+    /** Access Token válido. Lock-free enquanto o token vigente não expirou. */
+    public String getAccessToken() throws IOException {
+        Token t = current;
+        if (t != null && t.validAt(System.currentTimeMillis())) return t.accessToken;
+        fetchLock.lock();
+        try {
+            t = current;
+            if (t != null && t.validAt(System.currentTimeMillis())) return t.accessToken;
+            return rotate(fetch(t)).accessToken;
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    /** Chamado com o novo access token a cada renovação (na thread de renovação). */
+    public void addTokenListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    /** Remove um listener registrado (mesma instância passada ao add). */
+    public void removeTokenListener(Consumer<String> listener) {
+        listeners.remove(listener);
+    }
 
+    /** Inicia a renovação em segundo plano (idempotente). Obtém o primeiro token se necessário. */
+    public synchronized void start() {
+        if (refresher != null) return;
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread th = new Thread(r, "rto-token-refresh");
+            th.setDaemon(true);
+            return th;
+        });
+        Token t = current;
+        scheduleRefresh(t == null ? 0 : t.refreshAtMillis() - System.currentTimeMillis());
+    }
+
+    private synchronized void scheduleRefresh(long delayMs) {
+        if (refresher == null || refresher.isShutdown()) return;
+        if (nextRefresh != null) nextRefresh.cancel(false);
+        nextRefresh = refresher.schedule(this::refreshInBackground, Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+    }
+
+    private void refreshInBackground() {
+        fetchLock.lock();
+        try {
+            Token t = rotate(fetch(current));
+            retryDelayMs = 1_000;
+            scheduleRefresh(t.refreshAtMillis() - System.currentTimeMillis());
+        } catch (IOException e) {
+            System.err.println("[TOKEN] renovação falhou (nova tentativa em " + retryDelayMs + "ms): " + e.getMessage());
+            scheduleRefresh(retryDelayMs);
+            retryDelayMs = Math.min(retryDelayMs * 2, 60_000);
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private Token rotate(Token t) {
+        current = t;
+        for (Consumer<String> l : listeners) {
+            try {
+                l.accept(t.accessToken);
+            } catch (RuntimeException e) {
+                System.err.println("[TOKEN] listener falhou: " + e.getMessage());
+            }
+        }
+        return t;
+    }
+
+    /** refresh_token quando houver; se falhar (ou não houver), password grant. */
+    private Token fetch(Token previous) throws IOException {
+        if (previous != null && previous.refreshToken != null && !previous.refreshToken.isBlank()) {
+            Map<String, String> data = new LinkedHashMap<>();
+            data.put("grant_type", "refresh_token");
+            data.put("username", username);
+            data.put("refresh_token", previous.refreshToken);
+            data.put("client_id", clientId);
+            data.put("takeExclusiveSignOnControl", "true");
+            try {
+                return post(data, previous.refreshToken);
+            } catch (IOException e) {
+                System.err.println("[TOKEN] refresh_token recusado, usando password grant: " + e.getMessage());
+            }
+        }
         Map<String, String> data = new LinkedHashMap<>();
         data.put("grant_type", "password");
         data.put("username", username);
@@ -51,18 +188,23 @@ public class RtoTokenClient {
         data.put("scope", "trapi.streaming.pricing.read");
         // Se quiser já incluir news (para outros endpoints REST de news), você pode somar:
         // data.put("scope", "trapi.streaming.pricing.read trapi.streaming.news.read");
+        return post(data, null);
+    }
 
+    private Token post(Map<String, String> data, String previousRefreshToken) throws IOException {
         String body = data.entrySet().stream()
                 .map(e -> enc(e.getKey()) + "=" + enc(e.getValue()))
                 .collect(Collectors.joining("&"));
 
         HttpRequest req = HttpRequest.newBuilder()
                 .uri(URI.create(AUTH_URL))
+                .timeout(Duration.ofSeconds(15))
                 .header("Content-Type", "application/x-www-form-urlencoded")
                 .POST(HttpRequest.BodyPublishers.ofString(body))
                 .build();
 
         try {
+            long now = System.currentTimeMillis();
             HttpResponse<String> res = http.send(req, HttpResponse.BodyHandlers.ofString());
             if (res.statusCode() != 200) {
                 throw new IOException("Auth falhou: HTTP " + res.statusCode() + " body=" + res.body());
@@ -72,14 +214,21 @@ public class RtoTokenClient {
             if (token == null || token.isBlank()) {
                 throw new IOException("access_token vazio na resposta: " + res.body());
             }
-            currentToken = token;
-            return currentToken;
+            long expiresIn = root.path("expires_in").asLong(DEFAULT_EXPIRES_IN_S);
+            if (expiresIn <= 0) expiresIn = DEFAULT_EXPIRES_IN_S;
+            String refresh = root.path("refresh_token").asText(previousRefreshToken);
+            return new Token(token, refresh, now, now + expiresIn * 1000);
         } catch (InterruptedException ie) {
             Thread.currentThread().interrupt();
             throw new IOException("Auth interrompida", ie);
         }
     }
 
+    @Override
+    public synchronized void close() {
+        if (refresher != null) refresher.shutdownNow();
+    }
+
     private static String enc(String v) {
         return URLEncoder.encode(v == null ? "" : v, StandardCharsets.UTF_8);
     }
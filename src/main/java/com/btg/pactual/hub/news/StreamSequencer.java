@@ -0,0 +1,49 @@
+package com.btg.pactual.hub.news;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Atribui chaves de reagrupamento para fragments MRN que chegam sem GUID.
+ * Os fragments de uma história chegam em sequência no mesmo stream (campo "ID") da mesma conexão,
+ * então a chave é {@code UNKN-<conexão>-<stream>-<sequência>}: FRAG_NUM 1 abre uma sequência nova
+ * no stream e o último fragmento (FRAG_NUM >= ACUM) a encerra.
+ *
+ * Deve ser chamado no ponto ordenado do fluxo (o worker único de receive da conexão), antes do
+ * fragmento ir para os workers de reassemble; a partir daí a chave já é única e a ordem de
+ * processamento não importa. Não é thread-safe: uma instância por conexão.
+ */
+public class StreamSequencer {
+
+    public static final String PREFIX = "UNKN-";
+
+    private final String connectionId;
+    private final Map<Integer, Long> openSequences = new HashMap<>();
+    private long nextSequence;
+
+    public StreamSequencer(String connectionId) {
+        this.connectionId = connectionId;
+    }
+
+    /** Chave para um fragmento sem GUID. */
+    public String keyForFragment(int streamId, int fragNum, int acum) {
+        Long seq = openSequences.get(streamId);
+        if (fragNum == 1 || seq == null) {
+            seq = ++nextSequence;
+            openSequences.put(streamId, seq);
+        }
+        String key = key(streamId, seq);
+        if (acum <= 1 || fragNum >= acum) openSequences.remove(streamId);
+        return key;
+    }
+
+    /** Chave da sequência aberta no stream (mensagem sem FRAGMENT), encerrando-a; null se não houver. */
+    public String keyForFlush(int streamId) {
+        Long seq = openSequences.remove(streamId);
+        return seq == null ? null : key(streamId, seq);
+    }
+
+    private String key(int streamId, long seq) {
+        return PREFIX + connectionId + "-" + streamId + "-" + seq;
+    }
+}
@@ -1,10 +1,14 @@
 package com.btg.pactual.hub.news.builder;
 import com.btg.pactual.hub.news.dto.NewsEventDTO;
+import com.btg.pactual.hub.news.model.NewsDocument;
+import com.fasterxml.jackson.core.JsonParser; import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.*; import lombok.RequiredArgsConstructor; import org.springframework.stereotype.Component;
-import java.time.Instant; import java.util.stream.StreamSupport;
+import java.io.IOException;
+import java.time.Instant; import java.util.ArrayList; import java.util.List;
 @Component @RequiredArgsConstructor
 public class NewsEventBuilder {
   private final ObjectMapper mapper;
+
   public NewsEventDTO fromMrn(String raw) {
     try {
       JsonNode n = mapper.readTree(raw);
@@ -22,4 +26,118 @@ public class NewsEventBuilder {
       return b.build();
     } catch (Exception e) { throw new IllegalArgumentException("Payload MRN inválido", e); }
   }
+
+  public NewsDocument toDocument(String raw) { return toDocument(raw, Instant.now()); }
+
+  /** Igual ao de bytes, lendo os chars da String direto (sem getBytes). */
+  public NewsDocument toDocument(String raw, Instant receivedAt) {
+    try (JsonParser p = mapper.getFactory().createParser(raw)) { return toDocument(p, receivedAt); }
+    catch (IOException e) { throw new IllegalArgumentException("Payload MRN inválido", e); }
+  }
+
+  public NewsDocument toDocument(byte[] raw) { return toDocument(raw, Instant.now()); }
+
+  /**
+   * MRN (bytes UTF-8) direto para NewsDocument, em uma passada do parser de streaming, sem
+   * JsonNode nem DTO intermediário. Mesmos defaults do fromMrn (id = altId ou "", language "pt",
+   * body ""). "source" (objeto) e "images" (array) seguem o schema do NewsDocument; sem "source",
+   * o "provider" do topo vira source.provider. "expireAt" aceita ISO-8601 ou epoch millis.
+   * Campos desconhecidos são pulados sem materializar. receivedAt é o instante em que a notícia
+   * chegou ao serviço (não o da persistência); "versionCreated" vai para o campo de mesmo nome,
+   * usado nas métricas de latência e para ordenar revisões no upsert.
+   */
+  public NewsDocument toDocument(byte[] raw, Instant receivedAt) {
+    try (JsonParser p = mapper.getFactory().createParser(raw)) { return toDocument(p, receivedAt); }
+    catch (IOException e) { throw new IllegalArgumentException("Payload MRN inválido", e); }
+  }
+
+  private NewsDocument toDocument(JsonParser p, Instant receivedAt) throws IOException {
+    if (p.nextToken() != JsonToken.START_OBJECT) throw new IllegalArgumentException("MRN não é objeto JSON");
+    NewsDocument d = new NewsDocument();
+    d.id = ""; d.language = "pt"; d.body = ""; d.receivedAt = receivedAt;
+    String provider = null;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String f = p.getCurrentName(); JsonToken v = p.nextToken();
+      switch (f) {
+        case "altId" -> d.id = text(p, v, "");
+        case "language" -> d.language = text(p, v, "pt");
+        case "headline" -> d.headline = text(p, v, null);
+        case "body" -> d.body = text(p, v, "");
+        case "audiences" -> d.audiences = strings(p, v);
+        case "provider" -> provider = text(p, v, null);
+        case "source" -> d.source = source(p, v);
+        case "images" -> d.images = images(p, v);
+        case "expireAt" -> d.expireAt = instant(p, v);
+        case "versionCreated" -> d.versionCreated = instant(p, v);
+        default -> p.skipChildren();
+      }
+    }
+    if (d.source == null && provider != null) d.source = NewsDocument.Source.builder().provider(provider).build();
+    return d;
+  }
+
+  /** Escalar como texto (número/boolean viram texto); null/objeto/array → default. */
+  private static String text(JsonParser p, JsonToken v, String def) throws IOException {
+    if (v == JsonToken.VALUE_NULL) return def;
+    if (v.isScalarValue()) return p.getText();
+    p.skipChildren(); return def;
+  }
+
+  private static Integer integer(JsonParser p, JsonToken v) throws IOException {
+    if (v == JsonToken.VALUE_NUMBER_INT) return p.getIntValue();
+    if (v == JsonToken.VALUE_STRING) { try { return Integer.valueOf(p.getText().trim()); } catch (NumberFormatException e) { return null; } }
+    p.skipChildren(); return null;
+  }
+
+  private static Instant instant(JsonParser p, JsonToken v) throws IOException {
+    if (v == JsonToken.VALUE_NUMBER_INT) return Instant.ofEpochMilli(p.getLongValue());
+    if (v == JsonToken.VALUE_STRING) { try { return Instant.parse(p.getText()); } catch (RuntimeException e) { return null; } }
+    p.skipChildren(); return null;
+  }
+
+  private static List<String> strings(JsonParser p, JsonToken v) throws IOException {
+    if (v != JsonToken.START_ARRAY) { p.skipChildren(); return null; }
+    List<String> out = new ArrayList<>();
+    for (JsonToken t = p.nextToken(); t != JsonToken.END_ARRAY; t = p.nextToken()) {
+      String s = text(p, t, null); if (s != null) out.add(s);
+    }
+    return out;
+  }
+
+  private static NewsDocument.Source source(JsonParser p, JsonToken v) throws IOException {
+    if (v != JsonToken.START_OBJECT) { p.skipChildren(); return null; }
+    NewsDocument.Source s = new NewsDocument.Source();
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String f = p.getCurrentName(); JsonToken t = p.nextToken();
+      switch (f) {
+        case "provider" -> s.provider = text(p, t, null);
+        case "service" -> s.service = text(p, t, null);
+        case "topic" -> s.topic = text(p, t, null);
+        default -> p.skipChildren();
+      }
+    }
+    return s;
+  }
+
+  private static List<NewsDocument.Image> images(JsonParser p, JsonToken v) throws IOException {
+    if (v != JsonToken.START_ARRAY) { p.skipChildren(); return null; }
+    List<NewsDocument.Image> out = new ArrayList<>();
+    for (JsonToken t = p.nextToken(); t != JsonToken.END_ARRAY; t = p.nextToken()) {
+      if (t != JsonToken.START_OBJECT) { p.skipChildren(); continue; }
+      NewsDocument.Image img = new NewsDocument.Image();
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String f = p.getCurrentName(); JsonToken ft = p.nextToken();
+        switch (f) {
+          case "url" -> img.url = text(p, ft, null);
+          case "caption" -> img.caption = text(p, ft, null);
+          case "width" -> img.width = integer(p, ft);
+          case "height" -> img.height = integer(p, ft);
+          case "mimeType" -> img.mimeType = text(p, ft, null);
+          default -> p.skipChildren();
+        }
+      }
+      out.add(img);
+    }
+    return out;
+  }
 }
@@ -0,0 +1,8 @@
+package com.btg.pactual.hub.news.config;
+import com.btg.pactual.hub.news.LatencyMetrics;
+import org.springframework.context.annotation.Bean; import org.springframework.context.annotation.Configuration;
+/** LatencyMetrics.shared deste processo (saltos do Mongo), exposto em /metrics/latency. */
+@Configuration
+public class LatencyMetricsConfig {
+  @Bean public LatencyMetrics latencyMetrics() { return LatencyMetrics.shared(); }
+}
@@ -0,0 +1,8 @@
+package com.btg.pactual.hub.news.config;
+import com.btg.pactual.hub.news.NewsDedupCache;
+import org.springframework.context.annotation.Bean; import org.springframework.context.annotation.Configuration;
+/** Mesma instância de dedup do FileQueueSink (NewsDedupCache.shared), configurada por DEDUP_*. */
+@Configuration
+public class NewsDedupConfig {
+  @Bean public NewsDedupCache newsDedupCache() { return NewsDedupCache.shared(); }
+}
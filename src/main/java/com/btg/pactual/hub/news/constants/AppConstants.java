@@ -3,5 +3,6 @@ public final class AppConstants {
     public static final boolean SAVE_TO_FILE =
         Boolean.parseBoolean(System.getenv().getOrDefault("SAVE_TO_FILE", "false"));
     public static final String SAVE_PATH = "data/mrn/";
+    public static final String JOURNAL_PATH = System.getenv().getOrDefault("JOURNAL_PATH", "mrn_noticias");
     private AppConstants() {}
 }
@@ -0,0 +1,17 @@
+package com.btg.pactual.hub.news.controller;
+import com.btg.pactual.hub.news.LatencyMetrics;
+import lombok.RequiredArgsConstructor; import org.springframework.web.bind.annotation.*;
+import java.util.Map;
+/**
+ * p50/p90/p99/p999 (ms) dos saltos gravados neste processo: received_to_mongo e source_to_mongo. Os saltos
+ * frame → journal são do processo do cliente WebSocket (METRICS_HTTP_PORT, mesmo /metrics/latency).
+ */
+@RestController @RequestMapping("/metrics/latency") @RequiredArgsConstructor
+public class LatencyController {
+  private final LatencyMetrics latency;
+  @GetMapping public Map<String, Map<String, Object>> latency() { return latency.snapshot(); }
+  /** Zera os histogramas (ex.: antes de uma janela de medição). */
+  @DeleteMapping public Map<String, Map<String, Object>> reset() {
+    Map<String, Map<String, Object>> last = latency.snapshot(); latency.reset(); return last;
+  }
+}
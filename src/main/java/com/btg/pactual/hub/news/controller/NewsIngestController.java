@@ -1,10 +1,17 @@
 package com.btg.pactual.hub.news.controller;
+import com.btg.pactual.hub.news.service.NewsIngestService;
 import com.btg.pactual.hub.news.service.NewsRoutingService; import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity; import org.springframework.web.bind.annotation.*;
+import java.io.InputStream;
 @RestController @RequestMapping("/api/news") @RequiredArgsConstructor
 public class NewsIngestController {
-  private final NewsRoutingService routing;
+  private final NewsRoutingService routing; private final NewsIngestService ingest;
   @PostMapping("/test") public ResponseEntity<String> ingest(@RequestBody String rawJson) {
     routing.processIncomingJson(rawJson); return ResponseEntity.ok("OK");
   }
+  /** NDJSON ou array JSON, de qualquer tamanho (chunked ou não). Ex.: curl -T dump.ndjson -H 'Content-Type: application/x-ndjson' .../api/news/ingest */
+  @PostMapping(value = "/ingest", consumes = {"application/x-ndjson", "application/json", "application/octet-stream", "text/plain"})
+  public NewsIngestService.IngestSummary stream(InputStream body) throws InterruptedException {
+    return ingest.ingest(body);
+  }
 }
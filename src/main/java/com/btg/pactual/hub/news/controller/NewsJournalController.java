@@ -0,0 +1,20 @@
+package com.btg.pactual.hub.news.controller;
+import com.btg.pactual.hub.news.service.NewsReplayService; import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType; import org.springframework.http.ResponseEntity; import org.springframework.web.bind.annotation.*;
+import java.time.Instant;
+@RestController @RequestMapping("/api/news/journal") @RequiredArgsConstructor
+public class NewsJournalController {
+  private final NewsReplayService replay;
+  @GetMapping(value = "/{guid}", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<String> find(@PathVariable String guid) throws Exception {
+    String json = replay.findRaw(guid);
+    return json == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(json);
+  }
+  /** Ex.: POST /api/news/journal/replay?from=2024-05-01T00:00:00Z&to=2024-05-02T00:00:00Z&lang=pt */
+  @PostMapping("/replay")
+  public NewsReplayService.ReplayResult replay(@RequestParam String from, @RequestParam(required = false) String to,
+                                               @RequestParam(required = false) String lang) throws Exception {
+    long toMillis = (to == null) ? Long.MAX_VALUE : Instant.parse(to).toEpochMilli();
+    return replay.replay(lang, Instant.parse(from).toEpochMilli(), toMillis);
+  }
+}
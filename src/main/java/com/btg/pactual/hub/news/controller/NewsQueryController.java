@@ -0,0 +1,22 @@
+package com.btg.pactual.hub.news.controller;
+import com.btg.pactual.hub.news.model.NewsDocument;
+import com.btg.pactual.hub.news.service.NewsQueryService; import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity; import org.springframework.web.bind.annotation.*;
+import java.time.Duration; import java.time.Instant; import java.util.List;
+/** Consulta através das coleções mensais. Ex.: GET /api/news/query?lang=pt&from=2024-05-01T00:00:00Z&limit=50 */
+@RestController @RequestMapping("/api/news/query") @RequiredArgsConstructor
+public class NewsQueryController {
+  private final NewsQueryService query;
+  @GetMapping("/{id}") public ResponseEntity<NewsDocument> find(@PathVariable String id) {
+    return query.findById(id).map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+  }
+  /** Sem from: últimas 24h. Com q: busca textual em headline/body. */
+  @GetMapping public List<NewsDocument> list(@RequestParam(required = false) String lang, @RequestParam(required = false) String q,
+                                             @RequestParam(required = false) String from, @RequestParam(required = false) String to,
+                                             @RequestParam(defaultValue = "50") int limit) {
+    Instant toI = to == null ? Instant.now() : Instant.parse(to);
+    Instant fromI = from == null ? toI.minus(Duration.ofDays(1)) : Instant.parse(from);
+    int n = Math.max(1, Math.min(limit, 1000));
+    return q == null || q.isBlank() ? query.recent(lang, fromI, toI, n) : query.search(q, lang, fromI, toI, n);
+  }
+}
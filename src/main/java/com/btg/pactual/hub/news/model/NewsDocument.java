@@ -1,6 +1,7 @@
 package com.btg.pactual.hub.news.model;
 import lombok.*; import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.index.*; import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TextScore;
 import java.time.Instant;
 @Document(collection = "news")
 @CompoundIndexes({
@@ -14,7 +15,12 @@ public class NewsDocument {
   public String language; public String headline; public String body;
   public java.util.List<String> audiences; public Source source; public java.util.List<Image> images;
   @Indexed(direction = IndexDirection.DESCENDING) public Instant receivedAt;
-  public Instant expireAt;
+  /** Preenchido pelo NewsRetentionService; o índice TTL apaga o documento neste instante. */
+  @Indexed(name = "expire_at_ttl", expireAfter = "0s") public Instant expireAt;
+  /** versionCreated da Refinitiv: mede a latência e ordena as revisões no upsert condicional do NewsBulkWriter. */
+  public Instant versionCreated;
+  /** Relevância da busca textual (só leitura, não é gravada); o NewsQueryService junta as coleções por ela. */
+  @TextScore public Float score;
   @Data @Builder @NoArgsConstructor @AllArgsConstructor public static class Image {
     public String url; public String caption; public Integer width; public Integer height; public String mimeType;
   }
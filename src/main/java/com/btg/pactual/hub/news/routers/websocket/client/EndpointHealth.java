@@ -0,0 +1,136 @@
+package com.btg.pactual.hub.news.routers.websocket.client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saúde dos endpoints WebSocket, compartilhada pelas conexões do {@link MrnConnectionManager}.
+ * Por endpoint: latência do handshake (média móvel), taxa de falha com decaimento, última falha
+ * e quantas conexões o usam agora. {@link #acquire} devolve o de menor custo; em empate, o mais
+ * próximo do deslocamento da conexão, para espalhar as conexões. Conexões do mesmo grupo
+ * redundante (ativa + standby) nunca recebem o mesmo endpoint enquanto houver outro livre do
+ * grupo, seja qual for o custo.
+ */
+public class EndpointHealth {
+
+    private static final double EWMA_ALPHA = 0.3;
+    private static final double DECAY = 0.9;
+    private static final long RECENT_FAILURE_MS = 30_000;
+
+    private static final class Stats {
+        double latencyMs;
+        double successes;
+        double failures;
+        long lastFailureAt;
+        int inUse;
+        /** Grupos redundantes das conexões que usam o endpoint agora (repetições = várias conexões). */
+        final List<String> groups = new ArrayList<>();
+
+        double cost(long now) {
+            double total = successes + failures;
+            double failureRate = total == 0 ? 0 : failures / total;
+            return latencyMs
+                    + failureRate * 1_000
+                    + inUse * 500
+                    + (now - lastFailureAt < RECENT_FAILURE_MS ? 5_000 : 0);
+        }
+    }
+
+    private final Map<String, Stats> endpoints = new LinkedHashMap<>();
+
+    /** Troca a lista (discovery); endpoints que continuam mantêm o histórico. */
+    public synchronized void update(List<String> urls) {
+        Map<String, Stats> old = new LinkedHashMap<>(endpoints);
+        endpoints.clear();
+        for (String u : urls) {
+            if (u == null || u.isBlank()) continue;
+            Stats s = old.get(u.trim());
+            endpoints.put(u.trim(), s == null ? new Stats() : s);
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return endpoints.isEmpty();
+    }
+
+    public synchronized List<String> urls() {
+        return new ArrayList<>(endpoints.keySet());
+    }
+
+    /** Endpoint de menor custo (marcado em uso até {@link #release}); null se não houver nenhum. */
+    public synchronized String acquire(int offset) {
+        return acquire(offset, null);
+    }
+
+    /**
+     * Idem, fora dos endpoints já usados por outra conexão do grupo (null = sem grupo). Com todos
+     * usados pelo grupo (ex.: um endpoint só), escolhe entre todos.
+     */
+    public synchronized String acquire(int offset, String group) {
+        if (endpoints.isEmpty()) return null;
+        String best = cheapest(offset, group);
+        if (best == null) best = cheapest(offset, null);
+        Stats s = endpoints.get(best);
+        s.inUse++;
+        if (group != null) s.groups.add(group);
+        return best;
+    }
+
+    private String cheapest(int offset, String excludeGroup) {
+        long now = System.currentTimeMillis();
+        List<String> urls = new ArrayList<>(endpoints.keySet());
+        int n = urls.size();
+        String best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            String u = urls.get(Math.floorMod(offset + i, n));
+            Stats s = endpoints.get(u);
+            if (excludeGroup != null && s.groups.contains(excludeGroup)) continue;
+            double c = s.cost(now);
+            if (c < bestCost) {
+                best = u;
+                bestCost = c;
+            }
+        }
+        return best;
+    }
+
+    public synchronized void release(String url) {
+        release(url, null);
+    }
+
+    public synchronized void release(String url, String group) {
+        Stats s = url == null ? null : endpoints.get(url);
+        if (s == null) return;
+        if (s.inUse > 0) s.inUse--;
+        if (group != null) s.groups.remove(group);
+    }
+
+    public synchronized void recordSuccess(String url, long handshakeMillis) {
+        Stats s = endpoints.get(url);
+        if (s == null) return;
+        s.latencyMs = s.successes + s.failures == 0 ? handshakeMillis
+                : EWMA_ALPHA * handshakeMillis + (1 - EWMA_ALPHA) * s.latencyMs;
+        s.successes = s.successes * DECAY + 1;
+        s.failures *= DECAY;
+    }
+
+    public synchronized void recordFailure(String url) {
+        Stats s = endpoints.get(url);
+        if (s == null) return;
+        s.failures = s.failures * DECAY + 1;
+        s.successes *= DECAY;
+        s.lastFailureAt = System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder("endpoints{");
+        endpoints.forEach((u, s) -> sb.append(u).append("=").append(Math.round(s.cost(now)))
+                .append("(lat=").append(Math.round(s.latencyMs)).append("ms, inUse=").append(s.inUse).append(") "));
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,78 @@
+package com.btg.pactual.hub.news.routers.websocket.client;
+
+import com.btg.pactual.hub.news.LatencyMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+
+/**
+ * Listener HTTP mínimo do processo do cliente WebSocket: os saltos frame → journal só existem
+ * aqui (o /metrics/latency do Spring roda em outro processo e só vê os saltos do Mongo).
+ * GET /metrics/latency devolve p50/p90/p99/p999 (ms) de cada salto; DELETE devolve e zera.
+ */
+public class MetricsHttpServer implements AutoCloseable {
+
+    /** Porta e interface (METRICS_HTTP_PORT, METRICS_HTTP_BIND); porta vazia ou negativa desliga. */
+    public static final class Config {
+        public final int port;
+        public final String bind;
+
+        public Config(int port, String bind) {
+            this.port = port;
+            this.bind = bind;
+        }
+
+        public boolean enabled() { return port >= 0; }
+
+        public static Config fromEnv() {
+            Map<String, String> env = System.getenv();
+            String port = env.getOrDefault("METRICS_HTTP_PORT", "").trim();
+            return new Config(port.isEmpty() ? -1 : Integer.parseInt(port),
+                    env.getOrDefault("METRICS_HTTP_BIND", "127.0.0.1"));
+        }
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final LatencyMetrics latency = LatencyMetrics.shared();
+    private final HttpServer http;
+
+    public MetricsHttpServer(Config config) throws IOException {
+        this.http = HttpServer.create(new InetSocketAddress(config.bind, config.port), 0);
+        http.createContext("/metrics/latency", this::latency);
+        http.start();
+    }
+
+    public int port() { return http.getAddress().getPort(); }
+
+    private void latency(HttpExchange ex) throws IOException {
+        switch (ex.getRequestMethod()) {
+            case "GET" -> respond(ex, 200, latency.snapshot());
+            case "DELETE" -> {
+                Map<String, Map<String, Object>> last = latency.snapshot();
+                latency.reset();
+                respond(ex, 200, last);
+            }
+            default -> respond(ex, 405, Map.of("error", "método não suportado: " + ex.getRequestMethod()));
+        }
+    }
+
+    private void respond(HttpExchange ex, int status, Object body) throws IOException {
+        ex.getRequestBody().readAllBytes();
+        byte[] out = mapper.writeValueAsBytes(body);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, out.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(out);
+        }
+    }
+
+    @Override
+    public void close() {
+        http.stop(0);
+    }
+}
@@ -0,0 +1,227 @@
+package com.btg.pactual.hub.news.routers.websocket.client;
+
+import com.btg.pactual.hub.news.FileQueueSink;
+import com.btg.pactual.hub.news.FirstArrivalMerge;
+import com.btg.pactual.hub.news.MrnFragmentReassembler;
+import com.btg.pactual.hub.news.MrnPipeline;
+import com.btg.pactual.hub.news.RtoTokenClient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Abre N conexões WebSocket MRN e distribui os itens (MRN_STORY, MRN_TRNA, MRN_TRSI, filtros
+ * por idioma/tópico) entre elas em round-robin. Cada conexão tem seu próprio espaço de stream IDs
+ * e seu worker de receive; todas alimentam o mesmo reassembler e o mesmo {@link MrnPipeline}.
+ * A conexão i começa pelo endpoint i, então as conexões se espalham pelos endpoints descobertos.
+ * Para mais vazão, aumente MRN_CONNECTIONS (até o número de itens).
+ *
+ * Com MRN_STANDBY=true cada grupo de itens ganha uma segunda conexão, logada em outro endpoint e
+ * assinando os mesmos itens; o {@link FirstArrivalMerge} deixa passar a primeira cópia de cada
+ * fragmento. A queda de uma das duas não abre buraco e a latência é a do caminho mais rápido.
+ * Fragments sem GUID vêm só da ativa, ou da standby enquanto a ativa não estiver logada.
+ *
+ * Conexões e reconexões rodam num scheduler próprio (backoff com jitter, sem bloquear as threads
+ * do HttpClient); cada conexão escolhe o endpoint mais saudável em {@link EndpointHealth}, e o
+ * discovery é refeito a cada DISCOVERY_REFRESH_MINUTES. A cada STATS_LOG_SECONDS o {@link #stats()}
+ * vai para o log ("[STATS]"), com a vazão do decode no intervalo.
+ *
+ * Com METRICS_HTTP_PORT definido, as latências por salto deste processo ficam em
+ * {@link MetricsHttpServer} (GET/DELETE /metrics/latency).
+ */
+public class MrnConnectionManager implements AutoCloseable {
+
+    /**
+     * Conexões, itens e reconexão (variáveis MRN_CONNECTIONS, MRN_SUBSCRIPTIONS, MRN_STANDBY,
+     * WS_RECONNECT_BASE_MS, WS_RECONNECT_SECONDS, DISCOVERY_REFRESH_MINUTES, STATS_LOG_SECONDS).
+     */
+    public static final class Config {
+        public final int connections;
+        public final List<MrnSubscription> subscriptions;
+        public final boolean standby;
+        /** Primeiro intervalo do backoff. */
+        public final long reconnectBaseMillis;
+        /** Teto do backoff. */
+        public final int reconnectSeconds;
+        /** Intervalo do discovery periódico; 0 desliga. */
+        public final int discoveryRefreshMinutes;
+        /** Intervalo do log de estatísticas; 0 desliga. */
+        public final int statsLogSeconds;
+
+        public Config(int connections, List<MrnSubscription> subscriptions, boolean standby,
+                      long reconnectBaseMillis, int reconnectSeconds, int discoveryRefreshMinutes,
+                      int statsLogSeconds) {
+            this.connections = connections;
+            this.subscriptions = List.copyOf(subscriptions);
+            this.standby = standby;
+            this.reconnectBaseMillis = reconnectBaseMillis;
+            this.reconnectSeconds = reconnectSeconds;
+            this.discoveryRefreshMinutes = discoveryRefreshMinutes;
+            this.statsLogSeconds = statsLogSeconds;
+        }
+
+        public static Config fromEnv() {
+            Map<String, String> env = System.getenv();
+            return new Config(
+                    Integer.parseInt(env.getOrDefault("MRN_CONNECTIONS", "1")),
+                    MrnSubscription.parseList(env.getOrDefault("MRN_SUBSCRIPTIONS", "MRN_STORY:pt:BR")),
+                    Boolean.parseBoolean(env.getOrDefault("MRN_STANDBY", "false")),
+                    Long.parseLong(env.getOrDefault("WS_RECONNECT_BASE_MS", "500")),
+                    Integer.parseInt(env.getOrDefault("WS_RECONNECT_SECONDS", "30")),
+                    Integer.parseInt(env.getOrDefault("DISCOVERY_REFRESH_MINUTES", "10")),
+                    Integer.parseInt(env.getOrDefault("STATS_LOG_SECONDS", "60")));
+        }
+    }
+
+    private final Config config;
+    private final List<String> bootstrapEndpoints;
+    private final RtoTokenClient tokenClient;
+    private final FileQueueSink sink;
+    private final RdpServiceDiscovery discovery;
+    private final MrnPipeline.Config pipelineConfig = MrnPipeline.Config.fromEnv();
+    private final MrnPipeline pipeline;
+    private final FirstArrivalMerge merge;
+    private final EndpointHealth endpoints = new EndpointHealth();
+    private final List<NewsWebSocketClient> connections = new ArrayList<>();
+    private ScheduledExecutorService scheduler;
+    private MetricsHttpServer metrics;
+    // última amostra do log de estatísticas (só a tarefa agendada lê e escreve; execuções não se sobrepõem)
+    private long statsMarkNanos;
+    private long statsMarkDecoded;
+
+    public MrnConnectionManager(List<String> bootstrapEndpoints, Config config, RtoTokenClient tokenClient, FileQueueSink sink) {
+        if (config.subscriptions.isEmpty()) throw new IllegalArgumentException("nenhum item MRN configurado");
+        this.config = config;
+        this.bootstrapEndpoints = bootstrapEndpoints == null ? List.of() : bootstrapEndpoints;
+        this.tokenClient = tokenClient;
+        this.sink = sink;
+        this.discovery = new RdpServiceDiscovery(tokenClient, sink::appendLine);
+        this.pipeline = new MrnPipeline(new MrnFragmentReassembler(MrnFragmentReassembler.Config.fromEnv()),
+                sink, pipelineConfig, sink::appendLine);
+        this.merge = config.standby ? new FirstArrivalMerge(FirstArrivalMerge.Config.fromEnv()) : null;
+    }
+
+    /** Discovery (se não houver endpoints de bootstrap), cria as conexões e conecta todas. */
+    public synchronized void start() {
+        if (scheduler != null) return;
+        MetricsHttpServer.Config metricsConfig = MetricsHttpServer.Config.fromEnv();
+        if (metrics == null && metricsConfig.enabled()) {
+            try {
+                metrics = new MetricsHttpServer(metricsConfig);
+                sink.appendLine("[METRICS] http://" + metricsConfig.bind + ":" + metrics.port() + "/metrics/latency");
+            } catch (IOException e) {
+                throw new UncheckedIOException("falha ao abrir METRICS_HTTP_PORT=" + metricsConfig.port, e);
+            }
+        }
+        endpoints.update(bootstrapEndpoints.isEmpty() ? discovery.discover() : bootstrapEndpoints);
+        sink.appendLine("[ENDPOINTS] " + (endpoints.isEmpty() ? "EMPTY" : endpoints.urls().toString()));
+        AtomicInteger threads = new AtomicInteger();
+        // 2 threads: um discovery lento não atrasa as reconexões
+        scheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "mrn-connect-" + threads.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        List<List<MrnSubscription>> shards = shard(config.subscriptions, config.connections);
+        // ativa e standby do mesmo shard formam um grupo: EndpointHealth não dá o mesmo endpoint às
+        // duas enquanto houver outro; o deslocamento só desempata custos iguais entre os restantes
+        int standbyOffset = Math.max(1, endpoints.urls().size() / 2);
+        for (int i = 0; i < shards.size(); i++) {
+            String label = (shards.size() == 1 && !config.standby) ? "" : "c" + i;
+            NewsWebSocketClient active = open(label, i, shards.get(i));
+            if (config.standby) {
+                NewsWebSocketClient standby = open(label + "-standby", i + standbyOffset, shards.get(i));
+                active.joinRedundantSet(label, merge, () -> true);
+                standby.joinRedundantSet(label, merge, () -> !active.isLoggedIn());
+            }
+        }
+        for (NewsWebSocketClient c : connections) c.connect();
+        if (config.discoveryRefreshMinutes > 0 && bootstrapEndpoints.isEmpty()) {
+            scheduler.scheduleWithFixedDelay(this::refreshDiscovery,
+                    config.discoveryRefreshMinutes, config.discoveryRefreshMinutes, TimeUnit.MINUTES);
+        }
+        if (config.statsLogSeconds > 0) {
+            statsMarkNanos = System.nanoTime();
+            scheduler.scheduleWithFixedDelay(this::logStats,
+                    config.statsLogSeconds, config.statsLogSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /** Discovery periódico: endpoints novos entram na escolha; os que sumiram deixam de ser escolhidos. */
+    private void refreshDiscovery() {
+        List<String> discovered = discovery.discover();
+        if (discovered.isEmpty()) return; // falha no discovery: mantém a lista atual
+        endpoints.update(discovered);
+        sink.appendLine("[ENDPOINTS] " + endpoints);
+    }
+
+    /** Loga o {@link #stats()} com a vazão do decode desde a amostra anterior. */
+    private void logStats() {
+        long now = System.nanoTime();
+        long decoded = pipeline.decodedCount();
+        double secs = (now - statsMarkNanos) / 1e9;
+        double rate = secs <= 0 ? 0 : (decoded - statsMarkDecoded) / secs;
+        statsMarkNanos = now;
+        statsMarkDecoded = decoded;
+        sink.appendLine(String.format("[STATS] decodeRate.interval=%.0f/s %s", rate, stats()));
+    }
+
+    private NewsWebSocketClient open(String label, int endpointOffset, List<MrnSubscription> items) {
+        NewsWebSocketClient client = new NewsWebSocketClient(label, endpoints, endpointOffset, items, pipeline,
+                pipelineConfig.queueCapacity, scheduler, config, discovery, tokenClient, sink);
+        connections.add(client);
+        sink.appendLine("[CONNECTIONS] " + (label.isEmpty() ? "c0" : label) + " itens=" + items);
+        return client;
+    }
+
+    /** Round-robin dos itens em até n conexões (nunca cria conexão sem item). */
+    static List<List<MrnSubscription>> shard(List<MrnSubscription> items, int n) {
+        int count = Math.max(1, Math.min(n, items.size()));
+        List<List<MrnSubscription>> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) shards.add(new ArrayList<>());
+        for (int i = 0; i < items.size(); i++) shards.get(i % count).add(items.get(i));
+        return shards;
+    }
+
+    /** receive de cada conexão seguido do pipeline compartilhado (reassemble → decode → persist). */
+    public synchronized String stats() {
+        StringBuilder sb = new StringBuilder();
+        for (NewsWebSocketClient c : connections) sb.append(c.receiveStats()).append(' ');
+        if (merge != null) sb.append(merge.stats()).append(' ');
+        sb.append(endpoints).append(' ');
+        return sb.append(pipeline.stats()).toString();
+    }
+
+    @Override
+    public synchronized void close() {
+        for (NewsWebSocketClient c : connections) c.close();
+        if (scheduler != null) scheduler.shutdownNow();
+        if (metrics != null) metrics.close();
+        pipeline.close();
+    }
+
+    public static void main(String[] args) {
+        // opcional: CSV por args/env; se vazio, o manager fará discovery antes de conectar
+        String csv = System.getenv().getOrDefault("RDP_WS_ENDPOINTS", "");
+        if (args != null && args.length > 0 && args[0] != null && !args[0].isBlank()) csv = args[0];
+        List<String> bootstrap = NewsWebSocketClient.parseEndpointsFromCsvOrSingle(csv);
+
+        try (FileQueueSink sink = new FileQueueSink();
+             RtoTokenClient tokenClient = new RtoTokenClient(
+                     NewsWebSocketClient.CLIENT_ID, NewsWebSocketClient.USERNAME, NewsWebSocketClient.PASSWORD);
+             MrnConnectionManager manager = new MrnConnectionManager(bootstrap, Config.fromEnv(), tokenClient, sink)) {
+            manager.start();
+            new CompletableFuture<Void>().get();
+        } catch (Exception e) {
+            System.err.println("CRITICAL FAILURE: " + e.getMessage());
+        }
+    }
+}
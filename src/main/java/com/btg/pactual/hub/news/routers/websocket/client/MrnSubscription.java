@@ -0,0 +1,64 @@
+package com.btg.pactual.hub.news.routers.websocket.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Um item de NewsTextAnalytics (MRN_STORY, MRN_TRNA, MRN_TRSI...) com filtros opcionais de
+ * idioma e tópico. O stream ID é atribuído pela conexão que recebe o item.
+ *
+ * Formato textual (MRN_SUBSCRIPTIONS): {@code NOME[:idioma[:tópico]]} separados por vírgula,
+ * ex.: {@code MRN_STORY:pt:BR,MRN_STORY:en,MRN_TRNA}. Idioma ou tópico vazio = sem filtro.
+ */
+public final class MrnSubscription {
+
+    private static final String AUDIENCE = "NP:BRS";
+
+    public final String name;
+    public final String language;
+    public final String topic;
+
+    public MrnSubscription(String name, String language, String topic) {
+        this.name = name;
+        this.language = blankToNull(language);
+        this.topic = blankToNull(topic);
+    }
+
+    public static List<MrnSubscription> parseList(String csv) {
+        List<MrnSubscription> out = new ArrayList<>();
+        if (csv == null) return out;
+        for (String item : csv.split(",")) {
+            String s = item.trim();
+            if (s.isEmpty()) continue;
+            String[] p = s.split(":", -1);
+            out.add(new MrnSubscription(p[0].trim(), p.length > 1 ? p[1].trim() : null, p.length > 2 ? p[2].trim() : null));
+        }
+        return out;
+    }
+
+    /** Request de item com o stream ID dado. */
+    public String toJson(int streamId) {
+        StringBuilder sb = new StringBuilder(256)
+                .append("{")
+                .append("\"Domain\":\"NewsTextAnalytics\",")
+                .append("\"ID\":").append(streamId).append(',')
+                .append("\"Key\":{")
+                .append("\"Name\":\"").append(name).append("\",")
+                .append("\"Product codes\":[\"").append(AUDIENCE).append("\"],")
+                .append("\"audiences\":[\"").append(AUDIENCE).append("\"]")
+                .append("},");
+        if (topic != null) sb.append("\"Topic\":[\"").append(topic).append("\"],");
+        sb.append("\"audiences\":[\"").append(AUDIENCE).append("\"]");
+        if (language != null) sb.append(",\"Language\":\"").append(language).append('"');
+        return sb.append('}').toString();
+    }
+
+    private static String blankToNull(String s) {
+        return (s == null || s.isBlank()) ? null : s;
+    }
+
+    @Override
+    public String toString() {
+        return name + (language == null ? "" : ":" + language) + (topic == null ? "" : ":" + topic);
+    }
+}
@@ -1,110 +1,214 @@
 package com.btg.pactual.hub.news.routers.websocket.client;
 
+import com.btg.pactual.hub.news.CharBufferPool;
 import com.btg.pactual.hub.news.FileQueueSink;
-import com.btg.pactual.hub.news.MrnFragmentReassembler;
+import com.btg.pactual.hub.news.FirstArrivalMerge;
+import com.btg.pactual.hub.news.FrameAccumulator;
+import com.btg.pactual.hub.news.MrnEnvelope;
+import com.btg.pactual.hub.news.MrnEnvelopeParser;
+import com.btg.pactual.hub.news.MrnPipeline;
+import com.btg.pactual.hub.news.PayloadLog;
+import com.btg.pactual.hub.news.PipelineStage;
 import com.btg.pactual.hub.news.RtoTokenClient;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.btg.pactual.hub.news.StreamSequencer;
+import com.btg.pactual.hub.news.routers.websocket.replay.MrnCaptureFile;
 
 import java.io.*;
 import java.net.URI;
 import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.net.http.WebSocket;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Duration;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.zip.GZIPInputStream;
-import java.util.Base64;
-
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Uma conexão WebSocket MRN: Login (ID 1) e os itens atribuídos a ela (IDs 2, 3, ... neste
+ * socket). Os fragments recebidos seguem para o {@link MrnPipeline} compartilhado; quem abre,
+ * distribui os itens e fecha as conexões é o {@link MrnConnectionManager}.
+ */
 public class NewsWebSocketClient implements WebSocket.Listener, AutoCloseable {
 
     private volatile WebSocket socket;
     private volatile boolean closed = false;
     private volatile boolean loginOpen = false;
-
-    // Descoberta + endpoints ativos (SEM default)
-    private volatile List<String> wsEndpoints = List.of();
-    private volatile int endpointIdx = 0;
-    private final Object endpointsLock = new Object();
-
-    // Reagrupador de fragments
-    private final MrnFragmentReassembler reassembler = new MrnFragmentReassembler(60);
-
-    // Contador e chave temporária para mensagens sem GUID
-    private final AtomicInteger unknownCounter = new AtomicInteger(0);
-    private volatile String lastUnknownKey = null;
+    // Token obtido antes de conectar (fora do listener); o onOpen não faz I/O de auth
+    private volatile String connectToken;
+
+    // Envios (Login, refresh do Login, Subscribe, Pong) em fila: o WebSocket do JDK falha com
+    // "Send pending" se um sendText começa antes do anterior terminar
+    private final Object sendLock = new Object();
+    private CompletableFuture<?> sendTail = CompletableFuture.completedFuture(null);
+
+    // Reconexão: máquina de estados dirigida pelo scheduler do manager (nunca dorme no listener)
+    private enum State { IDLE, CONNECTING, OPEN, BACKOFF, CLOSED }
+    private final AtomicReference<State> state = new AtomicReference<>(State.IDLE);
+    private final AtomicInteger attempt = new AtomicInteger();
+    private final ScheduledExecutorService scheduler;
+    private final long backoffBaseMillis;
+    private final long backoffMaxMillis;
+
+    // Endpoints compartilhados com as outras conexões (descoberta + saúde); este socket usa currentEndpoint
+    private final EndpointHealth endpoints;
+    private final int endpointOffset;
+    private volatile String currentEndpoint;
+
+    // Decoder streaming do envelope (usado só pelo worker único do estágio "receive")
+    private final MrnEnvelopeParser envelopeParser = new MrnEnvelopeParser();
+    // Ping respondido no próprio listener (parser só dele): o Pong não espera o backlog do receive
+    private static final int PING_MAX_CHARS = 128;
+    private final MrnEnvelopeParser pingParser = new MrnEnvelopeParser();
+    private int framePings;
+    private boolean frameOnlyPings;
+    // Instante (nanoTime) do frame em processamento, repassado ao pipeline para as latências
+    private long frameReceivedNanos;
+    // Domain (ou Type) e Type da primeira mensagem do frame, chave da amostragem do payload log
+    private String frameKey;
+    private String frameType;
+
+    // Log de payloads com nível/amostragem (PAYLOAD_LOG_*); formata só o que for emitido
+    private static final PayloadLog.Config PAYLOAD_LOG = PayloadLog.Config.fromEnv();
+    private final PayloadLog payloadLog;
+
+    // Montagem de frames parciais (onText com last=false) em buffers reutilizáveis
+    private static final int MAX_MESSAGE_CHARS =
+            Integer.parseInt(System.getenv().getOrDefault("WS_MAX_MESSAGE_CHARS", String.valueOf(16 * 1024 * 1024)));
+    private final CharBufferPool framePool = new CharBufferPool(8, 1024 * 1024);
+    private final FrameAccumulator frames = new FrameAccumulator(framePool, MAX_MESSAGE_CHARS);
+    // frames só é tocado pelo listener; quem derruba o socket de fora só pede o reset
+    private volatile boolean framesResetPending = false;
+
+    // receive (parse, 1 worker p/ manter a ordem) desta conexão → pipeline compartilhado
+    private final MrnPipeline pipeline;
+    private final PipelineStage<CharBufferPool.Buffer> receiveStage;
+
+    // Demanda pedida ao WebSocket e ainda não entregue; nunca excede a folga da fila "receive"
+    private static final int DEMAND_BATCH = 16;
+    private final Object demandLock = new Object();
+    private int outstandingDemand = 0;
+
+    // Chaves para fragments sem GUID: por conexão + stream + sequência (usado só pelo worker de receive)
+    private static final AtomicInteger CONNECTION_IDS = new AtomicInteger(0);
+    private final String connectionId = "c" + CONNECTION_IDS.incrementAndGet();
+    private final StreamSequencer sequencer = new StreamSequencer(connectionId);
+
+    // Par ativa/standby: primeira cópia de cada fragmento vence; sem GUID só quando acceptUnkeyed
+    private volatile FirstArrivalMerge merge;
+    // Grupo redundante (ativa + standby do mesmo shard): as duas não dividem endpoint se houver outro
+    private volatile String redundancyGroup;
+    private volatile BooleanSupplier acceptUnkeyed = () -> true;
+
+    // Captura dos frames recebidos para replay no stand-in (MRN_CAPTURE_DIR); null = desligada
+    private static final String CAPTURE_DIR = System.getenv("MRN_CAPTURE_DIR");
+    private final MrnCaptureFile.Writer capture;
 
     // --- CREDENCIAIS ---
-    private static final String CLIENT_ID = System.getenv().getOrDefault("RTO_CLIENTID", "6ad45100841f4a96951f6583e4ba022d57a6565f");
-    private static final String USERNAME  = System.getenv().getOrDefault("RTO_USERNAME", "GE-A-00209895-3-19960");
-    private static final String PASSWORD  = System.getenv().getOrDefault("RTO_PASSWORD", "senh@-content-hub2025-research-2025@#");
+    static final String CLIENT_ID = System.getenv().getOrDefault("RTO_CLIENTID", "6ad45100841f4a96951f6583e4ba022d57a6565f");
+    static final String USERNAME  = System.getenv().getOrDefault("RTO_USERNAME", "GE-A-00209895-3-19960");
+    static final String PASSWORD  = System.getenv().getOrDefault("RTO_PASSWORD", "senh@-content-hub2025-research-2025@#");
     private static final String APP_ID    = System.getenv().getOrDefault("APP_ID", "256");
-    private static final String SERVICE   = "ELEKTRON_DD";
-    private static final String NEWS_RIC  = "MRN_STORY";
 
-    // REST discovery endpoints (iguais ao seu log)
-    private static final String AUTH_URL = "https://api.refinitiv.com/auth/oauth2/v1/token";
-    private static final String DISCOVERY_URL = "https://api.refinitiv.com/streaming/pricing/v1/";
+    // Itens desta conexão: stream ID (2, 3, ...) → item
+    private static final int FIRST_ITEM_STREAM_ID = 2;
+    private final Map<Integer, MrnSubscription> subscriptions = new LinkedHashMap<>();
 
     private final HttpClient http = HttpClient.newHttpClient();
-    private final ObjectMapper mapper = new ObjectMapper();
-    private final int reconnectSeconds;
+    private final String label;
     private final RtoTokenClient tokenClient;
+    /** Mesma instância no add e no remove (cada this::onTokenRotated é um objeto novo). */
+    private final Consumer<String> tokenListener = this::onTokenRotated;
+    private final RdpServiceDiscovery discovery;
     private final FileQueueSink sink;
 
-    public NewsWebSocketClient(List<String> bootstrapEndpoints,
-                               int reconnectSeconds,
+    /**
+     * @param label          prefixo dos logs desta conexão (vazio com uma conexão só)
+     * @param endpointOffset desempate na escolha do endpoint, para espalhar as conexões
+     * @param items          itens atribuídos a este socket, na ordem dos stream IDs
+     * @param scheduler      executa conexões e backoff (compartilhado pelo manager)
+     */
+    public NewsWebSocketClient(String label,
+                               EndpointHealth endpoints,
+                               int endpointOffset,
+                               List<MrnSubscription> items,
+                               MrnPipeline pipeline,
+                               int receiveCapacity,
+                               ScheduledExecutorService scheduler,
+                               MrnConnectionManager.Config config,
+                               RdpServiceDiscovery discovery,
                                RtoTokenClient tokenClient,
                                FileQueueSink sink) {
-        this.reconnectSeconds = reconnectSeconds;
+        this.label = label == null || label.isEmpty() ? "" : "[" + label + "] ";
+        this.endpoints = endpoints;
+        this.endpointOffset = endpointOffset;
+        this.scheduler = scheduler;
+        this.backoffBaseMillis = config.reconnectBaseMillis;
+        this.backoffMaxMillis = config.reconnectSeconds * 1000L;
+        this.discovery = discovery;
         this.tokenClient = tokenClient;
         this.sink = sink;
-        // pode vir vazio; se vier, faremos discovery antes de conectar
-        updateEndpoints(bootstrapEndpoints == null ? List.of() : bootstrapEndpoints, false);
+        this.pipeline = pipeline;
+        int id = FIRST_ITEM_STREAM_ID;
+        for (MrnSubscription item : items) subscriptions.put(id++, item);
+        this.receiveStage = new PipelineStage<>("receive", receiveCapacity, 1,
+                () -> this::handleFrame, this::logOut);
+        this.capture = openCapture(label);
+        this.payloadLog = new PayloadLog(PAYLOAD_LOG, this::logOut, sink::appendPayload);
+        // token renovado em segundo plano; reconexões usam o snapshot sem round trip de auth
+        tokenClient.addTokenListener(tokenListener);
+        tokenClient.start();
     }
 
-    public NewsWebSocketClient(String endpointsCsvOrSingle,
-                               int reconnectSeconds,
-                               RtoTokenClient tokenClient,
-                               FileQueueSink sink) {
-        this(parseEndpointsFromCsvOrSingle(endpointsCsvOrSingle), reconnectSeconds, tokenClient, sink);
+    /**
+     * Coloca a conexão num par redundante: fragments com GUID passam pelo merge compartilhado;
+     * fragments sem GUID (chave por conexão, impossível casar entre sockets) só quando
+     * acceptUnkeyed for true; group separa os endpoints do par. Chamar antes de connect().
+     */
+    void joinRedundantSet(String group, FirstArrivalMerge merge, BooleanSupplier acceptUnkeyed) {
+        this.redundancyGroup = group;
+        this.merge = merge;
+        this.acceptUnkeyed = acceptUnkeyed;
     }
 
-    // ====== LOG helpers ======
-    private void logOut(String line) {
-        try { sink.appendLine(line); } catch (Exception ignore) {}
-        System.out.println(line);
+    private MrnCaptureFile.Writer openCapture(String label) {
+        if (CAPTURE_DIR == null || CAPTURE_DIR.isBlank()) return null;
+        String name = (label == null || label.isEmpty() ? connectionId : label) + "-" + System.currentTimeMillis() + ".mrncap";
+        try {
+            MrnCaptureFile.Writer w = new MrnCaptureFile.Writer(Path.of(CAPTURE_DIR, name));
+            logOut("[CAPTURE] gravando frames em " + CAPTURE_DIR + File.separator + name);
+            return w;
+        } catch (IOException e) {
+            logOut("[CAPTURE-ERROR] " + e.getMessage());
+            return null;
+        }
     }
 
-    private void logSentPayload(String label, String payload) {
-        try (FileWriter fw = new FileWriter("ws_payloads.log", true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter out = new PrintWriter(bw)) {
-            String ts = ZonedDateTime.now().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
-            out.println("==== " + label + " @ " + ts + " ====");
-            out.println(payload);
-            out.println("==== END ====\n");
-        } catch (IOException e) { e.printStackTrace(); }
-        // espelha no console no formato do seu exemplo
-        logOut("SENT:\n" + pretty(payload));
+    /** Socket aberto e Login aceito. */
+    public boolean isLoggedIn() {
+        WebSocket ws = socket;
+        return loginOpen && ws != null && !ws.isInputClosed();
     }
 
-    private String pretty(String json) {
-        try {
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(mapper.readTree(json));
-        } catch (Exception e) {
-            return json;
-        }
+    // ====== LOG helpers ======
+    // websocket_log.txt + stdout, via canal assíncrono do sink
+    private void logOut(String line) {
+        sink.appendLine(label.isEmpty() ? line : label + line);
     }
 
-    private static List<String> parseEndpointsFromCsvOrSingle(String csvOrSingle) {
+    /** key: chave de amostragem (Login, Subscribe, Pong); label: título do bloco no ws_payloads.log. */
+    private void logSentPayload(String key, String label, String payload) {
+        payloadLog.sent(key, label, payload);
+    }
+
+    static List<String> parseEndpointsFromCsvOrSingle(String csvOrSingle) {
         if (csvOrSingle == null || csvOrSingle.isBlank()) return List.of();
         String[] parts = csvOrSingle.split(",");
         List<String> list = new ArrayList<>();
@@ -115,234 +219,291 @@ public class NewsWebSocketClient implements WebSocket.Listener, AutoCloseable {
         return list;
     }
 
-    private void updateEndpoints(List<String> newEndpoints, boolean reconnectNow) {
-        List<String> norm = new ArrayList<>();
-        if (newEndpoints != null) {
-            for (String e : newEndpoints) {
-                if (e != null && !e.trim().isEmpty()) norm.add(e.trim());
-            }
-        }
-        synchronized (endpointsLock) {
-            this.wsEndpoints = Collections.unmodifiableList(norm);
-            if (!wsEndpoints.isEmpty() && endpointIdx >= wsEndpoints.size()) endpointIdx = 0;
-        }
-        logOut("[ENDPOINTS] " + (wsEndpoints.isEmpty() ? "EMPTY" : wsEndpoints.toString()));
-        if (reconnectNow) {
-            safeAbort();
-            scheduleReconnect();
+    // ====== SERVICE DISCOVERY ======
+    private void ensureEndpointsViaDiscovery() {
+        // se já tem endpoints (bootstrap ou discovery do manager), usa; senão, descobre
+        if (!endpoints.isEmpty()) return;
+        List<String> discovered = discovery.discover();
+        if (!discovered.isEmpty()) {
+            endpoints.update(discovered);
+            logOut("[ENDPOINTS] " + discovered);
         }
     }
 
-    // ====== SERVICE DISCOVERY ======
-    private void ensureEndpointsViaDiscovery() {
-        // se já tem endpoints de bootstrap, usa; senão, descobre
-        List<String> snapshot;
-        synchronized (endpointsLock) { snapshot = wsEndpoints; }
-        if (!snapshot.isEmpty()) return;
+    // ====== CONEXÃO ======
+    /** Conecta (no scheduler); não faz nada se já estiver conectando, aberta ou fechada. */
+    public void connect() {
+        if (state.compareAndSet(State.IDLE, State.CONNECTING) || state.compareAndSet(State.BACKOFF, State.CONNECTING)) {
+            scheduler.execute(this::attemptConnect);
+        }
+    }
 
+    private void attemptConnect() {
+        if (closed) return;
         try {
-            logOut("Sending authentication request with password to " + AUTH_URL + " ...");
-            String token = tokenClient.getAccessToken(); // já faz o POST/auth internamente
-            // apenas para espelhar o log: mostre o token JSON “RECEIVED”
-            // se seu RtoTokenClient expõe o payload, você pode logar aqui; caso não, montamos o mínimo:
-            Map<String, Object> authEcho = new LinkedHashMap<>();
-            authEcho.put("access_token", token);
-            authEcho.put("token_type", "Bearer");
-            authEcho.put("scope", "trapi.streaming.pricing.read");
-            logOut("Refinitiv Data Platform Authentication succeeded. RECEIVED:\n" +
-                    pretty(mapper.writeValueAsString(authEcho)));
-
-            logOut("Sending Refinitiv Data Platform service discovery request to " + DISCOVERY_URL + " ...");
-
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(DISCOVERY_URL))
-                    .timeout(Duration.ofSeconds(20))
-                    .header("Authorization", "Bearer " + token)
-                    .header("Accept", "application/json")
-                    .GET().build();
-
-            HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
-            if (resp.statusCode() / 100 != 2) {
-                logOut("[DISCOVERY] HTTP " + resp.statusCode() + " body=" + resp.body());
-                return;
-            }
-            String body = resp.body();
-            logOut("Refinitiv Data Platform Service discovery succeeded. RECEIVED:\n" + pretty(body));
-
-            // parse services[]
-            JsonNode root = mapper.readTree(body);
-            JsonNode services = root.path("services");
-            List<String> discovered = new ArrayList<>();
-            if (services.isArray()) {
-                for (JsonNode s : services) {
-                    String transport = s.path("transport").asText("");
-                    if (!"websocket".equalsIgnoreCase(transport)) continue;
-
-                    boolean okFormat = false;
-                    JsonNode dformat = s.path("dataFormat");
-                    if (dformat.isArray()) {
-                        for (JsonNode df : dformat) {
-                            if ("tr_json2".equalsIgnoreCase(df.asText(""))) { okFormat = true; break; }
+            connectToken = tokenClient.getAccessToken(); // sem I/O se o refresher mantém o token válido
+        } catch (Exception e) {
+            logOut("[AUTH/ERROR] token para o Login: " + e.getMessage());
+            scheduleReconnect();
+            return;
+        }
+        ensureEndpointsViaDiscovery();
+        String endpoint = endpoints.acquire(endpointOffset, redundancyGroup);
+        if (endpoint == null) {
+            logOut("ERRO: informe endpoints iniciais (ou deixe o discovery popular).");
+            scheduleReconnect();
+            return;
+        }
+        currentEndpoint = endpoint;
+        logOut("Connecting to WebSocket " + endpoint + " ...");
+        long started = System.nanoTime();
+        try {
+            http.newWebSocketBuilder()
+                    .connectTimeout(Duration.ofSeconds(20))
+                    .subprotocols("tr_json2")
+                    .buildAsync(URI.create(endpoint), this)
+                    .whenComplete((ws, err) -> {
+                        if (err == null) {
+                            endpoints.recordSuccess(endpoint, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                            logOut("WebSocket successfully connected!");
+                            if (closed) ws.abort();
+                            return;
                         }
-                    }
-                    if (!okFormat) continue;
-
-                    String endpoint = s.path("endpoint").asText("");
-                    int port = s.path("port").asInt(443);
-                    if (!endpoint.isBlank()) {
-                        String url = "wss://" + endpoint + ":" + port + "/WebSocket";
-                        discovered.add(url);
-                    }
-                }
-            }
-            if (!discovered.isEmpty()) {
-                updateEndpoints(discovered, false);
-            }
+                        Throwable cause = (err instanceof CompletionException && err.getCause() != null) ? err.getCause() : err;
+                        logOut("[HANDSHAKE/ERROR] endpoint=" + endpoint + " cause=" + cause);
+                        endpoints.recordFailure(endpoint);
+                        scheduleReconnect();
+                    });
         } catch (Exception e) {
-            logOut("[DISCOVERY-ERROR] " + e.getMessage());
+            logOut("[ERROR] endpoint=" + endpoint + " ex=" + e.getMessage());
+            endpoints.recordFailure(endpoint);
+            scheduleReconnect();
         }
     }
 
-    // ====== CONEXÃO ======
-    public void connect() {
-        if (closed) return;
+    /**
+     * Derruba o socket atual e agenda nova tentativa com backoff exponencial e jitter
+     * (metade fixa + metade aleatória de min(max, base * 2^tentativa)). Vários avisos da mesma
+     * queda (onClose, onError, Status) agendam uma tentativa só.
+     */
+    private void scheduleReconnect() {
+        State s = state.get();
+        if (closed || (s != State.OPEN && s != State.CONNECTING) || !state.compareAndSet(s, State.BACKOFF)) return;
+        safeAbort();
+        int n = attempt.getAndIncrement();
+        long exp = Math.min(backoffMaxMillis, backoffBaseMillis << Math.min(n, 20));
+        long delay = exp / 2 + ThreadLocalRandom.current().nextLong(exp / 2 + 1);
+        logOut("[RECONNECT] em " + delay + "ms (tentativa " + (n + 1) + ")");
+        scheduler.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+    }
 
-        // se necessário, faz discovery primeiro
-        ensureEndpointsViaDiscovery();
+    private void safeAbort() {
+        loginOpen = false;
+        WebSocket ws = this.socket;
+        this.socket = null; // callbacks atrasados do socket antigo deixam de valer
+        if (ws != null) { try { ws.abort(); } catch (Exception ignore) {} }
+        endpoints.release(currentEndpoint, redundancyGroup);
+        currentEndpoint = null;
+        framesResetPending = true; // aplicado pelo listener no próximo onOpen/onText
+    }
 
-        List<String> snapshot;
-        synchronized (endpointsLock) { snapshot = this.wsEndpoints; }
-        if (snapshot.isEmpty()) {
-            logOut("ERRO: informe endpoints iniciais (ou deixe o discovery popular).");
+    /** Descarta o frame parcial do socket anterior; só na thread do listener. */
+    private void applyPendingFrameReset() {
+        if (!framesResetPending) return;
+        framesResetPending = false;
+        frames.reset();
+    }
+
+    // ====== LISTENER ======
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        this.socket = webSocket;
+        applyPendingFrameReset();
+        state.compareAndSet(State.CONNECTING, State.OPEN);
+        this.loginOpen = false;
+        synchronized (demandLock) { outstandingDemand = 0; }
+        synchronized (sendLock) { sendTail = CompletableFuture.completedFuture(null); } // fila nova por socket
+        replenishDemand(webSocket);
+        String token = tokenClient.currentToken(); // renovado desde o connect? senão o obtido antes
+        if (token == null) token = connectToken;
+        if (token == null) {
+            logOut("[ERROR] Login sem token");
+            scheduleReconnect();
             return;
         }
+        send(webSocket, "Login", "LOGIN", loginJson(token));
+    }
 
-        int tried = 0;
-        while (!closed && tried < snapshot.size()) {
-            String endpoint;
-            int idxNow;
-            synchronized (endpointsLock) {
-                endpoint = wsEndpoints.get(endpointIdx);
-                idxNow = endpointIdx;
-            }
-            try {
-                logOut("Connecting to WebSocket " + endpoint + " ...");
+    private static String loginJson(String token) {
+        return "{"
+                + "\"Domain\":\"Login\","
+                + "\"ID\":1,"
+                + "\"Key\":{"
+                + "\"Product codes\":[\"NP:BRS\"],"
+                + "\"Elements\":{"
+                + "\"ApplicationId\":\"" + APP_ID + "\","
+                + "\"AuthenticationToken\":\"" + token + "\","
+                + "\"Position\":\"127.0.0.1/net\""
+                + "},"
+                + "\"Name\":\"" + USERNAME + "\","
+                + "\"NameType\":\"AuthnToken\""
+                + "},"
+                + "\"Refresh\":false"
+                + "}";
+    }
 
-                WebSocket.Builder b = http.newWebSocketBuilder()
-                        .connectTimeout(Duration.ofSeconds(20))
-                        .subprotocols("tr_json2");
+    /**
+     * Token renovado: reenvia o Login (ID 1, Refresh:false) no socket aberto, para o servidor
+     * trocar o token da sessão sem derrubar os streams. Sem sessão aberta, o próximo onOpen já
+     * usa o token novo.
+     */
+    private void onTokenRotated(String token) {
+        WebSocket ws = this.socket;
+        if (closed || ws == null || !loginOpen || ws.isOutputClosed()) return;
+        send(ws, "Login", "LOGIN-REFRESH", loginJson(token));
+    }
 
-                this.socket = b.buildAsync(URI.create(endpoint), this).join();
-                logOut("WebSocket successfully connected!");
+    /**
+     * Envia o texto depois que o envio anterior deste socket terminar (com sucesso ou não). O
+     * payload é logado quando sai; se falhar e o socket ainda for o atual, a sessão é derrubada
+     * e reconectada (um Login ou Subscribe perdido deixaria a conexão aberta e muda).
+     */
+    private CompletableFuture<WebSocket> send(WebSocket ws, String key, String label, String payload) {
+        CompletableFuture<WebSocket> sent;
+        synchronized (sendLock) {
+            sent = sendTail.handle((r, e) -> ws).thenCompose(w -> w.sendText(payload, true));
+            sendTail = sent;
+        }
+        sent.whenComplete((w, err) -> {
+            if (err == null) {
+                logSentPayload(key, label, payload);
                 return;
-            } catch (java.util.concurrent.CompletionException e) {
-                logOut("[HANDSHAKE/ERROR] endpoint=" + endpoint + " cause=" + (e.getCause()==null?e:e.getCause()));
-                rotateEndpoint();
-                tried++;
-            } catch (Exception e) {
-                logOut("[ERROR] endpoint=" + endpoint + " ex=" + e.getMessage());
-                rotateEndpoint();
-                tried++;
             }
-        }
-
-        scheduleReconnect();
+            Throwable cause = (err instanceof CompletionException && err.getCause() != null) ? err.getCause() : err;
+            logOut("[SEND-ERROR] " + label + ": " + cause);
+            if (ws == socket) scheduleReconnect();
+        });
+        return sent;
     }
 
-    private void rotateEndpoint() {
-        synchronized (endpointsLock) {
-            if (!wsEndpoints.isEmpty()) endpointIdx = (endpointIdx + 1) % wsEndpoints.size();
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        if (webSocket != socket) return null; // callback atrasado de um socket já derrubado
+        applyPendingFrameReset();
+        synchronized (demandLock) { if (outstandingDemand > 0) outstandingDemand--; }
+        long overflowBefore = frames.overflowCount();
+        CharBufferPool.Buffer frame = frames.append(data, last);
+        if (frames.overflowCount() != overflowBefore) {
+            logOut("[FRAME-OVERFLOW] mensagem acima de " + MAX_MESSAGE_CHARS + " chars descartada");
         }
+        if (frame != null && answerPing(webSocket, frame)) frame = null;
+        if (frame != null && !receiveStage.offer(frame)) {
+            // não deveria ocorrer: só pedimos o que cabe na fila
+            try { receiveStage.submit(frame); }
+            catch (InterruptedException ie) { Thread.currentThread().interrupt(); frame.release(); }
+        }
+        replenishDemand(webSocket);
+        return null;
     }
 
-    private void scheduleReconnect() {
-        if (closed) return;
-        try { Thread.sleep(reconnectSeconds * 1000L); } catch (InterruptedException ignored) { Thread.currentThread().interrupt(); }
-        connect();
+    /**
+     * Frame curto só com Ping: responde o Pong aqui, na thread do listener, e devolve true (o
+     * frame é liberado e não entra na fila). Com backlog no receive o Pong enfileirado sairia
+     * tarde e o servidor derrubaria a conexão.
+     */
+    private boolean answerPing(WebSocket ws, CharBufferPool.Buffer frame) {
+        if (frame.length() > PING_MAX_CHARS) return false;
+        framePings = 0;
+        frameOnlyPings = true;
+        try {
+            pingParser.parse(frame.array(), 0, frame.length(), m -> {
+                if ("Ping".equals(m.type())) framePings++;
+                else frameOnlyPings = false;
+            });
+        } catch (IOException e) {
+            return false; // o worker de receive loga o erro de parse
+        }
+        if (framePings == 0 || !frameOnlyPings) return false;
+        payloadLog.received("Ping", "Ping", frame.array(), 0, frame.length());
+        frame.release();
+        sendPong(ws);
+        return true;
     }
 
-    private void safeAbort() {
-        if (this.socket != null) { try { this.socket.abort(); } catch (Exception ignore) {} }
+    private void sendPong(WebSocket ws) {
+        send(ws, "Pong", "Pong", "{\"Type\":\"Pong\"}");
     }
 
-    // ====== LISTENER ======
-    @Override
-    public void onOpen(WebSocket webSocket) {
-        webSocket.request(1);
-        try {
-            String token = tokenClient.getAccessToken();
-            String loginJson = "{"
-                    + "\"Domain\":\"Login\","
-                    + "\"ID\":1,"
-                    + "\"Key\":{"
-                    + "\"Product codes\":[\"NP:BRS\"],"
-                    + "\"Elements\":{"
-                    + "\"ApplicationId\":\"" + APP_ID + "\","
-                    + "\"AuthenticationToken\":\"" + token + "\","
-                    + "\"Position\":\"127.0.0.1/net\""
-                    + "},"
-                    + "\"Name\":\"" + USERNAME + "\","
-                    + "\"NameType\":\"AuthnToken\""
-                    + "},"
-                    + "\"Refresh\":false"
-                    + "}";
-            webSocket.sendText(loginJson, true);
-            logSentPayload("LOGIN", loginJson);
-        } catch (Exception ex) {
-            logOut("[ERROR] Auth/Login falhou: " + ex.getMessage());
-            safeAbort();
-            scheduleReconnect();
+    /**
+     * Pede ao WebSocket tantas mensagens quanto cabem na fila "receive" (descontando o que já
+     * foi pedido). Chamado pelo listener e pelo worker de receive conforme a fila esvazia;
+     * com a fila cheia nada é pedido e o HttpClient para de ler do socket.
+     */
+    private void replenishDemand(WebSocket ws) {
+        if (ws == null) return;
+        int n;
+        synchronized (demandLock) {
+            int free = receiveStage.remainingCapacity() - outstandingDemand;
+            if (free <= 0 || (outstandingDemand > 0 && free < DEMAND_BATCH)) return;
+            n = free;
+            outstandingDemand += n;
         }
+        ws.request(n);
     }
 
-    @Override
-    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
-        String msg = data.toString();
-        logOut("RECEIVED: " + (msg.isBlank() ? "" : "\n" + pretty(msg)));
+    private void handleFrame(CharBufferPool.Buffer frame) {
         try {
-            processIncomingMessage(msg);
+            frameReceivedNanos = frame.receivedNanos();
+            frameKey = null;
+            frameType = null;
+            if (capture != null) capture.append(frameReceivedNanos, frame.array(), frame.length());
+            processIncomingMessage(frame);
         } catch (Exception e) {
             logOut("[PROCESS-ERROR] " + e.getMessage());
+        } finally {
+            payloadLog.received(frameKey, frameType, frame.array(), 0, frame.length());
+            frame.release();
+            replenishDemand(socket);
         }
-        webSocket.request(1);
-        return null;
     }
 
-    private void processIncomingMessage(String message) throws IOException {
-        JsonNode root = mapper.readTree(message);
-        if (root.isArray()) {
-            for (JsonNode m : root) processSingleMessage(m);
-        } else {
-            processSingleMessage(root);
-        }
+    /** Profundidade e contadores do estágio receive desta conexão. */
+    public String receiveStats() {
+        return label + receiveStage + " " + payloadLog.stats();
+    }
+
+    private void processIncomingMessage(CharBufferPool.Buffer frame) throws IOException {
+        envelopeParser.parse(frame.array(), 0, frame.length(), this::processSingleMessage);
     }
 
-    private void processSingleMessage(JsonNode msg) throws IOException {
-        String domain = msg.path("Domain").asText();
-        String type   = msg.path("Type").asText();
+    private void processSingleMessage(MrnEnvelope msg) throws IOException {
+        String domain = msg.domain();
+        String type   = msg.type();
+        if (frameKey == null) {
+            frameKey = domain == null || domain.isEmpty() ? type : domain;
+            frameType = type;
+        }
 
-        if ("Ping".equals(type)) {
-            String pong = "{\"Type\":\"Pong\"}";
-            socket.sendText(pong, true);
-            logSentPayload("Pong", pong);
+        if ("Ping".equals(type)) { // Ping junto com outras mensagens no mesmo frame
+            WebSocket ws = socket;
+            if (ws != null) sendPong(ws);
             return;
         }
 
         if ("Login".equalsIgnoreCase(domain)) {
             if ("Refresh".equals(type)) {
-                JsonNode st = msg.path("State");
-                boolean ok = "Ok".equalsIgnoreCase(st.path("Data").asText())
-                        && "Open".equalsIgnoreCase(st.path("Stream").asText());
+                boolean ok = "Ok".equalsIgnoreCase(msg.stateData())
+                        && "Open".equalsIgnoreCase(msg.stateStream());
                 if (ok) {
                     loginOpen = true;
+                    attempt.set(0);
                     sendSubscribe();
                 } else {
-                    logOut("[LOGIN] Refresh não-OK: " + st);
+                    logOut("[LOGIN] Refresh não-OK: " + msg.stateSummary());
                 }
             } else if ("Status".equals(type)) {
-                String code = msg.path("State").path("Code").asText("");
+                String code = msg.stateCode();
                 if (code.contains("UserAccessToAppDenied")) {
-                    safeAbort();
                     scheduleReconnect();
                 }
             }
@@ -352,146 +513,72 @@ public class NewsWebSocketClient implements WebSocket.Listener, AutoCloseable {
         if ("NewsTextAnalytics".equalsIgnoreCase(domain)) {
             if (!loginOpen) { logOut("[WARN] Item antes do login abrir"); return; }
             if ("Refresh".equals(type) || "Update".equals(type)) processMrnFragment(msg);
-            else if ("Status".equals(type)) logOut("[STATUS] " + msg);
+            else if ("Status".equals(type)) logOut("[STATUS] item=" + subscriptions.get(msg.streamId()) + " " + msg);
         }
     }
 
     private void sendSubscribe() {
-        String sub = "{"
-                + "\"Domain\":\"NewsTextAnalytics\","
-                + "\"ID\":2,"
-                + "\"Key\":{"
-                + "\"Name\":\"" + NEWS_RIC + "\","
-                + "\"audiences\":[\"NP:BRS\"],"
-                + "\"Product codes\":[\"NP:BRS\"],"
-                //       + "\"Service\":\"" + SERVICE + "\","
-                + "\"audiences\":[\"NP:BRS\"]"
-                + "},"
-                + "\"Topic\":[\"BR\"],"
-                + "\"audiences\":[\"NP:BRS\"],"
-                + "\"Language\":\"pt\""
-                + "}";
-        socket.sendText(sub, true);
-        logSentPayload("SUBSCRIBE", sub);
+        WebSocket ws = socket;
+        if (ws == null) return;
+        for (Map.Entry<Integer, MrnSubscription> e : subscriptions.entrySet()) {
+            send(ws, "Subscribe", "SUBSCRIBE " + e.getValue(), e.getValue().toJson(e.getKey()));
+        }
     }
 
     // ====== MRN ======
-    private void processMrnFragment(JsonNode msg) {
-        JsonNode fields = msg.path("Fields");
-        if (fields.isMissingNode()) return;
-
-        JsonNode fragment = fields.path("FRAGMENT");
-        JsonNode fragNum = fields.path("FRAG_NUM");
-        JsonNode acumNode = fields.path("ACUM");
-        JsonNode guidNode = fields.path("GUID");
-
-        if (fragment.isMissingNode()) {
-            String guid = guidNode.isMissingNode() ? null : guidNode.asText(null);
-            Optional<String> assembled = reassembler.forceAssemble(guid);
-            if (assembled.isPresent()) {
-                try { sink.enqueueDecodedNews(decodePayloadFromString(assembled.get()), guid); }
-                catch (Exception ex) { debugDecodeError(assembled.get(), "[MRN-DECODE-ERROR]"); }
-            }
-            return;
-        }
-
-        int frag = fragNum.isMissingNode() ? 1 : fragNum.asInt(1);
-        int acum = acumNode.isMissingNode() ? 0 : acumNode.asInt(0);
-        String guid = guidNode.isMissingNode() ? null : guidNode.asText(null);
-
-        if (guid == null) {
-            if (frag == 1) { lastUnknownKey = "UNKN-" + unknownCounter.incrementAndGet(); guid = lastUnknownKey; }
-            else { guid = (lastUnknownKey == null) ? ("UNKN-" + unknownCounter.incrementAndGet()) : lastUnknownKey; }
-        }
-
-        Optional<String> assembledBase64 = reassembler.addFragment(guid, frag, acum, fragment.asText());
-        if (assembledBase64.isPresent()) {
-            String assembledB64 = assembledBase64.get();
-            try { sink.enqueueDecodedNews(decodePayloadFromString(assembledB64), guid); }
-            catch (Exception ex) { debugDecodeError(assembledB64, "[MRN-DECODE-ERROR]"); }
-            finally { if (guid.startsWith("UNKN-")) lastUnknownKey = null; }
-            return;
-        }
-
-        if (acum <= 1) {
-            try { sink.enqueueDecodedNews(decodePayloadFromString(fragment.asText()), guid); }
-            catch (Exception ex) { debugDecodeError(fragment.asText(), "[MRN-DECODE-ERROR-FORCE]"); }
-            finally { if (guid.startsWith("UNKN-")) lastUnknownKey = null; }
+    private void processMrnFragment(MrnEnvelope msg) throws IOException {
+        if (!msg.hasFields()) return;
+
+        String guid = msg.guid();
+        boolean unknown = guid == null || guid.isBlank();
+        FirstArrivalMerge m = merge;
+        if (m != null) {
+            if (unknown ? !acceptUnkeyed.getAsBoolean() : !m.firstArrival(guid, msg.hasFragment() ? msg.fragNum() : 0)) return;
         }
-    }
-
-    private void debugDecodeError(String base64OrRaw, String tag) {
         try {
-            String preview = base64OrRaw.length() > 200 ? base64OrRaw.substring(0,200) + "..." : base64OrRaw;
-            String hex = "";
-            try {
-                byte[] raw = Base64.getDecoder().decode(base64OrRaw);
-                int len = Math.min(8, raw.length);
-                StringBuilder sb = new StringBuilder();
-                for (int i = 0; i < len; i++) sb.append(String.format("%02X ", raw[i]));
-                hex = sb.toString().trim();
-            } catch (Exception ignore) {}
-            logOut(tag + " preview_base64=" + preview);
-            logOut(tag + " first_bytes_hex=" + hex);
-        } catch (Exception ignore) {}
-    }
-
-    private String decodePayloadFromString(String base64OrRaw) throws IOException {
-        if (base64OrRaw == null) return "";
-        try { return decodeMaybeGzip(Base64.getDecoder().decode(base64OrRaw)); }
-        catch (IllegalArgumentException iae) { return base64OrRaw; }
-    }
-
-    private String decodeMaybeGzip(byte[] compressed) throws IOException {
-        if (compressed == null) return "";
-        if (compressed.length >= 2 && (compressed[0] == (byte)0x1f && compressed[1] == (byte)0x8b)) {
-            try (ByteArrayInputStream bin = new ByteArrayInputStream(compressed);
-                 GZIPInputStream gin = new GZIPInputStream(bin);
-                 InputStreamReader r = new InputStreamReader(gin, StandardCharsets.UTF_8);
-                 BufferedReader br = new BufferedReader(r)) {
-                StringBuilder sb = new StringBuilder();
-                String line;
-                while ((line = br.readLine()) != null) sb.append(line);
-                return sb.toString();
+            if (!msg.hasFragment()) {
+                String key = unknown ? sequencer.keyForFlush(msg.streamId()) : guid;
+                if (key != null) pipeline.submitFlush(key, frameReceivedNanos);
+                return;
             }
+
+            int frag = msg.fragNum();
+            int acum = msg.acum();
+            String key = unknown ? sequencer.keyForFragment(msg.streamId(), frag, acum) : guid;
+            pipeline.submitFragment(key, frag, acum, msg.fragment(), frameReceivedNanos);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("pipeline interrompido");
         }
-        return new String(compressed, StandardCharsets.UTF_8);
     }
 
     @Override
     public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
         logOut("[CLOSE] " + statusCode + ": " + reason);
-        scheduleReconnect();
+        if (webSocket == socket) scheduleReconnect();
         return CompletableFuture.completedFuture(null);
     }
 
     @Override
     public void onError(WebSocket webSocket, Throwable error) {
         logOut("[ERROR] " + (error.getMessage() == null ? error.toString() : error.getMessage()));
-        scheduleReconnect();
+        if (webSocket == socket) scheduleReconnect();
     }
 
     @Override
     public void close() {
         this.closed = true;
+        state.set(State.CLOSED);
+        tokenClient.removeTokenListener(tokenListener);
         safeAbort();
+        receiveStage.close();
+        if (capture != null) {
+            try { capture.close(); } catch (IOException e) { logOut("[CAPTURE-ERROR] " + e.getMessage()); }
+        }
     }
 
     // ====== MAIN ======
     public static void main(String[] args) {
-        // opcional: CSV por args/env; se vazio, o client fará discovery antes de conectar
-        String csv = System.getenv().getOrDefault("RDP_WS_ENDPOINTS", "");
-        if (args != null && args.length > 0 && args[0] != null && !args[0].isBlank()) csv = args[0];
-        List<String> bootstrap = parseEndpointsFromCsvOrSingle(csv);
-
-        try (NewsWebSocketClient client = new NewsWebSocketClient(
-                bootstrap, 30,
-                new RtoTokenClient(CLIENT_ID, USERNAME, PASSWORD),
-                new FileQueueSink())) {
-            client.connect();
-            new CompletableFuture<Void>().get();
-        } catch (Exception e) {
-            System.err.println("CRITICAL FAILURE: " + e.getMessage());
-        }
+        MrnConnectionManager.main(args);
     }
 }
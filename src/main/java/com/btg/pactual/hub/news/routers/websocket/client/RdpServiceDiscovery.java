@@ -0,0 +1,107 @@
+package com.btg.pactual.hub.news.routers.websocket.client;
+
+import com.btg.pactual.hub.news.RtoTokenClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Service discovery do RDP: lista os endpoints WebSocket (transport "websocket", formato
+ * tr_json2) do streaming de pricing. Compartilhado pelas conexões do {@link MrnConnectionManager}.
+ */
+public class RdpServiceDiscovery {
+
+    // RDP_AUTH_URL / RDP_DISCOVERY_URL / RDP_WS_SCHEME=ws apontam para o stand-in local do replay
+    private static final String AUTH_URL = System.getenv().getOrDefault("RDP_AUTH_URL", "https://api.refinitiv.com/auth/oauth2/v1/token");
+    private static final String DISCOVERY_URL = System.getenv().getOrDefault("RDP_DISCOVERY_URL", "https://api.refinitiv.com/streaming/pricing/v1/");
+    private static final String WS_SCHEME = System.getenv().getOrDefault("RDP_WS_SCHEME", "wss");
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final RtoTokenClient tokenClient;
+    private final Consumer<String> log;
+
+    public RdpServiceDiscovery(RtoTokenClient tokenClient, Consumer<String> log) {
+        this.tokenClient = tokenClient;
+        this.log = log;
+    }
+
+    /** URLs WebSocket (wss:// por padrão) descobertas, na ordem da resposta; lista vazia se o discovery falhar. */
+    public List<String> discover() {
+        List<String> discovered = new ArrayList<>();
+        try {
+            log.accept("Sending authentication request with password to " + AUTH_URL + " ...");
+            String token = tokenClient.getAccessToken(); // já faz o POST/auth internamente
+            // apenas para espelhar o log: mostre o token JSON “RECEIVED”
+            Map<String, Object> authEcho = new LinkedHashMap<>();
+            authEcho.put("access_token", token);
+            authEcho.put("token_type", "Bearer");
+            authEcho.put("scope", "trapi.streaming.pricing.read");
+            log.accept("Refinitiv Data Platform Authentication succeeded. RECEIVED:\n" +
+                    pretty(mapper.writeValueAsString(authEcho)));
+
+            log.accept("Sending Refinitiv Data Platform service discovery request to " + DISCOVERY_URL + " ...");
+
+            HttpRequest req = HttpRequest.newBuilder()
+                    .uri(URI.create(DISCOVERY_URL))
+                    .timeout(Duration.ofSeconds(20))
+                    .header("Authorization", "Bearer " + token)
+                    .header("Accept", "application/json")
+                    .GET().build();
+
+            HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+            if (resp.statusCode() / 100 != 2) {
+                log.accept("[DISCOVERY] HTTP " + resp.statusCode() + " body=" + resp.body());
+                return discovered;
+            }
+            String body = resp.body();
+            log.accept("Refinitiv Data Platform Service discovery succeeded. RECEIVED:\n" + pretty(body));
+
+            // parse services[]
+            JsonNode services = mapper.readTree(body).path("services");
+            if (services.isArray()) {
+                for (JsonNode s : services) {
+                    String transport = s.path("transport").asText("");
+                    if (!"websocket".equalsIgnoreCase(transport)) continue;
+
+                    boolean okFormat = false;
+                    JsonNode dformat = s.path("dataFormat");
+                    if (dformat.isArray()) {
+                        for (JsonNode df : dformat) {
+                            if ("tr_json2".equalsIgnoreCase(df.asText(""))) { okFormat = true; break; }
+                        }
+                    }
+                    if (!okFormat) continue;
+
+                    String endpoint = s.path("endpoint").asText("");
+                    int port = s.path("port").asInt(443);
+                    if (!endpoint.isBlank()) discovered.add(WS_SCHEME + "://" + endpoint + ":" + port + "/WebSocket");
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            log.accept("[DISCOVERY-ERROR] interrompido");
+        } catch (Exception e) {
+            log.accept("[DISCOVERY-ERROR] " + e.getMessage());
+        }
+        return discovered;
+    }
+
+    private String pretty(String json) {
+        try {
+            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(mapper.readTree(json));
+        } catch (Exception e) {
+            return json;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.btg.pactual.hub.news.routers.websocket.replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Servidor WebSocket mínimo (RFC 6455) sobre ServerSocket, só para o stand-in local: handshake
+ * HTTP/1.1, frames de texto (com continuação), ping/pong e close. Sem extensões nem TLS; uma
+ * thread por conexão. Ecoa o subprotocolo pedido pelo cliente (tr_json2).
+ */
+public class MiniWebSocketServer implements AutoCloseable {
+
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int MAX_MESSAGE_BYTES = 16 * 1024 * 1024;
+
+    /** Eventos de uma conexão; chamados na thread da conexão. */
+    public interface Handler {
+        void onOpen(Connection c);
+        void onText(Connection c, String text);
+        void onClose(Connection c);
+    }
+
+    /** Conexão aceita; sendText/close são thread-safe. */
+    public static final class Connection {
+        private final Socket socket;
+        private final OutputStream out;
+        private volatile boolean open = true;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+        }
+
+        public boolean isOpen() { return open; }
+
+        public String remote() { return String.valueOf(socket.getRemoteSocketAddress()); }
+
+        /** Envia uma mensagem de texto (bloqueia enquanto o TCP do cliente não drena). */
+        public void sendText(String text) throws IOException {
+            byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+            synchronized (out) {
+                writeHeader(0x81, payload.length);
+                out.write(payload);
+                out.flush();
+            }
+        }
+
+        void sendControl(int opcode, byte[] payload) throws IOException {
+            synchronized (out) {
+                writeHeader(0x80 | opcode, payload.length);
+                out.write(payload);
+                out.flush();
+            }
+        }
+
+        private void writeHeader(int b0, int len) throws IOException {
+            out.write(b0);
+            if (len < 126) {
+                out.write(len);
+            } else if (len <= 0xFFFF) {
+                out.write(126);
+                out.write(len >>> 8);
+                out.write(len);
+            } else {
+                out.write(127);
+                for (int i = 7; i >= 0; i--) out.write((int) ((long) len >>> (8 * i)));
+            }
+        }
+
+        public void close() {
+            if (!open) return;
+            open = false;
+            try { sendControl(0x8, new byte[] {0x03, (byte) 0xE8}); } catch (IOException ignore) {}
+            try { socket.close(); } catch (IOException ignore) {}
+        }
+    }
+
+    private final ServerSocket server;
+    private final Handler handler;
+    private final Thread acceptor;
+    private volatile boolean closed;
+
+    /** port 0 = porta livre (veja {@link #port()}). */
+    public MiniWebSocketServer(int port, Handler handler) throws IOException {
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.handler = handler;
+        this.acceptor = new Thread(this::acceptLoop, "ws-standin-accept-" + server.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int port() { return server.getLocalPort(); }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket s = server.accept();
+                s.setTcpNoDelay(true);
+                Thread t = new Thread(() -> serve(s), "ws-standin-conn-" + s.getPort());
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (!closed) System.err.println("[WS-STANDIN] accept falhou: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket s) {
+        Connection c = null;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 16 * 1024));
+            Map<String, String> headers = readHandshake(in);
+            String key = headers.get("sec-websocket-key");
+            if (key == null) {
+                s.getOutputStream().write("HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                s.close();
+                return;
+            }
+            StringBuilder resp = new StringBuilder()
+                    .append("HTTP/1.1 101 Switching Protocols\r\n")
+                    .append("Upgrade: websocket\r\n")
+                    .append("Connection: Upgrade\r\n")
+                    .append("Sec-WebSocket-Accept: ").append(accept(key)).append("\r\n");
+            String protocols = headers.get("sec-websocket-protocol");
+            if (protocols != null && !protocols.isBlank()) {
+                resp.append("Sec-WebSocket-Protocol: ").append(protocols.split(",")[0].trim()).append("\r\n");
+            }
+            resp.append("\r\n");
+            c = new Connection(s);
+            synchronized (c.out) {
+                c.out.write(resp.toString().getBytes(StandardCharsets.US_ASCII));
+                c.out.flush();
+            }
+            handler.onOpen(c);
+            readFrames(in, c);
+        } catch (EOFException eof) {
+            // cliente fechou
+        } catch (IOException e) {
+            if (c == null || c.isOpen()) System.err.println("[WS-STANDIN] conexão " + s.getRemoteSocketAddress() + ": " + e.getMessage());
+        } finally {
+            if (c != null) {
+                c.close();
+                handler.onClose(c);
+            } else {
+                try { s.close(); } catch (IOException ignore) {}
+            }
+        }
+    }
+
+    private static Map<String, String> readHandshake(InputStream in) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        String line = readLine(in); // GET /WebSocket HTTP/1.1
+        if (line == null) throw new EOFException();
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+        }
+        return headers;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == '\n') return sb.toString();
+            if (b != '\r') sb.append((char) b);
+            if (sb.length() > 8192) throw new IOException("linha de handshake grande demais");
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    private void readFrames(DataInputStream in, Connection c) throws IOException {
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        while (c.isOpen()) {
+            int b0 = in.readUnsignedByte();
+            int b1 = in.readUnsignedByte();
+            boolean fin = (b0 & 0x80) != 0;
+            int opcode = b0 & 0x0F;
+            boolean masked = (b1 & 0x80) != 0;
+            long len = b1 & 0x7F;
+            if (len == 126) len = in.readUnsignedShort();
+            else if (len == 127) len = in.readLong();
+            if (len < 0 || len > MAX_MESSAGE_BYTES) throw new IOException("frame grande demais: " + len);
+            byte[] mask = new byte[4];
+            if (masked) in.readFully(mask);
+            byte[] payload = new byte[(int) len];
+            in.readFully(payload);
+            if (masked) for (int i = 0; i < payload.length; i++) payload[i] ^= mask[i & 3];
+
+            switch (opcode) {
+                case 0x0, 0x1 -> {
+                    message.write(payload);
+                    if (message.size() > MAX_MESSAGE_BYTES) throw new IOException("mensagem grande demais");
+                    if (fin) {
+                        handler.onText(c, message.toString(StandardCharsets.UTF_8));
+                        message.reset();
+                    }
+                }
+                case 0x8 -> { return; }
+                case 0x9 -> c.sendControl(0xA, payload);
+                default -> { } // pong/binário: ignorados
+            }
+        }
+    }
+
+    static String accept(String key) {
+        try {
+            byte[] sha1 = MessageDigest.getInstance("SHA-1").digest((key + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(sha1);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try { server.close(); } catch (IOException ignore) {}
+    }
+}
@@ -0,0 +1,160 @@
+package com.btg.pactual.hub.news.routers.websocket.replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Arquivo de captura do tráfego WebSocket MRN (frames de entrada, como chegaram) para replay.
+ *
+ * Layout: cabeçalho {@code "MRNCAP01"} e depois, por frame,
+ * {@code [varint µs desde o frame anterior][varint tamanho][texto UTF-8]}. O primeiro delta é
+ * relativo à abertura do arquivo. Um frame cortado no fim (processo morto no meio da escrita) é
+ * ignorado na leitura.
+ */
+public final class MrnCaptureFile {
+
+    static final byte[] MAGIC = "MRNCAP01".getBytes(StandardCharsets.US_ASCII);
+    /** Flush no máximo a cada 1s: um processo morto perde só o último segundo da captura. */
+    private static final long FLUSH_INTERVAL_NANOS = 1_000_000_000L;
+
+    private MrnCaptureFile() {}
+
+    /** Grava frames; thread-safe (um worker de receive por conexão, mas close vem de outra thread). */
+    public static final class Writer implements AutoCloseable {
+        private final OutputStream out;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private ByteBuffer bytes = ByteBuffer.allocate(64 * 1024);
+        private long lastNanos;
+        private long lastFlushNanos;
+        private long frames;
+
+        public Writer(Path file) throws IOException {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            this.out = new BufferedOutputStream(Files.newOutputStream(file), 256 * 1024);
+            out.write(MAGIC);
+            this.lastNanos = System.nanoTime();
+            this.lastFlushNanos = lastNanos;
+        }
+
+        /** Frame completo recebido em receivedNanos (System.nanoTime(); 0 = agora). */
+        public synchronized void append(long receivedNanos, char[] text, int len) throws IOException {
+            long now = receivedNanos == 0 ? System.nanoTime() : receivedNanos;
+            long deltaMicros = Math.max(0, (now - lastNanos) / 1_000);
+            lastNanos = now;
+            ByteBuffer b = encode(text, len);
+            writeVarint(deltaMicros);
+            writeVarint(b.remaining());
+            out.write(b.array(), 0, b.remaining());
+            frames++;
+            if (now - lastFlushNanos > FLUSH_INTERVAL_NANOS) {
+                out.flush();
+                lastFlushNanos = now;
+            }
+        }
+
+        private ByteBuffer encode(char[] text, int len) {
+            int max = (int) Math.min(Integer.MAX_VALUE, (long) len * 3);
+            if (bytes.capacity() < max) bytes = ByteBuffer.allocate(max);
+            bytes.clear();
+            encoder.reset();
+            CharBuffer in = CharBuffer.wrap(text, 0, len);
+            CoderResult r = encoder.encode(in, bytes, true);
+            if (r.isError()) {
+                // par surrogate quebrado: cai no caminho que substitui caracteres inválidos
+                bytes = ByteBuffer.wrap(new String(text, 0, len).getBytes(StandardCharsets.UTF_8));
+                return bytes;
+            }
+            encoder.flush(bytes);
+            bytes.flip();
+            return bytes;
+        }
+
+        private void writeVarint(long v) throws IOException {
+            while ((v & ~0x7FL) != 0) {
+                out.write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            out.write((int) v);
+        }
+
+        public synchronized long frames() { return frames; }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /** Lê os frames em ordem; offsetMicros() é acumulado desde o início da captura. */
+    public static final class Reader implements MrnFrameSource {
+        private final DataInputStream in;
+        private byte[] buf = new byte[64 * 1024];
+        private long offsetMicros;
+        private int length;
+
+        public Reader(Path file) throws IOException {
+            InputStream raw = new BufferedInputStream(Files.newInputStream(file), 256 * 1024);
+            this.in = new DataInputStream(raw);
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                in.close();
+                throw new IOException("não é uma captura MRN: " + file);
+            }
+        }
+
+        /** Avança para o próximo frame; false no fim (ou em frame cortado). */
+        @Override
+        public boolean next() throws IOException {
+            try {
+                long delta = readVarint();
+                if (delta < 0) return false;
+                long len = readVarint();
+                if (len < 0 || len > Integer.MAX_VALUE - 8) return false;
+                if (buf.length < len) buf = new byte[(int) Math.max(len, buf.length * 2L)];
+                in.readFully(buf, 0, (int) len);
+                offsetMicros += delta;
+                length = (int) len;
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public long offsetMicros() { return offsetMicros; }
+
+        @Override
+        public String text() { return new String(buf, 0, length, StandardCharsets.UTF_8); }
+
+        private long readVarint() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.read();
+                if (b < 0) return -1;
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IOException("varint inválido");
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
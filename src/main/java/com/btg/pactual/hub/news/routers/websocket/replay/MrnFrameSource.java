@@ -0,0 +1,19 @@
+package com.btg.pactual.hub.news.routers.websocket.replay;
+
+import java.io.IOException;
+
+/** Sequência de frames a enviar pelo stand-in, cada um com seu instante relativo ao início. */
+public interface MrnFrameSource extends AutoCloseable {
+
+    /** Avança para o próximo frame; false no fim. */
+    boolean next() throws IOException;
+
+    /** Instante do frame atual, em µs desde o início da sequência. */
+    long offsetMicros();
+
+    /** Texto do frame atual (mensagem JSON, como chegou do servidor real). */
+    String text();
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,230 @@
+package com.btg.pactual.hub.news.routers.websocket.replay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stand-in local da Refinitiv para testar o cliente offline: auth (OAuth password/refresh grant),
+ * service discovery e N endpoints WebSocket que respondem o Login e, no primeiro pedido de item,
+ * tocam uma sequência de frames — uma captura ({@link MrnCaptureFile}) ou o gerador
+ * {@link SyntheticMrnFeed} — em 1x, Nx ou à velocidade máxima. Em "max" quem dita o ritmo é o
+ * TCP do cliente, então frames/s no resumo é o teto do cliente.
+ *
+ * Uso: {@code MrnStandInServer [--capture=arquivo.mrncap | --stories=N --rate=H/s --body=chars
+ * --fragment=bytes --guidless=0.05 --resend=0.02] [--speed=1|N|max] [--endpoints=N] [--http-port=P]}.
+ * Imprime as variáveis RDP_AUTH_URL, RDP_DISCOVERY_URL e RDP_WS_SCHEME para apontar o cliente.
+ */
+public class MrnStandInServer implements AutoCloseable {
+
+    /** Abre uma sequência nova de frames para cada conexão que assina itens. */
+    public interface SourceFactory {
+        MrnFrameSource open() throws IOException;
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final SourceFactory sources;
+    /** Multiplicador do ritmo original; 0 = sem pausas. */
+    private final double speed;
+    private final HttpServer http;
+    private final List<MiniWebSocketServer> endpoints = new ArrayList<>();
+    private final AtomicInteger tokens = new AtomicInteger();
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final Map<MiniWebSocketServer.Connection, Boolean> replaying = new HashMap<>();
+
+    public MrnStandInServer(SourceFactory sources, double speed, int endpointCount, int httpPort) throws IOException {
+        this.sources = sources;
+        this.speed = speed;
+        for (int i = 0; i < endpointCount; i++) endpoints.add(new MiniWebSocketServer(0, new Handler()));
+        this.http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), httpPort), 0);
+        http.createContext("/auth/oauth2/v1/token", this::token);
+        http.createContext("/streaming/pricing/v1/", this::discovery);
+        http.start();
+    }
+
+    public String authUrl() { return "http://127.0.0.1:" + http.getAddress().getPort() + "/auth/oauth2/v1/token"; }
+
+    public String discoveryUrl() { return "http://127.0.0.1:" + http.getAddress().getPort() + "/streaming/pricing/v1/"; }
+
+    public List<String> webSocketUrls() {
+        List<String> urls = new ArrayList<>();
+        for (MiniWebSocketServer ws : endpoints) urls.add("ws://127.0.0.1:" + ws.port() + "/WebSocket");
+        return urls;
+    }
+
+    public long framesSent() { return framesSent.get(); }
+
+    // ====== HTTP: auth + discovery ======
+    private void token(HttpExchange ex) throws IOException {
+        ObjectNode body = mapper.createObjectNode();
+        body.put("access_token", "standin-token-" + tokens.incrementAndGet());
+        body.put("refresh_token", "standin-refresh");
+        body.put("expires_in", "300");
+        body.put("scope", "trapi.streaming.pricing.read");
+        body.put("token_type", "Bearer");
+        respond(ex, body);
+    }
+
+    private void discovery(HttpExchange ex) throws IOException {
+        ObjectNode body = mapper.createObjectNode();
+        ArrayNode services = body.putArray("services");
+        for (MiniWebSocketServer ws : endpoints) {
+            ObjectNode s = services.addObject();
+            s.put("endpoint", "127.0.0.1");
+            s.put("port", ws.port());
+            s.put("transport", "websocket");
+            s.putArray("dataFormat").add("tr_json2");
+            s.putArray("location").add("local");
+            s.put("provider", "standin");
+        }
+        respond(ex, body);
+    }
+
+    private void respond(HttpExchange ex, JsonNode body) throws IOException {
+        ex.getRequestBody().readAllBytes();
+        byte[] out = mapper.writeValueAsBytes(body);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, out.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(out);
+        }
+    }
+
+    // ====== WebSocket ======
+    private final class Handler implements MiniWebSocketServer.Handler {
+        @Override
+        public void onOpen(MiniWebSocketServer.Connection c) {
+            System.out.println("[STANDIN] conexão " + c.remote());
+        }
+
+        @Override
+        public void onText(MiniWebSocketServer.Connection c, String text) {
+            try {
+                JsonNode msg = mapper.readTree(text);
+                String domain = msg.path("Domain").asText("");
+                int id = msg.path("ID").asInt(0);
+                if ("Login".equalsIgnoreCase(domain)) {
+                    c.sendText("{\"ID\":" + id + ",\"Type\":\"Refresh\",\"Domain\":\"Login\",\"Key\":{\"Name\":"
+                            + mapper.writeValueAsString(msg.path("Key").path("Name").asText("")) + "},"
+                            + "\"State\":{\"Stream\":\"Open\",\"Data\":\"Ok\",\"Text\":\"Login accepted by stand-in\"}}");
+                } else if ("NewsTextAnalytics".equalsIgnoreCase(domain)) {
+                    c.sendText("{\"ID\":" + id + ",\"Type\":\"Refresh\",\"Domain\":\"NewsTextAnalytics\",\"Key\":{\"Name\":"
+                            + mapper.writeValueAsString(msg.path("Key").path("Name").asText("")) + "},"
+                            + "\"State\":{\"Stream\":\"Open\",\"Data\":\"Ok\"},\"Complete\":true}");
+                    boolean start;
+                    synchronized (replaying) { start = replaying.putIfAbsent(c, Boolean.TRUE) == null; }
+                    if (start) CompletableFuture.runAsync(() -> replay(c));
+                }
+            } catch (IOException e) {
+                System.err.println("[STANDIN] pedido inválido: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void onClose(MiniWebSocketServer.Connection c) {
+            synchronized (replaying) { replaying.remove(c); }
+            System.out.println("[STANDIN] conexão encerrada " + c.remote());
+        }
+    }
+
+    private void replay(MiniWebSocketServer.Connection c) {
+        long frames = 0;
+        long bytes = 0;
+        long start = System.nanoTime();
+        try (MrnFrameSource src = sources.open()) {
+            while (c.isOpen() && src.next()) {
+                String text = src.text();
+                if (isSessionMessage(text)) continue; // Login/Ping da captura: o stand-in responde os seus
+                if (speed > 0) {
+                    long due = start + (long) (src.offsetMicros() * 1_000 / speed);
+                    long wait;
+                    while ((wait = due - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+                }
+                c.sendText(text);
+                frames++;
+                bytes += text.length();
+            }
+        } catch (IOException e) {
+            if (c.isOpen()) System.err.println("[STANDIN] replay interrompido: " + e.getMessage());
+        }
+        framesSent.addAndGet(frames);
+        bytesSent.addAndGet(bytes);
+        double secs = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        System.out.printf("[STANDIN] %s: %d frames em %.2fs = %.0f frames/s, %.1f MB/s%n",
+                c.remote(), frames, secs, frames / secs, bytes / secs / 1e6);
+    }
+
+    private boolean isSessionMessage(String text) {
+        if (text.length() > 2048) return false; // fragments de notícia nunca são tão curtos quanto o que importa aqui
+        try {
+            JsonNode n = mapper.readTree(text);
+            if (n.isArray() && n.size() > 0) n = n.get(0);
+            return "Login".equalsIgnoreCase(n.path("Domain").asText("")) || "Ping".equals(n.path("Type").asText(""));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        http.stop(0);
+        for (MiniWebSocketServer ws : endpoints) ws.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = new HashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--")) continue;
+            int eq = a.indexOf('=');
+            opt.put(eq < 0 ? a.substring(2) : a.substring(2, eq), eq < 0 ? "true" : a.substring(eq + 1));
+        }
+        String speedOpt = opt.getOrDefault("speed", "1");
+        double speed = "max".equalsIgnoreCase(speedOpt) ? 0 : Double.parseDouble(speedOpt);
+
+        SourceFactory sources;
+        if (opt.containsKey("capture")) {
+            Path capture = Path.of(opt.get("capture"));
+            sources = () -> new MrnCaptureFile.Reader(capture);
+        } else {
+            SyntheticMrnFeed.Config d = SyntheticMrnFeed.Config.defaults();
+            SyntheticMrnFeed.Config cfg = new SyntheticMrnFeed.Config(
+                    Integer.parseInt(opt.getOrDefault("stories", String.valueOf(d.stories))),
+                    Double.parseDouble(opt.getOrDefault("rate", String.valueOf(d.storiesPerSecond))),
+                    Integer.parseInt(opt.getOrDefault("body", String.valueOf(d.bodyChars))),
+                    Integer.parseInt(opt.getOrDefault("fragment", String.valueOf(d.fragmentBytes))),
+                    Double.parseDouble(opt.getOrDefault("guidless", String.valueOf(d.guidlessRatio))),
+                    Double.parseDouble(opt.getOrDefault("resend", String.valueOf(d.resendRatio))),
+                    opt.getOrDefault("languages", String.join(",", d.languages)).split(","),
+                    d.streamId,
+                    Long.parseLong(opt.getOrDefault("seed", String.valueOf(d.seed))));
+            sources = () -> new SyntheticMrnFeed(cfg);
+        }
+
+        MrnStandInServer server = new MrnStandInServer(sources, speed,
+                Integer.parseInt(opt.getOrDefault("endpoints", "1")),
+                Integer.parseInt(opt.getOrDefault("http-port", "0")));
+        System.out.println("RDP_AUTH_URL=" + server.authUrl());
+        System.out.println("RDP_DISCOVERY_URL=" + server.discoveryUrl());
+        System.out.println("RDP_WS_SCHEME=ws");
+        System.out.println("RDP_WS_ENDPOINTS=" + String.join(",", server.webSocketUrls()));
+        new CompletableFuture<Void>().get();
+    }
+}
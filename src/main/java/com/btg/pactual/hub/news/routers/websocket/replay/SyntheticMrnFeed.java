@@ -0,0 +1,165 @@
+package com.btg.pactual.hub.news.routers.websocket.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gerador de tráfego MRN sintético para o stand-in: histórias (altId/GUID únicos, idioma, headline,
+ * body com HTML e quebras de linha) comprimidas em gzip, em base64 e quebradas em fragments de
+ * até fragmentBytes, como no MRN_STORY real (FRAG_NUM 1..ACUM). Uma fração das histórias sai sem
+ * GUID e outra é reenviada (mesmo conteúdo) para exercitar o reagrupamento por stream e o dedup.
+ * O versionCreated de cada história é o instante previsto para o seu envio.
+ */
+public class SyntheticMrnFeed implements MrnFrameSource {
+
+    /** Parâmetros do gerador. */
+    public static final class Config {
+        public final int stories;
+        /** Histórias por segundo; 0 = sem ritmo (tudo no instante 0, o stand-in manda o mais rápido possível). */
+        public final double storiesPerSecond;
+        public final int bodyChars;
+        public final int fragmentBytes;
+        public final double guidlessRatio;
+        public final double resendRatio;
+        public final String[] languages;
+        public final int streamId;
+        public final long seed;
+
+        public Config(int stories, double storiesPerSecond, int bodyChars, int fragmentBytes,
+                      double guidlessRatio, double resendRatio, String[] languages, int streamId, long seed) {
+            this.stories = stories;
+            this.storiesPerSecond = storiesPerSecond;
+            this.bodyChars = bodyChars;
+            this.fragmentBytes = fragmentBytes;
+            this.guidlessRatio = guidlessRatio;
+            this.resendRatio = resendRatio;
+            this.languages = languages;
+            this.streamId = streamId;
+            this.seed = seed;
+        }
+
+        public static Config defaults() {
+            return new Config(10_000, 0, 4_000, 3_000, 0.05, 0.02, new String[] {"pt", "en", "es"}, 2, 42);
+        }
+    }
+
+    private static final String[] WORDS = {
+            "mercado", "juros", "inflação", "Ibovespa", "dólar", "petróleo", "Copom", "balanço", "lucro",
+            "receita", "guidance", "ações", "dividendos", "Fed", "treasuries", "commodities", "crédito"};
+
+    private final Config config;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Random random;
+    private final ArrayDeque<String> pending = new ArrayDeque<>();
+    private final long startMillis = System.currentTimeMillis();
+    private int produced;
+    private long offsetMicros;
+    private String current;
+    private byte[] lastStory;
+    private String lastGuid;
+
+    public SyntheticMrnFeed(Config config) {
+        this.config = config;
+        this.random = new Random(config.seed);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        if (pending.isEmpty()) {
+            if (produced >= config.stories) return false;
+            offsetMicros = config.storiesPerSecond <= 0 ? 0 : (long) (produced * 1_000_000 / config.storiesPerSecond);
+            fragmentStory(produced++);
+        }
+        current = pending.poll();
+        return true;
+    }
+
+    private void fragmentStory(int n) throws IOException {
+        byte[] gz;
+        String guid;
+        if (lastStory != null && random.nextDouble() < config.resendRatio) {
+            gz = lastStory; // reenvio idêntico
+            guid = lastGuid;
+        } else {
+            String altId = "urn:newsml:synthetic:" + config.seed + ":" + n;
+            guid = altId.substring("urn:newsml:".length()) + "_" + config.seed;
+            gz = gzip(storyJson(altId, n));
+            lastStory = gz;
+            lastGuid = guid;
+        }
+        boolean guidless = random.nextDouble() < config.guidlessRatio;
+        int total = Math.max(1, (gz.length + config.fragmentBytes - 1) / config.fragmentBytes);
+        for (int i = 0; i < total; i++) {
+            int from = i * config.fragmentBytes;
+            int to = Math.min(gz.length, from + config.fragmentBytes);
+            byte[] part = Arrays.copyOfRange(gz, from, to);
+            ObjectNode msg = mapper.createObjectNode();
+            msg.put("ID", config.streamId);
+            msg.put("Type", "Update");
+            msg.put("Domain", "NewsTextAnalytics");
+            msg.put("UpdateType", "Unspecified");
+            ObjectNode fields = msg.putObject("Fields");
+            fields.put("ACUM", total);
+            fields.put("FRAGMENT", Base64.getEncoder().encodeToString(part));
+            fields.put("FRAG_NUM", i + 1);
+            if (!guidless) fields.put("GUID", guid);
+            fields.put("MRN_SRC", "SYNTHETIC");
+            fields.put("TOT_SIZE", gz.length);
+            pending.add(mapper.writeValueAsString(msg));
+        }
+    }
+
+    private byte[] storyJson(String altId, int n) throws IOException {
+        ObjectNode story = mapper.createObjectNode();
+        story.put("altId", altId);
+        story.put("language", config.languages[n % config.languages.length]);
+        story.put("headline", "Synthetic headline " + n + " " + WORDS[random.nextInt(WORDS.length)]);
+        story.put("body", body());
+        story.putArray("audiences").add("NP:BRS");
+        story.put("provider", "SYNTHETIC");
+        story.put("versionCreated", Instant.ofEpochMilli(startMillis + offsetMicros / 1_000).toString());
+        return mapper.writeValueAsBytes(story);
+    }
+
+    private String body() {
+        StringBuilder sb = new StringBuilder(config.bodyChars + 64);
+        while (sb.length() < config.bodyChars) {
+            switch (random.nextInt(12)) {
+                case 0 -> sb.append("\r\n");
+                case 1 -> sb.append("<p>");
+                case 2 -> sb.append("</p>  ");
+                case 3 -> sb.append("(Reporting by Synthetic Desk) ");
+                default -> sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static byte[] gzip(byte[] raw) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(raw.length / 2 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(bos)) {
+            gz.write(raw);
+        }
+        return bos.toByteArray();
+    }
+
+    @Override
+    public long offsetMicros() { return offsetMicros; }
+
+    @Override
+    public String text() { return current; }
+
+    @Override
+    public void close() {
+        pending.clear();
+    }
+}
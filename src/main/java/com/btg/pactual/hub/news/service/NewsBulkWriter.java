@@ -0,0 +1,287 @@
+package com.btg.pactual.hub.news.service;
+import com.btg.pactual.hub.news.LatencyMetrics;
+import com.btg.pactual.hub.news.NewsDedupCache;
+import com.btg.pactual.hub.news.model.NewsDocument;
+import com.fasterxml.jackson.databind.ObjectMapper; import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.annotation.PostConstruct; import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor; import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.convert.ConversionException; import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.mapping.MappingException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import java.io.BufferedWriter; import java.io.IOException;
+import java.nio.charset.StandardCharsets; import java.nio.file.*;
+import java.util.*; import java.util.concurrent.*; import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+/**
+ * Gravação em lote das notícias no Mongo: acumula NewsDocument por quantidade ou janela de tempo
+ * e grava com bulk UNORDERED de upserts (replaceOne por "id"), então id repetido atualiza em vez
+ * de falhar no índice único. O upsert é condicional ao versionCreated: uma revisão mais antiga que
+ * a gravada (retry atrasado, spill regravado depois) não casa o filtro, o insert bate no índice
+ * único e o documento é descartado como stale. No máximo maxInFlight lotes em voo; com todos
+ * ocupados e a fila cheia, submit() bloqueia (backpressure). Falhas transitórias são repetidas com
+ * backoff exponencial só para os documentos que falharam; esgotadas as tentativas o lote vai para
+ * NDJSON em spillDir e é regravado depois que o Mongo voltar. Erros permanentes (validação, chave
+ * duplicada, documento grande demais, mapeamento) não são repetidos: vão para deadLetterDir.
+ * Só o que o Mongo confirmou entra no {@link NewsDedupCache}. Cada documento recebe o expireAt da política de retenção e
+ * vai para a coleção que o {@link NewsRetentionService} indicar (news ou news_yyyyMM); um lote com
+ * documentos de coleções diferentes vira um bulk por coleção.
+ */
+@Component @RequiredArgsConstructor
+public class NewsBulkWriter {
+  private final MongoTemplate mongo; private final ObjectMapper mapper; private final LatencyMetrics latency;
+  private final NewsRetentionService retention; private final NewsDedupCache dedup;
+  @Value("${news.bulk.batch-size:500}") int batchSize;
+  @Value("${news.bulk.flush-millis:200}") long flushMillis;
+  @Value("${news.bulk.max-in-flight:4}") int maxInFlight;
+  @Value("${news.bulk.queue-capacity:10000}") int queueCapacity;
+  @Value("${news.bulk.max-retries:5}") int maxRetries;
+  @Value("${news.bulk.backoff-millis:200}") long backoffMillis;
+  @Value("${news.bulk.spill-dir:data/mrn/spill/}") String spillDir;
+  @Value("${news.bulk.dead-letter-dir:data/mrn/deadletter/}") String deadLetterDir;
+
+  private static final int DUPLICATE_KEY = 11000;
+  /** BadValue, DocumentValidationFailure, BSONObjectTooLarge, idioma do índice text não suportado, KeyTooLong. */
+  private static final Set<Integer> PERMANENT_CODES = Set.of(2, 121, 10334, 17262, 17280, DUPLICATE_KEY);
+
+  private BlockingQueue<NewsDocument> queue; private Semaphore inFlight;
+  private ExecutorService writers; private ScheduledExecutorService spillReplayer; private Thread dispatcher;
+  private volatile boolean running = true;
+  private final AtomicLong written = new AtomicLong(), retried = new AtomicLong(), spilled = new AtomicLong(), batches = new AtomicLong();
+  private final AtomicLong stale = new AtomicLong(), deadLettered = new AtomicLong();
+
+  @PostConstruct void start() {
+    queue = new ArrayBlockingQueue<>(queueCapacity); inFlight = new Semaphore(maxInFlight);
+    writers = Executors.newFixedThreadPool(maxInFlight, daemon("news-bulk-write"));
+    dispatcher = daemon("news-bulk-dispatch").newThread(this::dispatchLoop); dispatcher.start();
+    spillReplayer = Executors.newSingleThreadScheduledExecutor(daemon("news-bulk-spill"));
+    spillReplayer.scheduleWithFixedDelay(this::replaySpill, 30, 30, TimeUnit.SECONDS);
+  }
+
+  /** Aplica a retenção e enfileira o documento; bloqueia enquanto a fila estiver cheia. */
+  public void submit(NewsDocument doc) throws InterruptedException { retention.apply(doc); queue.put(doc); }
+
+  private void dispatchLoop() {
+    List<NewsDocument> batch = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        NewsDocument first = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+        if (first == null) continue;
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        while (batch.size() < batchSize) {
+          long wait = deadline - System.nanoTime();
+          if (wait <= 0) break;
+          NewsDocument d = queue.poll(wait, TimeUnit.NANOSECONDS);
+          if (d == null) break;
+          batch.add(d); queue.drainTo(batch, batchSize - batch.size());
+        }
+        inFlight.acquire();
+        List<NewsDocument> toWrite = batch; batch = new ArrayList<>(batchSize);
+        writers.execute(() -> { try { writeWithRetry(toWrite); } finally { inFlight.release(); } });
+      } catch (InterruptedException ie) { Thread.currentThread().interrupt(); break; }
+    }
+    if (!batch.isEmpty()) writeWithRetry(batch);
+  }
+
+  private void writeWithRetry(List<NewsDocument> docs) {
+    byCollection(dedupeById(docs)).forEach(this::writeWithRetry);
+  }
+
+  private void writeWithRetry(String collection, List<NewsDocument> docs) {
+    List<NewsDocument> pending = docs; long delay = backoffMillis;
+    for (int attempt = 0; ; attempt++) {
+      try {
+        pending = upsert(collection, pending);
+        if (pending.isEmpty()) { batches.incrementAndGet(); return; }
+      } catch (RuntimeException e) {
+        if (permanent(e)) { isolate(collection, pending, e); return; }
+        System.err.println("[MONGO-BULK] lote de " + pending.size() + " falhou: " + e.getMessage());
+      }
+      if (attempt >= maxRetries || !running) { spill(pending); return; }
+      retried.addAndGet(pending.size());
+      try { Thread.sleep(delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1)); }
+      catch (InterruptedException ie) { Thread.currentThread().interrupt(); spill(pending); return; }
+      delay = Math.min(delay * 2, 30_000);
+    }
+  }
+
+  /** receivedAt/versionCreated → confirmação do Mongo, por documento gravado. */
+  private void recordLatency(List<NewsDocument> docs) {
+    for (NewsDocument d : docs) {
+      latency.recordSinceInstant(LatencyMetrics.RECEIVED_TO_MONGO, d.getReceivedAt());
+      latency.recordSinceInstant(LatencyMetrics.SOURCE_TO_MONGO, d.getVersionCreated());
+    }
+  }
+
+  /**
+   * Um bulk; devolve só os documentos com falha transitória (a repetir). Gravados contam em written,
+   * revisão mais antiga que a do banco conta em stale e erro permanente vai para dead-letter. Falha
+   * do lote inteiro (sem detalhe por documento) sobe como exceção.
+   */
+  private List<NewsDocument> upsert(String collection, List<NewsDocument> docs) {
+    Set<NewsDocument> notWritten = Collections.newSetFromMap(new IdentityHashMap<>());
+    List<NewsDocument> retry = new ArrayList<>(); List<ObjectNode> dead = new ArrayList<>();
+    try { bulkUpsert(collection, docs); }
+    catch (BulkOperationException e) {
+      if (e.getErrors().isEmpty()) throw e;
+      for (BulkWriteError err : e.getErrors()) {
+        NewsDocument d = docs.get(err.getIndex()); notWritten.add(d);
+        if (err.getCode() == DUPLICATE_KEY && d.getVersionCreated() != null) stale.incrementAndGet();
+        else if (PERMANENT_CODES.contains(err.getCode())) dead.add(deadLetterEntry(d, err.getCode() + " " + err.getMessage()));
+        else retry.add(d);
+      }
+      System.err.println("[MONGO-BULK] " + notWritten.size() + " não gravados em " + collection + " (" + retry.size()
+          + " a repetir, " + dead.size() + " dead-letter): " + e.getMessage());
+    }
+    deadLetter(dead);
+    List<NewsDocument> ok = notWritten.isEmpty() ? docs : docs.stream().filter(d -> !notWritten.contains(d)).toList();
+    written.addAndGet(ok.size()); recordLatency(ok);
+    for (NewsDocument d : ok) dedup.record(d.getId(), NewsRoutingService.contentHash(d));
+    return retry;
+  }
+
+  /** Erro permanente no lote inteiro: um documento vai para dead-letter; vários são regravados um a um para isolar o culpado. */
+  private void isolate(String collection, List<NewsDocument> docs, RuntimeException e) {
+    if (docs.size() == 1) { deadLetter(List.of(deadLetterEntry(docs.get(0), e.toString()))); return; }
+    for (NewsDocument d : docs) writeWithRetry(collection, List.of(d));
+  }
+
+  /** Não vale a pena repetir: o mesmo documento falharia de novo. */
+  private static boolean permanent(RuntimeException e) {
+    return e instanceof DataIntegrityViolationException || e instanceof MappingException
+        || e instanceof ConversionException || e instanceof IllegalArgumentException;
+  }
+
+  /** replaceOne com upsert; com versionCreated só substitui revisão igual ou mais antiga (ou sem versão). */
+  private void bulkUpsert(String collection, List<NewsDocument> docs) {
+    BulkOperations ops = mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, NewsDocument.class, collection);
+    FindAndReplaceOptions upsert = FindAndReplaceOptions.options().upsert();
+    for (NewsDocument d : docs) {
+      Criteria c = Criteria.where("id").is(d.getId());
+      if (d.getVersionCreated() != null)
+        c = c.orOperator(Criteria.where("versionCreated").lte(d.getVersionCreated()), Criteria.where("versionCreated").exists(false));
+      ops.replaceOne(Query.query(c), d, upsert);
+    }
+    ops.execute();
+  }
+
+  /** Mesmo id no mesmo lote: vale o último (upserts UNORDERED não garantem ordem entre si). */
+  private static List<NewsDocument> dedupeById(List<NewsDocument> docs) {
+    Map<String, NewsDocument> byId = new LinkedHashMap<>();
+    for (NewsDocument d : docs) { byId.remove(d.getId()); byId.put(d.getId(), d); }
+    return new ArrayList<>(byId.values());
+  }
+
+  /** Agrupa pela coleção de destino, mantendo a ordem do lote. */
+  private Map<String, List<NewsDocument>> byCollection(List<NewsDocument> docs) {
+    Map<String, List<NewsDocument>> out = new LinkedHashMap<>();
+    for (NewsDocument d : docs) out.computeIfAbsent(retention.collectionFor(d), c -> new ArrayList<>()).add(d);
+    return out;
+  }
+
+  // ===== spill =====
+  private void spill(List<NewsDocument> docs) {
+    if (docs.isEmpty()) return;
+    try {
+      Path dir = Files.createDirectories(Path.of(spillDir));
+      Path file = dir.resolve("spill_" + System.currentTimeMillis() + "_" + UUID.randomUUID() + ".ndjson");
+      try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW)) {
+        for (NewsDocument d : docs) { w.write(mapper.writeValueAsString(d)); w.newLine(); }
+      }
+      spilled.addAndGet(docs.size());
+      System.err.println("[MONGO-SPILL] " + docs.size() + " documentos em " + file);
+    } catch (IOException e) { System.err.println("[MONGO-SPILL-ERROR] " + docs.size() + " perdidos: " + e.getMessage()); }
+  }
+
+  private ObjectNode deadLetterEntry(Object doc, String error) {
+    ObjectNode n = mapper.createObjectNode(); n.put("error", error); n.set("doc", mapper.valueToTree(doc));
+    return n;
+  }
+
+  /** NDJSON {error, doc} em deadLetterDir; não é regravado automaticamente. */
+  private void deadLetter(List<ObjectNode> entries) {
+    if (entries.isEmpty()) return;
+    try {
+      Path dir = Files.createDirectories(Path.of(deadLetterDir));
+      Path file = dir.resolve("dead_" + System.currentTimeMillis() + "_" + UUID.randomUUID() + ".ndjson");
+      try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW)) {
+        for (ObjectNode n : entries) { w.write(mapper.writeValueAsString(n)); w.newLine(); }
+      }
+      deadLettered.addAndGet(entries.size());
+      System.err.println("[MONGO-DEADLETTER] " + entries.size() + " documentos em " + file + ": " + entries.get(0).path("error").asText());
+    } catch (IOException e) { System.err.println("[MONGO-DEADLETTER-ERROR] " + entries.size() + " perdidos: " + e.getMessage()); }
+  }
+
+  /**
+   * Regrava os arquivos de spill em ordem com o mesmo upsert condicional, então uma revisão mais
+   * nova gravada enquanto o arquivo esperava não é sobrescrita. Linha ilegível e erro permanente
+   * vão para dead-letter; sobrando falhas transitórias, o arquivo é reescrito só com elas e o
+   * replay para (Mongo ainda fora).
+   */
+  void replaySpill() {
+    Path dir = Path.of(spillDir);
+    if (!Files.isDirectory(dir)) return;
+    List<Path> files;
+    try (Stream<Path> s = Files.list(dir)) { files = s.filter(p -> p.toString().endsWith(".ndjson")).sorted().toList(); }
+    catch (IOException e) { return; }
+    for (Path f : files) {
+      List<NewsDocument> retry = new ArrayList<>(); int count = 0;
+      try {
+        List<NewsDocument> docs = new ArrayList<>(); List<ObjectNode> unreadable = new ArrayList<>();
+        for (String line : Files.readAllLines(f, StandardCharsets.UTF_8)) {
+          if (line.isBlank()) continue;
+          try { docs.add(mapper.readValue(line, NewsDocument.class)); }
+          catch (IOException e) { unreadable.add(deadLetterEntry(line, "spill ilegível: " + e.getMessage())); }
+        }
+        deadLetter(unreadable); count = docs.size();
+        for (Map.Entry<String, List<NewsDocument>> e : byCollection(dedupeById(docs)).entrySet()) {
+          try { retry.addAll(upsert(e.getKey(), e.getValue())); }
+          catch (RuntimeException ex) {
+            if (!permanent(ex)) throw ex;
+            for (NewsDocument d : e.getValue()) {
+              try { retry.addAll(upsert(e.getKey(), List.of(d))); }
+              catch (RuntimeException one) { if (permanent(one)) deadLetter(List.of(deadLetterEntry(d, one.toString()))); else throw one; }
+            }
+          }
+        }
+      } catch (Exception e) { System.err.println("[MONGO-SPILL-REPLAY] " + f.getFileName() + " " + e.getMessage()); return; }
+      try {
+        if (retry.isEmpty()) {
+          Files.delete(f);
+          System.out.println("[MONGO-SPILL-REPLAY] " + count + " documentos de " + f.getFileName());
+          continue;
+        }
+        Path tmp = f.resolveSibling(f.getFileName() + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+          for (NewsDocument d : retry) { w.write(mapper.writeValueAsString(d)); w.newLine(); }
+        }
+        Files.move(tmp, f, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.err.println("[MONGO-SPILL-REPLAY] " + f.getFileName() + ": " + retry.size() + " de " + count + " ainda pendentes");
+      } catch (IOException e) { System.err.println("[MONGO-SPILL-REPLAY] " + f.getFileName() + " " + e.getMessage()); }
+      return;
+    }
+  }
+
+  public Map<String, Long> stats() {
+    return Map.of("queued", (long) queue.size(), "inFlight", (long) (maxInFlight - inFlight.availablePermits()),
+        "written", written.get(), "batches", batches.get(), "retried", retried.get(), "spilled", spilled.get(),
+        "stale", stale.get(), "deadLettered", deadLettered.get());
+  }
+
+  @PreDestroy void stop() throws InterruptedException {
+    running = false; dispatcher.join(10_000);
+    writers.shutdown(); writers.awaitTermination(30, TimeUnit.SECONDS); spillReplayer.shutdownNow();
+  }
+
+  private static ThreadFactory daemon(String name) {
+    AtomicLong n = new AtomicLong();
+    return r -> { Thread t = new Thread(r, name + "-" + n.getAndIncrement()); t.setDaemon(true); return t; };
+  }
+}
@@ -0,0 +1,86 @@
+package com.btg.pactual.hub.news.service;
+import com.fasterxml.jackson.core.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct; import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor; import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.io.InputStream; import java.io.StringWriter; import java.time.Instant;
+import java.util.*; import java.util.concurrent.*; import java.util.concurrent.atomic.AtomicLong;
+/**
+ * Ingestão em streaming de NDJSON ou array JSON: os registros são lidos um a um do corpo da
+ * requisição (o corpo inteiro nunca fica em memória) e processados por um pool fixo. Um semáforo
+ * global limita os registros em voo; com ele esgotado a leitura do corpo para, e o TCP segura
+ * o cliente (backpressure até o disco/socket de quem envia).
+ */
+@Service @RequiredArgsConstructor
+public class NewsIngestService {
+  private final NewsRoutingService routing; private final ObjectMapper mapper;
+  @Value("${news.ingest.workers:0}") int workers;
+  @Value("${news.ingest.max-in-flight:1024}") int maxInFlight;
+  @Value("${news.ingest.max-errors:100}") int maxErrors;
+  private ExecutorService pool; private Semaphore inFlight;
+  /** Limite de partes registradas num Phaser; cada registro em voo é uma, mais a da leitura. */
+  private static final int MAX_PHASER_PARTIES = 65_535;
+
+  public record IngestSummary(long records, Map<NewsRoutingService.Outcome, Long> outcomes,
+                              List<String> errors, boolean truncated, long elapsedMillis) {}
+
+  @PostConstruct void start() {
+    if (maxInFlight < 1 || maxInFlight >= MAX_PHASER_PARTIES)
+      throw new IllegalArgumentException("news.ingest.max-in-flight fora de [1, " + (MAX_PHASER_PARTIES - 1) + "]: " + maxInFlight);
+    int n = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+    AtomicLong seq = new AtomicLong();
+    pool = Executors.newFixedThreadPool(n, r -> { Thread t = new Thread(r, "news-ingest-" + seq.getAndIncrement()); t.setDaemon(true); return t; });
+    inFlight = new Semaphore(maxInFlight);
+  }
+
+  /**
+   * Lê registros até o fim do corpo. Aceita um array no topo ou valores em sequência (NDJSON).
+   * Um erro de sintaxe encerra a leitura (não há como ressincronizar com segurança); o que já foi
+   * lido é processado e o erro aparece no resumo com o índice do registro.
+   */
+  public IngestSummary ingest(InputStream body) throws InterruptedException {
+    long t0 = System.currentTimeMillis();
+    Map<NewsRoutingService.Outcome, AtomicLong> counts = new EnumMap<>(NewsRoutingService.Outcome.class);
+    for (NewsRoutingService.Outcome o : NewsRoutingService.Outcome.values()) counts.put(o, new AtomicLong());
+    List<String> errors = Collections.synchronizedList(new ArrayList<>());
+    Phaser pending = new Phaser(1);
+    long index = 0; boolean truncated = false;
+    try (JsonParser p = mapper.getFactory().createParser(body)) {
+      JsonToken t = p.nextToken();
+      boolean array = t == JsonToken.START_ARRAY;
+      if (array) t = p.nextToken();
+      while (t != null && !(array && t == JsonToken.END_ARRAY)) {
+        long i = index++;
+        if (t != JsonToken.START_OBJECT) {
+          p.skipChildren(); error(errors, i, "registro não é objeto: " + t);
+          counts.get(NewsRoutingService.Outcome.FAILED).incrementAndGet();
+        } else {
+          StringWriter sw = new StringWriter(1024);
+          try (JsonGenerator g = mapper.getFactory().createGenerator(sw)) { g.copyCurrentStructure(p); }
+          String json = sw.toString(); Instant receivedAt = Instant.now();
+          inFlight.acquire(); pending.register();
+          pool.execute(() -> {
+            try { NewsRoutingService.Outcome o = routing.ingest(json, receivedAt); counts.get(o).incrementAndGet();
+                  if (o == NewsRoutingService.Outcome.FAILED) error(errors, i, "falha ao gravar"); }
+            catch (RuntimeException e) { counts.get(NewsRoutingService.Outcome.FAILED).incrementAndGet(); error(errors, i, e.getMessage()); }
+            finally { inFlight.release(); pending.arriveAndDeregister(); }
+          });
+        }
+        t = p.nextToken();
+      }
+    } catch (java.io.IOException e) {
+      truncated = true; error(errors, index, "leitura interrompida: " + e.getMessage());
+    }
+    pending.arriveAndAwaitAdvance();
+    Map<NewsRoutingService.Outcome, Long> out = new EnumMap<>(NewsRoutingService.Outcome.class);
+    counts.forEach((k, v) -> out.put(k, v.get()));
+    return new IngestSummary(index, out, List.copyOf(errors), truncated, System.currentTimeMillis() - t0);
+  }
+
+  private void error(List<String> errors, long index, String msg) {
+    if (errors.size() < maxErrors) errors.add("#" + index + ": " + msg);
+  }
+
+  @PreDestroy void stop() { pool.shutdown(); }
+}
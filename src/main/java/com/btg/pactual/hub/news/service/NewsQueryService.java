@@ -0,0 +1,80 @@
+package com.btg.pactual.hub.news.service;
+import com.btg.pactual.hub.news.model.NewsDocument;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria; import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria; import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.stereotype.Service;
+import java.time.*; import java.util.*;
+/**
+ * Consulta de notícias através das coleções do {@link NewsRetentionService} (news_yyyyMM, da
+ * mais recente para a mais antiga, e a news legada por último). Meses fora do intervalo pedido
+ * não são consultados. Cada coleção que sobra devolve até o limite, já ordenado; o resultado é a
+ * junção das listas na mesma ordem (receivedAt ou relevância), cortada no limite. Uma revisão
+ * gravada em outro mês aparece uma vez só, na versão mais recente.
+ */
+@Service @RequiredArgsConstructor
+public class NewsQueryService {
+  private static final Duration MONTH_SLACK = Duration.ofDays(1);
+  private final MongoTemplate mongo; private final NewsRetentionService retention;
+
+  public Optional<NewsDocument> findById(String id) {
+    for (String c : retention.collectionsNewestFirst()) {
+      NewsDocument d = mongo.findOne(Query.query(Criteria.where("id").is(id)), NewsDocument.class, c);
+      if (d != null) return Optional.of(d);
+    }
+    return Optional.empty();
+  }
+
+  /** Mais recentes primeiro, com receivedAt em [from, to); language null = todos. */
+  public List<NewsDocument> recent(String language, Instant from, Instant to, int limit) {
+    Criteria c = Criteria.where("receivedAt").gte(from).lt(to);
+    if (language != null && !language.isBlank()) c = c.and("language").is(language);
+    Query q = Query.query(c).with(Sort.by(Sort.Direction.DESC, "receivedAt"));
+    return collect(q, from, to, limit, Comparator.comparing(NewsDocument::getReceivedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+  }
+
+  /**
+   * Busca textual (índice text em headline/body), por relevância entre todos os meses: o score do
+   * $text depende só do documento e dos pesos do índice, então é comparável entre coleções.
+   */
+  public List<NewsDocument> search(String text, String language, Instant from, Instant to, int limit) {
+    Query q = TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(text)).sortByScore()
+      .addCriteria(Criteria.where("receivedAt").gte(from).lt(to));
+    if (language != null && !language.isBlank()) q.addCriteria(Criteria.where("language").is(language));
+    return collect(q, from, to, limit, Comparator.comparing(NewsDocument::getScore, Comparator.nullsLast(Comparator.reverseOrder())));
+  }
+
+  /** Até limit de cada coleção do intervalo; junta por id (fica a versão mais nova), ordena e corta no limit. */
+  private List<NewsDocument> collect(Query q, Instant from, Instant to, int limit, Comparator<NewsDocument> order) {
+    Map<String, NewsDocument> byId = new HashMap<>();
+    q.limit(limit);
+    for (String c : retention.collectionsNewestFirst()) {
+      if (!overlaps(c, from, to)) continue;
+      for (NewsDocument d : mongo.find(q, NewsDocument.class, c)) byId.merge(d.getId(), d, NewsQueryService::newer);
+    }
+    List<NewsDocument> out = new ArrayList<>(byId.values());
+    out.sort(order);
+    return out.size() > limit ? new ArrayList<>(out.subList(0, limit)) : out;
+  }
+
+  /** Versão mais nova de uma história: maior versionCreated, senão maior receivedAt; empate fica a primeira. */
+  private static NewsDocument newer(NewsDocument a, NewsDocument b) {
+    int c = Comparator.nullsFirst(Comparator.<Instant>naturalOrder()).compare(b.getVersionCreated(), a.getVersionCreated());
+    if (c == 0) c = Comparator.nullsFirst(Comparator.<Instant>naturalOrder()).compare(b.getReceivedAt(), a.getReceivedAt());
+    return c > 0 ? b : a;
+  }
+
+  /**
+   * O mês da coleção vem do versionCreated, e o filtro é por receivedAt: a janela do mês ganha
+   * {@link #MONTH_SLACK} dos dois lados para a chegada atrasada (ou o relógio adiantado) não sumir.
+   */
+  private static boolean overlaps(String collection, Instant from, Instant to) {
+    YearMonth m = NewsRetentionService.monthOf(collection);
+    if (m == null) return true;
+    Instant start = m.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().minus(MONTH_SLACK);
+    Instant end = m.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().plus(MONTH_SLACK);
+    return start.isBefore(to) && end.isAfter(from);
+  }
+}
@@ -0,0 +1,50 @@
+package com.btg.pactual.hub.news.service;
+import com.btg.pactual.hub.news.MappedNewsJournal;
+import com.btg.pactual.hub.news.NewsJournal;
+import com.btg.pactual.hub.news.NewsJournalReader;
+import com.btg.pactual.hub.news.constants.AppConstants;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor; import org.springframework.stereotype.Service;
+import java.nio.charset.StandardCharsets; import java.nio.file.Path;
+import java.util.EnumMap; import java.util.Map;
+/**
+ * Consulta e replay do journal gravado pelo FileQueueSink (ex.: reprocessar um dia de notícias
+ * depois de uma queda do Mongo). Um único MappedNewsJournal vive com o serviço; cada consulta faz
+ * o refresh incremental (só segmentos novos e o crescimento do corrente), então sempre reflete o
+ * que já está em disco sem remapear tudo.
+ */
+@Service @RequiredArgsConstructor
+public class NewsReplayService {
+  private final NewsRoutingService routing;
+  private MappedNewsJournal journal;
+  /** replayed: registros lidos; outcomes: resultado de cada um no NewsRoutingService; failed = outcomes[FAILED]. */
+  public record ReplayResult(long replayed, Map<NewsRoutingService.Outcome, Long> outcomes, long failed, long elapsedMillis) {}
+  /** Journal mapeado (aberto na primeira chamada), atualizado com o que foi gravado desde a anterior. */
+  public synchronized MappedNewsJournal journal() throws java.io.IOException {
+    if (journal == null) journal = MappedNewsJournal.open(Path.of(AppConstants.JOURNAL_PATH));
+    else journal.refresh();
+    return journal;
+  }
+  @PreDestroy synchronized void close() { if (journal != null) journal.close(); }
+  /** JSON original da notícia, ou null se o GUID não estiver no journal. */
+  public String findRaw(String guid) throws java.io.IOException {
+    NewsJournalReader.Record r = journal().findRaw(guid);
+    return r == null ? null : new String(r.payload, StandardCharsets.UTF_8);
+  }
+  /** Reenvia ao NewsRoutingService os registros RAW com timestamp em [from, to); language null = todos. */
+  public ReplayResult replay(String language, long fromMillis, long toMillis) throws Exception {
+    long t0 = System.currentTimeMillis(); long[] read = {0};
+    Map<NewsRoutingService.Outcome, Long> outcomes = new EnumMap<>(NewsRoutingService.Outcome.class);
+    for (NewsRoutingService.Outcome o : NewsRoutingService.Outcome.values()) outcomes.put(o, 0L);
+    journal().scan(language, fromMillis, toMillis, NewsJournal.KIND_RAW, (lang, rec) -> {
+      read[0]++;
+      NewsRoutingService.Outcome o;
+      // receivedAt = instante original do journal: TTL e coleção mensal seguem a chegada, não o replay
+      try { o = routing.ingest(rec.payload, java.time.Instant.ofEpochMilli(rec.timestamp)); }
+      catch (RuntimeException e) { o = NewsRoutingService.Outcome.FAILED; }
+      outcomes.merge(o, 1L, Long::sum);
+      return true;
+    });
+    return new ReplayResult(read[0], outcomes, outcomes.get(NewsRoutingService.Outcome.FAILED), System.currentTimeMillis() - t0);
+  }
+}
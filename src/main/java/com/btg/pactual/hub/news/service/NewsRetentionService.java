@@ -0,0 +1,150 @@
+package com.btg.pactual.hub.news.service;
+import com.btg.pactual.hub.news.model.NewsDocument;
+import jakarta.annotation.PostConstruct; import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor; import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index; import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.query.Criteria; import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import java.time.*; import java.time.format.DateTimeFormatter;
+import java.util.*; import java.util.concurrent.*; import java.util.regex.Pattern;
+/**
+ * Retenção das notícias no Mongo: cada documento recebe expireAt = receivedAt + dias de retenção
+ * e o índice TTL em expireAt (expireAfterSeconds 0) apaga o que venceu. Os dias vêm da audiência
+ * (maior valor entre as audiências com regra), senão do idioma, senão do default; 0 = sem
+ * expiração (o default: nada expira sem uma regra explícita). expireAt já presente no payload é
+ * respeitado.
+ *
+ * Com news.retention.monthly-collections, as gravações vão para news_yyyyMM (mês UTC do
+ * versionCreated, senão do receivedAt): a coleção corrente e seus índices (inclusive o de texto)
+ * ficam pequenos e quentes, e um replay cai no mês original. Um mês encerrado é descartado com
+ * drop, sem esperar o TTL documento a documento, só quando todos os seus documentos têm expireAt
+ * e o maior deles já passou. {@link NewsQueryService} consulta através das coleções.
+ */
+@Service @RequiredArgsConstructor
+public class NewsRetentionService {
+  public static final String BASE_COLLECTION = "news";
+  private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+  private static final Pattern MONTHLY = Pattern.compile("news_\\d{6}");
+
+  private final MongoTemplate mongo;
+  @Value("${news.retention.default-days:0}") long defaultDays;
+  /** "pt=180,en=30" */
+  @Value("${news.retention.by-language:}") String byLanguageSpec;
+  /** "NP:BRS=365,NP:RTRS=30" */
+  @Value("${news.retention.by-audience:}") String byAudienceSpec;
+  @Value("${news.retention.monthly-collections:false}") boolean monthly;
+  @Value("${news.retention.drop-check-hours:6}") long dropCheckHours;
+
+  private Map<String, Long> byLanguage; private Map<String, Long> byAudience;
+  private final Set<String> indexed = ConcurrentHashMap.newKeySet();
+  private ScheduledExecutorService dropper;
+
+  @PostConstruct void start() {
+    byLanguage = parseDays(byLanguageSpec); byAudience = parseDays(byAudienceSpec);
+    ensureIndexes(BASE_COLLECTION);
+    if (monthly) {
+      dropper = Executors.newSingleThreadScheduledExecutor(r -> { Thread t = new Thread(r, "news-retention-drop"); t.setDaemon(true); return t; });
+      dropper.scheduleWithFixedDelay(this::dropExpiredMonths, 1, dropCheckHours * 60, TimeUnit.MINUTES);
+    }
+  }
+
+  @PreDestroy void stop() { if (dropper != null) dropper.shutdownNow(); }
+
+  /** Define expireAt (se ausente) pela política; receivedAt ausente conta como agora. */
+  public void apply(NewsDocument d) {
+    if (d.getExpireAt() != null) return;
+    long days = retentionDays(d);
+    if (days <= 0) return;
+    Instant base = d.getReceivedAt() != null ? d.getReceivedAt() : Instant.now();
+    d.setExpireAt(base.plus(Duration.ofDays(days)));
+  }
+
+  /** Dias de retenção do documento: audiência (a maior) → idioma → default. */
+  public long retentionDays(NewsDocument d) {
+    long best = -1;
+    if (d.getAudiences() != null)
+      for (String a : d.getAudiences()) { Long v = a == null ? null : byAudience.get(a.toLowerCase(Locale.ROOT)); if (v != null) best = Math.max(best, v); }
+    if (best >= 0) return best;
+    Long lang = d.getLanguage() == null ? null : byLanguage.get(d.getLanguage().toLowerCase(Locale.ROOT));
+    return lang != null ? lang : defaultDays;
+  }
+
+  /** Coleção de destino do documento; garante os índices na primeira vez que ela aparece. */
+  public String collectionFor(NewsDocument d) {
+    if (!monthly) return BASE_COLLECTION;
+    Instant at = d.getVersionCreated() != null ? d.getVersionCreated() : d.getReceivedAt() != null ? d.getReceivedAt() : Instant.now();
+    String name = BASE_COLLECTION + "_" + MONTH.format(at.atZone(ZoneOffset.UTC));
+    ensureIndexes(name);
+    return name;
+  }
+
+  public boolean monthlyCollections() { return monthly; }
+
+  /** Coleções com notícias, da mais recente para a mais antiga; a base (legado) por último. */
+  public List<String> collectionsNewestFirst() {
+    List<String> out = new ArrayList<>();
+    for (String c : mongo.getCollectionNames()) if (MONTHLY.matcher(c).matches()) out.add(c);
+    out.sort(Comparator.reverseOrder());
+    out.add(BASE_COLLECTION);
+    return out;
+  }
+
+  /** Mês (UTC) de uma coleção news_yyyyMM; null para a base. */
+  public static YearMonth monthOf(String collection) {
+    return MONTHLY.matcher(collection).matches() ? YearMonth.parse(collection.substring(5), MONTH) : null;
+  }
+
+  /** Mesmos índices do @Document em NewsDocument + TTL, para a base e para cada coleção mensal. */
+  void ensureIndexes(String collection) {
+    if (!indexed.add(collection)) return;
+    IndexOperations ops = mongo.indexOps(collection);
+    ensure(ops, collection, new Index().on("id", Sort.Direction.ASC).unique().named("id"));
+    ensure(ops, collection, new Index().on("language", Sort.Direction.ASC).on("receivedAt", Sort.Direction.DESC).named("lang_received_idx"));
+    ensure(ops, collection, new Index().on("receivedAt", Sort.Direction.DESC).named("receivedAt"));
+    ensure(ops, collection, new TextIndexDefinition.TextIndexDefinitionBuilder().onField("headline").onField("body").named("text_idx").build());
+    // sem o TTL a retenção não acontece: se falhar, tenta de novo na próxima gravação
+    if (!ensure(ops, collection, new Index().on("expireAt", Sort.Direction.ASC).expire(0).named("expire_at_ttl"))) indexed.remove(collection);
+  }
+
+  /** Um índice por vez: um já existente com outro nome/opções não impede os demais. */
+  private static boolean ensure(IndexOperations ops, String collection, IndexDefinition index) {
+    try { ops.ensureIndex(index); return true; }
+    catch (RuntimeException e) { System.err.println("[MONGO-RETENTION] índice em " + collection + ": " + e.getMessage()); return false; }
+  }
+
+  /**
+   * Dropa coleções mensais de meses encerrados em que todo documento já venceu: nenhum sem expireAt
+   * (sem expireAt = nunca expira) e o maior expireAt no passado. Decide pelos dados, não pela
+   * política atual: expireAt vindo do payload ou de uma regra antiga também conta.
+   */
+  void dropExpiredMonths() {
+    Instant now = Instant.now();
+    for (String c : collectionsNewestFirst()) {
+      YearMonth m = monthOf(c);
+      if (m == null || !m.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().isBefore(now)) continue;
+      try {
+        if (mongo.exists(Query.query(Criteria.where("expireAt").is(null)), c)) continue;
+        Query latest = new Query().with(Sort.by(Sort.Direction.DESC, "expireAt")).limit(1);
+        latest.fields().include("expireAt");
+        NewsDocument last = mongo.findOne(latest, NewsDocument.class, c);
+        if (last == null || last.getExpireAt() == null || !last.getExpireAt().isBefore(now)) continue;
+        mongo.dropCollection(c); indexed.remove(c); System.out.println("[MONGO-RETENTION] drop " + c + " (maior expireAt " + last.getExpireAt() + ")");
+      } catch (RuntimeException e) { System.err.println("[MONGO-RETENTION] drop " + c + ": " + e.getMessage()); }
+    }
+  }
+
+  static Map<String, Long> parseDays(String spec) {
+    Map<String, Long> m = new HashMap<>();
+    if (spec == null || spec.isBlank()) return m;
+    for (String part : spec.split(",")) {
+      int eq = part.lastIndexOf('=');
+      if (eq <= 0) continue;
+      m.put(part.substring(0, eq).trim().toLowerCase(Locale.ROOT), Long.parseLong(part.substring(eq + 1).trim()));
+    }
+    return m;
+  }
+}
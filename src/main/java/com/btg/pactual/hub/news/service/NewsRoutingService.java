@@ -1,33 +1,53 @@
 package com.btg.pactual.hub.news.service;
+import com.btg.pactual.hub.news.NewsDedupCache;
 import com.btg.pactual.hub.news.builder.NewsEventBuilder;
 import com.btg.pactual.hub.news.constants.AppConstants;
-import com.btg.pactual.hub.news.dto.NewsEventDTO;
 import com.btg.pactual.hub.news.model.NewsDocument;
-import com.btg.pactual.hub.news.repository.NewsRepository;
 import lombok.RequiredArgsConstructor; import org.springframework.stereotype.Service;
-import java.io.*; @Service @RequiredArgsConstructor
+import java.io.*; import java.nio.charset.StandardCharsets; import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong; import java.util.function.Supplier; @Service @RequiredArgsConstructor
 public class NewsRoutingService {
-  private final NewsRepository repository; private final NewsEventBuilder builder;
-  public void processIncomingJson(String rawJson) {
-    if (AppConstants.SAVE_TO_FILE) saveToFile(rawJson); else saveToMongo(rawJson);
+  /**
+   * Resultado do processamento de uma notícia. SAVED: gravada (SAVE_TO_FILE). ACCEPTED/REVISION:
+   * história nova/revisão aceita na fila do NewsBulkWriter, ainda não confirmada pelo Mongo (falha
+   * posterior vira retry, spill ou dead-letter lá). DUPLICATE: reenvio idêntico descartado.
+   */
+  public enum Outcome { SAVED, ACCEPTED, REVISION, DUPLICATE, FAILED }
+  private final NewsBulkWriter bulkWriter; private final NewsEventBuilder builder; private final NewsDedupCache dedup;
+  private final NewsQueryService query;
+  private final AtomicLong fileSeq = new AtomicLong();
+  public void processIncomingJson(String rawJson) { ingest(rawJson); }
+  public Outcome ingest(String rawJson) { return ingest(rawJson, Instant.now()); }
+  /** receivedAt: quando a notícia chegou ao serviço (vira o receivedAt do documento). */
+  public Outcome ingest(String rawJson, Instant receivedAt) {
+    return AppConstants.SAVE_TO_FILE ? saveToFile(rawJson.getBytes(StandardCharsets.UTF_8)) : saveToMongo(() -> builder.toDocument(rawJson, receivedAt));
   }
-  private void saveToFile(String rawJson) {
+  /** Idem a partir dos bytes UTF-8 (ex.: registro do journal), sem passar por String. */
+  public Outcome ingest(byte[] rawJson, Instant receivedAt) {
+    return AppConstants.SAVE_TO_FILE ? saveToFile(rawJson) : saveToMongo(() -> builder.toDocument(rawJson, receivedAt));
+  }
+  private Outcome saveToFile(byte[] rawJson) {
     try {
       java.io.File dir = new java.io.File(AppConstants.SAVE_PATH); if (!dir.exists()) dir.mkdirs();
-      String fileName = AppConstants.SAVE_PATH + "news_" + System.currentTimeMillis() + ".json";
-      try (java.io.FileWriter fw = new java.io.FileWriter(fileName)) { fw.write(rawJson); }
+      String fileName = AppConstants.SAVE_PATH + "news_" + System.currentTimeMillis() + "_" + fileSeq.incrementAndGet() + ".json";
+      java.nio.file.Files.write(java.nio.file.Path.of(fileName), rawJson);
       System.out.println("[SAVE_TO_FILE] " + fileName);
-    } catch (IOException e) { System.err.println("Erro ao salvar arquivo: " + e.getMessage()); }
+      return Outcome.SAVED;
+    } catch (IOException e) { System.err.println("Erro ao salvar arquivo: " + e.getMessage()); return Outcome.FAILED; }
   }
-  private void saveToMongo(String rawJson) {
+  private Outcome saveToMongo(Supplier<NewsDocument> parse) {
     try {
-      NewsEventDTO dto = builder.fromMrn(rawJson);
-      NewsDocument doc = NewsDocument.builder()
-        .id(dto.getId()).language(dto.getLanguage()).headline(dto.getHeadline())
-        .body(dto.getBody()).audiences(dto.getAudiences()).receivedAt(dto.getReceivedAt())
-        .build();
-      repository.save(doc);
-      System.out.println("[SAVE_TO_MONGO] " + dto.getId());
-    } catch (Exception e) { System.err.println("Erro ao salvar no Mongo: " + e.getMessage()); }
+      NewsDocument doc = parse.get();
+      // só classifica: o NewsBulkWriter registra no dedup quando o Mongo confirma a gravação
+      NewsDedupCache.Result seen = dedup.check(doc.getId(), contentHash(doc),
+        () -> query.findById(doc.getId()).map(NewsRoutingService::contentHash).orElse(null));
+      if (seen == NewsDedupCache.Result.DUPLICATE) { System.out.println("[SAVE_TO_MONGO] duplicada " + doc.getId()); return Outcome.DUPLICATE; }
+      bulkWriter.submit(doc);
+      System.out.println("[SAVE_TO_MONGO] enfileirada " + doc.getId() + (seen == NewsDedupCache.Result.REVISION ? " (revisão)" : ""));
+      return seen == NewsDedupCache.Result.REVISION ? Outcome.REVISION : Outcome.ACCEPTED;
+    } catch (InterruptedException e) { Thread.currentThread().interrupt(); return Outcome.FAILED;
+    } catch (Exception e) { System.err.println("Erro ao salvar no Mongo: " + e.getMessage()); return Outcome.FAILED; }
   }
+  /** Hash do conteúdo usado pelo dedup (idioma + headline + body). */
+  public static long contentHash(NewsDocument d) { return NewsDedupCache.contentHash(d.getLanguage(), d.getHeadline(), d.getBody()); }
 }